@@ -0,0 +1,82 @@
+package mari.mvp3;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Global admission controller that sheds guess traffic once the engine misses its latency objective.
+ * It keeps an exponentially weighted moving average of the time taken to process admitted requests. While the average
+ * is above the objective, requests are rejected immediately, except for one probe request out of every PROBE_INTERVAL
+ * which keeps the average up to date so that admission resumes once latency recovers.
+ * All state is held in atomic longs, so admitting a request never takes a lock and never allocates.
+ */
+public class AdmissionController {
+
+	protected final static int PROBE_INTERVAL = 16; // While shedding, one request out of this many is admitted as a probe
+	protected final static int EWMA_SHIFT = 3; // Each sample moves the average by 1/8 of the difference
+
+	private final long latencyObjectiveNanos;
+	private final long maxInFlight; // Requests admitted but not completed beyond which new requests are rejected
+	private final AtomicLong averageLatencyNanos = new AtomicLong();
+	private final AtomicLong inFlight = new AtomicLong();
+	private final AtomicLong rejected = new AtomicLong();
+	private final AtomicLong admitted = new AtomicLong();
+
+	/**
+	 * @param latencyObjectiveNanos is the average processing time above which requests are shed
+	 * @param maxInFlight is the maximum number of requests processed at the same time
+	 */
+	public AdmissionController(long latencyObjectiveNanos, long maxInFlight) {
+		this.latencyObjectiveNanos = latencyObjectiveNanos;
+		this.maxInFlight = maxInFlight;
+	}
+
+	/**
+	 * Decides whether a request is processed. Every admitted request must be followed by a call to complete()
+	 * @return true if the request is admitted; false if it must be rejected
+	 */
+	public boolean tryAdmit() {
+		boolean overloaded = averageLatencyNanos.get() > latencyObjectiveNanos;
+		if (overloaded && rejected.incrementAndGet() % PROBE_INTERVAL != 0) {
+			return false;
+		}
+		if (inFlight.incrementAndGet() > maxInFlight) {
+			inFlight.decrementAndGet();
+			rejected.incrementAndGet();
+			return false;
+		}
+		admitted.incrementAndGet();
+		return true;
+	}
+
+	/**
+	 * Records the end of an admitted request and updates the average latency
+	 * @param startNanos is the System.nanoTime() taken before tryAdmit() was called
+	 */
+	public void complete(long startNanos) {
+		inFlight.decrementAndGet();
+		long sample = System.nanoTime() - startNanos;
+		while (true) {
+			long average = averageLatencyNanos.get();
+			long updated = average + ((sample - average) >> EWMA_SHIFT);
+			if (averageLatencyNanos.compareAndSet(average, updated)) {
+				return;
+			}
+		}
+	}
+
+	public long getAverageLatencyNanos() {
+		return averageLatencyNanos.get();
+	}
+
+	public long getInFlight() {
+		return inFlight.get();
+	}
+
+	public long getRejected() {
+		return rejected.get();
+	}
+
+	public long getAdmitted() {
+		return admitted.get();
+	}
+}
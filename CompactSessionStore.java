@@ -0,0 +1,700 @@
+package mari.mvp3;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Session store that keeps each active game in fixed-width slots of primitive arrays instead of a HangmanGame object graph.
+ * A game is the index of its secret string in a shared StringCorpus, the letters guessed and the words guessed as bit masks
+ * (see TournamentSecret.symbolOf()), the attempts left, the streaks, the player id, the start and last access times, and the
+ * ids of the incorrect word guesses. Player names and incorrect words are kept once in reference counted tables and freed with
+ * the last session holding them. The hidden secret string is never stored: guesses are evaluated by reading the characters
+ * of the secret directly from the corpus, and the hidden string is only built when a client asks for it.
+ *
+ * A slot takes LONG_FIELDS longs and INT_FIELDS ints, about 80 bytes, so a million games fit in about 80 MB and create no garbage
+ * while they are played. The slabs are allocated in pages of PAGE_SLOTS slots as the store grows, and freed slots are reused.
+ * Sessions are identified by a handle combining the slot with a generation number, so a handle of a game that ended is never
+ * mistaken for the game that reuses its slot. The state of a session is read through a Session, a flyweight that is moved
+ * from session to session and copies the fields of the slot.
+ *
+ * Guesses follow the same rules as HangmanGame.applyGuess(). Slots are guarded by striped locks, so guesses of different
+ * sessions can run in parallel.
+ */
+public class CompactSessionStore {
+
+	protected final static int DEFAULT_CAPACITY = 1 << 20; // About a million games
+	protected final static int PAGE_SHIFT = 12;
+	protected final static int PAGE_SLOTS = 1 << PAGE_SHIFT; // Slots allocated at once
+	protected final static int LOCK_STRIPES = 64;
+	protected final static int MAX_CORPORA = 1024; // Corpora, or reloaded versions of a corpus, played at the same time
+
+	// Long fields of a slot
+	private final static int GUESS_MASK = 0; // Bit s is set if symbol s was guessed
+	private final static int WORD_MASK = 1; // Bit t is set if token t of the secret was guessed as a word
+	private final static int STARTED_AT = 2; // Epoch time in milliseconds when the game started
+	private final static int LAST_ACCESS = 3; // System.nanoTime() of the creation or the last guess
+	private final static int LONG_FIELDS = 4;
+
+	// Int fields of a slot
+	private final static int SECRET_ID = 0; // Index of the secret in the corpus, or next free slot when the slot is free
+	private final static int PLAYER_ID = 1;
+	private final static int CORPUS_ID = 2;
+	private final static int STATE = 3; // Attempts left, difficulty, number of missed words and flags, see below
+	private final static int GENERATION = 4; // Incremented when the slot is freed
+	private final static int STREAKS = 5; // Current streak in the low 16 bits, longest streak in the high 16 bits
+	private final static int MISSED_WORDS = 6; // Ids of the incorrect word guesses in missedWords, one per attempt
+	private final static int INT_FIELDS = MISSED_WORDS + HangmanGame.MAX_ATTEMPTS;
+
+	// Layout of the STATE field
+	private final static int ATTEMPTS_MASK = 0xff;
+	private final static int DIFFICULTY_SHIFT = 8;
+	private final static int MISSED_SHIFT = 16;
+	private final static int IN_USE = 1 << 24;
+	private final static int WON = 1 << 25;
+
+	private final int capacity;
+	private final long[][] longPages;
+	private final int[][] intPages;
+	private final Object[] locks = new Object[LOCK_STRIPES];
+	private volatile int allocatedSlots; // Slots that were handed out at least once. Written while holding the lock of the store, after allocating their page
+	private int freeSlot = -1; // Head of the list of free slots, linked through SECRET_ID. Guarded by this
+	private int size; // Sessions in use. Guarded by this
+	private final StringCorpus[] corpora = new StringCorpus[MAX_CORPORA];
+	private final String[] modes = new String[MAX_CORPORA];
+	private final int[] corpusSessions = new int[MAX_CORPORA]; // Sessions in use of each corpus. Guarded by this
+	private final IdentityHashMap<StringCorpus, Integer> corpusIds = new IdentityHashMap<>(); // Guarded by this
+	private final ArrayDeque<Integer> freeCorpusIds = new ArrayDeque<>(); // Ids of corpora no longer played. Guarded by this
+	private final StringIds playerNames = new StringIds(); // Names of the players of the sessions in use
+	private final StringIds missedWords = new StringIds(); // Incorrect word guesses of the sessions in use
+
+	/**
+	 * Reference counted ids of strings, so that a slot can hold a name or a word as an int. An id stays valid while a slot
+	 * holds it, so two ids held at the same time are equal only if their strings are equal. The id of a string is freed and
+	 * reused once no slot holds it anymore, so the table only grows with the strings in use
+	 */
+	private static final class StringIds {
+		private final HashMap<String, Integer> ids = new HashMap<>();
+		private String[] strings = new String[16];
+		private int[] references = new int[16];
+		private final ArrayDeque<Integer> freeIds = new ArrayDeque<>();
+		private int nextId;
+
+		/**
+		 * Returns the id of a string and counts one more reference to it, registering the string on first use
+		 */
+		synchronized int acquire(String string) {
+			Integer id = ids.get(string);
+			if (id == null) {
+				if (!freeIds.isEmpty()) {
+					id = freeIds.pop();
+				} else {
+					id = nextId++;
+					if (id == strings.length) {
+						strings = Arrays.copyOf(strings, id * 2);
+						references = Arrays.copyOf(references, id * 2);
+					}
+				}
+				strings[id] = string;
+				ids.put(string, id);
+			}
+			references[id]++;
+			return id;
+		}
+
+		/**
+		 * @return the id of a string, or -1 if no slot holds it
+		 */
+		synchronized int find(String string) {
+			Integer id = ids.get(string);
+			return id == null ? -1 : id;
+		}
+
+		synchronized String get(int id) {
+			return strings[id];
+		}
+
+		/**
+		 * Counts one reference less to an id, freeing it when no slot holds it anymore
+		 */
+		synchronized void release(int id) {
+			if (--references[id] == 0) {
+				ids.remove(strings[id]);
+				strings[id] = null;
+				freeIds.push(id);
+			}
+		}
+	}
+
+	/**
+	 * Creates a store for up to DEFAULT_CAPACITY sessions
+	 */
+	public CompactSessionStore() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param capacity is the largest number of sessions in use at the same time
+	 */
+	public CompactSessionStore(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("The capacity must be at least 1");
+		}
+		this.capacity = capacity;
+		int pages = (int) (((long) capacity + PAGE_SLOTS - 1) >>> PAGE_SHIFT);
+		this.longPages = new long[pages][];
+		this.intPages = new int[pages][];
+		for (int i = 0; i < LOCK_STRIPES; i++) {
+			locks[i] = new Object();
+		}
+	}
+
+	/**
+	 * Starts a game with a random secret of a corpus
+	 * @param name is the player name
+	 * @param mode is the play mode, used to score the game with ScoringRules and to choose its leaderboard file
+	 * @param difficulty is the difficulty level
+	 * @param corpus is the list of secret strings, e.g. from CorpusCache
+	 * @return the handle of the new session
+	 * @throws IllegalStateException if the store is full
+	 */
+	public long create(String name, String mode, int difficulty, StringCorpus corpus) {
+		return create(name, mode, difficulty, corpus, ThreadLocalRandom.current().nextInt(corpus.size()));
+	}
+
+	/**
+	 * Starts a game with a given secret
+	 * @param name is the player name
+	 * @param mode is the play mode, used to score the game with ScoringRules and to choose its leaderboard file
+	 * @param difficulty is the difficulty level
+	 * @param corpus is the list of secret strings
+	 * @param secretId is the index of the secret string in the corpus, in lower case
+	 * @return the handle of the new session
+	 * @throws IllegalArgumentException if the secret has more than TournamentSecret.MAX_TOKENS words
+	 * @throws IllegalStateException if the store is full
+	 */
+	public long create(String name, String mode, int difficulty, StringCorpus corpus, int secretId) {
+		int tokens = 1;
+		for (int i = 0; i < corpus.length(secretId); i++) {
+			if (corpus.charAt(secretId, i) == ' ') {
+				tokens++;
+			}
+		}
+		if (tokens > TournamentSecret.MAX_TOKENS) {
+			throw new IllegalArgumentException("A secret cannot have more than " + TournamentSecret.MAX_TOKENS + " words");
+		}
+		int playerId = playerNames.acquire(name);
+		int corpusId;
+		int slot;
+		synchronized (this) {
+			corpusId = corpusId(corpus, mode);
+			slot = allocateSlot();
+		}
+		boolean won = hiddenCount(corpus, secretId, 0, 0) == 0;
+		synchronized (lockOf(slot)) {
+			long[] longs = longPages[slot >>> PAGE_SHIFT];
+			int[] ints = intPages[slot >>> PAGE_SHIFT];
+			int l = longBase(slot);
+			int i = intBase(slot);
+			longs[l + GUESS_MASK] = 0;
+			longs[l + WORD_MASK] = 0;
+			longs[l + STARTED_AT] = System.currentTimeMillis();
+			longs[l + LAST_ACCESS] = System.nanoTime();
+			ints[i + SECRET_ID] = secretId;
+			ints[i + PLAYER_ID] = playerId;
+			ints[i + CORPUS_ID] = corpusId;
+			ints[i + STATE] = HangmanGame.MAX_ATTEMPTS | difficulty << DIFFICULTY_SHIFT | IN_USE | (won ? WON : 0);
+			ints[i + STREAKS] = 0;
+			return handleOf(slot, ints[i + GENERATION]);
+		}
+	}
+
+	/**
+	 * Applies a guess to a session, with the same rules as HangmanGame.applyGuess()
+	 * @param handle is the handle of the session
+	 * @param guess is the letter or word guessed, in lower case
+	 * @return the outcome of the guess
+	 */
+	public GuessOutcome guess(long handle, String guess) {
+		int slot = (int) handle;
+		if (!isAllocated(slot)) {
+			return GuessOutcome.UNKNOWN_SESSION;
+		}
+		synchronized (lockOf(slot)) {
+			long[] longs = longPages[slot >>> PAGE_SHIFT];
+			int[] ints = intPages[slot >>> PAGE_SHIFT];
+			int l = longBase(slot);
+			int i = intBase(slot);
+			int state = ints[i + STATE];
+			if ((state & IN_USE) == 0 || ints[i + GENERATION] != (int) (handle >>> 32)) {
+				return GuessOutcome.UNKNOWN_SESSION;
+			}
+			if ((state & ATTEMPTS_MASK) == 0) {
+				return GuessOutcome.ALREADY_LOST;
+			}
+			if ((state & WON) != 0) {
+				return GuessOutcome.ALREADY_WON;
+			}
+			if (guess.equals("")) {
+				return GuessOutcome.EMPTY;
+			}
+			StringCorpus corpus = corpora[ints[i + CORPUS_ID]];
+			int secretId = ints[i + SECRET_ID];
+			long guessMask = longs[l + GUESS_MASK];
+			long wordMask = longs[l + WORD_MASK];
+			boolean correct;
+			if (guess.length() == 1) {
+				int symbol = TournamentSecret.symbolOf(Character.toLowerCase(guess.charAt(0)));
+				if (symbol < 0) {
+					return GuessOutcome.INVALID;
+				}
+				long bit = 1L << symbol;
+				if ((guessMask & bit) != 0) {
+					return GuessOutcome.REPEATED;
+				}
+				guessMask |= bit;
+				longs[l + GUESS_MASK] = guessMask;
+				correct = containsSymbol(corpus, secretId, symbol);
+			} else {
+				long matches = tokensMatching(corpus, secretId, guess);
+				if (matches != 0) {
+					if ((wordMask & matches) == matches) {
+						return GuessOutcome.REPEATED;
+					}
+					wordMask |= matches;
+					longs[l + WORD_MASK] = wordMask;
+					correct = true;
+				} else {
+					int missed = state >>> MISSED_SHIFT & 0xff;
+					int wordId = missedWords.find(guess);
+					for (int m = 0; m < missed && wordId >= 0; m++) {
+						if (ints[i + MISSED_WORDS + m] == wordId) {
+							return GuessOutcome.REPEATED;
+						}
+					}
+					if (missed < HangmanGame.MAX_ATTEMPTS) {
+						ints[i + MISSED_WORDS + missed] = missedWords.acquire(guess);
+						state += 1 << MISSED_SHIFT;
+					}
+					correct = false;
+				}
+			}
+			longs[l + LAST_ACCESS] = System.nanoTime();
+			int streaks = ints[i + STREAKS];
+			if (correct) {
+				int streak = (streaks & 0xffff) + 1;
+				int longest = Math.max(streaks >>> 16, streak);
+				ints[i + STREAKS] = longest << 16 | streak;
+				if (hiddenCount(corpus, secretId, guessMask, wordMask) == 0) {
+					state |= WON;
+				}
+			} else {
+				ints[i + STREAKS] = streaks & 0xffff0000;
+				state--;
+			}
+			ints[i + STATE] = state;
+			return correct ? GuessOutcome.CORRECT : GuessOutcome.INCORRECT;
+		}
+	}
+
+	/**
+	 * Ends a session: scores the game with the active ScoringRules, saves the score to the leaderboard of its play mode and frees the slot
+	 * @param handle is the handle of the session
+	 * @return the score, or -1 if no session has the handle
+	 */
+	public int finish(long handle) {
+		Session session = new Session();
+		synchronized (lockOf((int) handle)) {
+			if (!session.moveTo(handle) || !release(handle)) {
+				return -1;
+			}
+		}
+		int score = ScoringRules.getActive().score(session.getMode(), session.getDifficulty(), session.getSecret(),
+				HangmanGame.MAX_ATTEMPTS - session.getAttemptsLeft(), System.currentTimeMillis() - session.getStartedAt(),
+				session.getLongestGuessStreak(), session.isWon());
+		String filename = HangmanFactory.getLeaderboardFilename(session.getMode());
+		if (filename != null) { // Saved to the leaderboard file of the play mode, like the games of HangmanGame
+			Leaderboard.addResultToLeaderboard(filename, session.getPlayerName(), score);
+		}
+		return score;
+	}
+
+	/**
+	 * Frees the slot of a session without saving its score
+	 * @param handle is the handle of the session
+	 * @return true if the session was in use
+	 */
+	public boolean release(long handle) {
+		int slot = (int) handle;
+		if (!isAllocated(slot)) {
+			return false;
+		}
+		int corpusId;
+		int playerId;
+		int[] wordIds;
+		synchronized (lockOf(slot)) {
+			int[] ints = intPages[slot >>> PAGE_SHIFT];
+			int i = intBase(slot);
+			int state = ints[i + STATE];
+			if ((state & IN_USE) == 0 || ints[i + GENERATION] != (int) (handle >>> 32)) {
+				return false;
+			}
+			ints[i + STATE] = 0;
+			ints[i + GENERATION]++;
+			corpusId = ints[i + CORPUS_ID];
+			playerId = ints[i + PLAYER_ID];
+			wordIds = Arrays.copyOfRange(ints, i + MISSED_WORDS, i + MISSED_WORDS + (state >>> MISSED_SHIFT & 0xff));
+		}
+		playerNames.release(playerId);
+		for (int wordId : wordIds) {
+			missedWords.release(wordId);
+		}
+		synchronized (this) {
+			if (--corpusSessions[corpusId] == 0) {
+				corpusIds.remove(corpora[corpusId]);
+				corpora[corpusId] = null;
+				modes[corpusId] = null;
+				freeCorpusIds.push(corpusId);
+			}
+			intPages[slot >>> PAGE_SHIFT][intBase(slot) + SECRET_ID] = freeSlot;
+			freeSlot = slot;
+			size--;
+		}
+		return true;
+	}
+
+	/**
+	 * Frees the slots of the sessions that received no guess for the idle timeout, without saving their scores.
+	 * The slabs are scanned sequentially, which takes a few milliseconds for a million sessions
+	 * @param idleTimeoutNanos is the idle timeout in nanoseconds
+	 * @return the number of sessions freed
+	 */
+	public int evictIdle(long idleTimeoutNanos) {
+		long now = System.nanoTime();
+		int slots = allocatedSlots;
+		int evicted = 0;
+		for (int slot = 0; slot < slots; slot++) {
+			long handle;
+			synchronized (lockOf(slot)) {
+				int[] ints = intPages[slot >>> PAGE_SHIFT];
+				int i = intBase(slot);
+				if ((ints[i + STATE] & IN_USE) == 0
+						|| now - longPages[slot >>> PAGE_SHIFT][longBase(slot) + LAST_ACCESS] < idleTimeoutNanos) {
+					continue;
+				}
+				handle = handleOf(slot, ints[i + GENERATION]);
+			}
+			if (release(handle)) {
+				evicted++;
+			}
+		}
+		return evicted;
+	}
+
+	/**
+	 * @return the number of sessions in use
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return the number of bytes of the slabs allocated so far, array headers excluded
+	 */
+	public long getSlabBytes() {
+		long pages = ((long) allocatedSlots + PAGE_SLOTS - 1) >>> PAGE_SHIFT;
+		return pages * PAGE_SLOTS * (8L * LONG_FIELDS + 4L * INT_FIELDS);
+	}
+
+	/**
+	 * Flyweight giving access to the state of one session at a time. moveTo() copies the fields of the session's slot, so the
+	 * getters are consistent with each other and do not allocate, except getSecret() and getHiddenSecretString().
+	 * A Session is not thread safe; each thread should use its own
+	 */
+	public final class Session {
+
+		private long handle;
+		private int secretId;
+		private String playerName;
+		private StringCorpus corpus;
+		private String mode;
+		private int state;
+		private int streaks;
+		private long guessMask;
+		private long wordMask;
+		private long startedAt;
+		private long lastAccessNanos;
+
+		/**
+		 * Moves the flyweight to a session and copies its state. Call it again to see the guesses applied since
+		 * @param handle is the handle of the session
+		 * @return true if the session is in use; if false, the flyweight is unchanged
+		 */
+		public boolean moveTo(long handle) {
+			int slot = (int) handle;
+			if (!isAllocated(slot)) {
+				return false;
+			}
+			synchronized (lockOf(slot)) {
+				long[] longs = longPages[slot >>> PAGE_SHIFT];
+				int[] ints = intPages[slot >>> PAGE_SHIFT];
+				int l = longBase(slot);
+				int i = intBase(slot);
+				if ((ints[i + STATE] & IN_USE) == 0 || ints[i + GENERATION] != (int) (handle >>> 32)) {
+					return false;
+				}
+				this.handle = handle;
+				this.secretId = ints[i + SECRET_ID];
+				this.playerName = playerNames.get(ints[i + PLAYER_ID]);
+				this.corpus = corpora[ints[i + CORPUS_ID]];
+				this.mode = modes[ints[i + CORPUS_ID]];
+				this.state = ints[i + STATE];
+				this.streaks = ints[i + STREAKS];
+				this.guessMask = longs[l + GUESS_MASK];
+				this.wordMask = longs[l + WORD_MASK];
+				this.startedAt = longs[l + STARTED_AT];
+				this.lastAccessNanos = longs[l + LAST_ACCESS];
+				return true;
+			}
+		}
+
+		/**
+		 * Applies a guess to the session and copies its new state
+		 * @param guess is the letter or word guessed, in lower case
+		 * @return the outcome of the guess
+		 */
+		public GuessOutcome guess(String guess) {
+			GuessOutcome outcome = CompactSessionStore.this.guess(handle, guess);
+			moveTo(handle);
+			return outcome;
+		}
+
+		public long getHandle() {
+			return handle;
+		}
+
+		public int getSecretId() {
+			return secretId;
+		}
+
+		public StringCorpus getCorpus() {
+			return corpus;
+		}
+
+		public String getSecret() {
+			return corpus.get(secretId);
+		}
+
+		public String getMode() {
+			return mode;
+		}
+
+		public String getPlayerName() {
+			return playerName;
+		}
+
+		public int getDifficulty() {
+			return state >>> DIFFICULTY_SHIFT & 0xff;
+		}
+
+		public int getAttemptsLeft() {
+			return state & ATTEMPTS_MASK;
+		}
+
+		public int getLongestGuessStreak() {
+			return streaks >>> 16;
+		}
+
+		/**
+		 * @return the mask of the letters and digits guessed, correct or not, by TournamentSecret.symbolOf()
+		 */
+		public long getGuessMask() {
+			return guessMask;
+		}
+
+		/**
+		 * @return the mask of the words of the secret guessed
+		 */
+		public long getWordMask() {
+			return wordMask;
+		}
+
+		public long getStartedAt() {
+			return startedAt;
+		}
+
+		public long getLastAccessNanos() {
+			return lastAccessNanos;
+		}
+
+		public boolean isWon() {
+			return (state & WON) != 0;
+		}
+
+		public boolean isLost() {
+			return (state & ATTEMPTS_MASK) == 0;
+		}
+
+		public boolean isGameOver() {
+			return isWon() || isLost();
+		}
+
+		/**
+		 * Builds the hidden secret string seen by the player, with the letters and digits not revealed yet replaced by underscores
+		 */
+		public StringBuilder getHiddenSecretString() {
+			int length = corpus.length(secretId);
+			StringBuilder hidden = new StringBuilder(length);
+			int token = 0;
+			for (int i = 0; i < length; i++) {
+				char c = corpus.charAt(secretId, i);
+				if (c == ' ') {
+					token++;
+				}
+				hidden.append(isHidden(c, token, guessMask, wordMask) ? '_' : c);
+			}
+			return hidden;
+		}
+	}
+
+	/**
+	 * @return a new flyweight, to be moved to a session with moveTo()
+	 */
+	public Session newSession() {
+		return new Session();
+	}
+
+	/**
+	 * Takes a free slot, allocating a new page of slots when needed. Called while holding the lock of the store
+	 */
+	private int allocateSlot() {
+		if (size == capacity) {
+			throw new IllegalStateException("The session store is full (" + capacity + " sessions)");
+		}
+		int slot;
+		if (freeSlot >= 0) {
+			slot = freeSlot;
+			freeSlot = intPages[slot >>> PAGE_SHIFT][intBase(slot) + SECRET_ID];
+		} else {
+			slot = allocatedSlots;
+			int page = slot >>> PAGE_SHIFT;
+			if (intPages[page] == null) {
+				longPages[page] = new long[PAGE_SLOTS * LONG_FIELDS];
+				intPages[page] = new int[PAGE_SLOTS * INT_FIELDS];
+			}
+			allocatedSlots++;
+		}
+		size++;
+		return slot;
+	}
+
+	/**
+	 * Returns the id of a corpus and counts one more session using it, registering the corpus on first use.
+	 * The id is freed when the last session of the corpus ends, e.g. after the corpus was reloaded. Called while holding the lock of the store
+	 */
+	private int corpusId(StringCorpus corpus, String mode) {
+		Integer id = corpusIds.get(corpus);
+		if (id == null) {
+			if (!freeCorpusIds.isEmpty()) {
+				id = freeCorpusIds.pop();
+			} else if (corpusIds.size() < MAX_CORPORA) {
+				id = corpusIds.size();
+			} else {
+				throw new IllegalStateException("Too many corpora in the session store");
+			}
+			corpora[id] = corpus;
+			modes[id] = mode;
+			corpusIds.put(corpus, id);
+		}
+		corpusSessions[id]++;
+		return id;
+	}
+
+	private boolean isAllocated(int slot) {
+		return slot >= 0 && slot < allocatedSlots;
+	}
+
+	private Object lockOf(int slot) {
+		return locks[slot & (LOCK_STRIPES - 1)];
+	}
+
+	private static int longBase(int slot) {
+		return (slot & (PAGE_SLOTS - 1)) * LONG_FIELDS;
+	}
+
+	private static int intBase(int slot) {
+		return (slot & (PAGE_SLOTS - 1)) * INT_FIELDS;
+	}
+
+	private static long handleOf(int slot, int generation) {
+		return (long) generation << 32 | (slot & 0xffffffffL);
+	}
+
+	/**
+	 * @return true if a character of the secret is still hidden: a letter or digit that was not guessed, in a word that was not guessed
+	 */
+	private static boolean isHidden(char c, int token, long guessMask, long wordMask) {
+		int symbol = TournamentSecret.symbolOf(c);
+		return symbol >= 0 && (guessMask & 1L << symbol) == 0 && (wordMask & 1L << token) == 0;
+	}
+
+	/**
+	 * @return the number of characters of a secret still hidden
+	 */
+	private static int hiddenCount(StringCorpus corpus, int secretId, long guessMask, long wordMask) {
+		int length = corpus.length(secretId);
+		int hidden = 0;
+		int token = 0;
+		for (int i = 0; i < length; i++) {
+			char c = corpus.charAt(secretId, i);
+			if (c == ' ') {
+				token++;
+			} else if (isHidden(c, token, guessMask, wordMask)) {
+				hidden++;
+			}
+		}
+		return hidden;
+	}
+
+	private static boolean containsSymbol(StringCorpus corpus, int secretId, int symbol) {
+		int length = corpus.length(secretId);
+		for (int i = 0; i < length; i++) {
+			if (TournamentSecret.symbolOf(corpus.charAt(secretId, i)) == symbol) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the mask of the words of a secret equal to a guessed word, 0 if the word is not in the secret
+	 */
+	private static long tokensMatching(StringCorpus corpus, int secretId, String word) {
+		int length = corpus.length(secretId);
+		long mask = 0;
+		int token = 0;
+		int start = 0;
+		for (int i = 0; i <= length; i++) {
+			if (i == length || corpus.charAt(secretId, i) == ' ') {
+				if (i - start == word.length()) {
+					boolean equal = true;
+					for (int j = 0; j < word.length() && equal; j++) {
+						equal = corpus.charAt(secretId, start + j) == word.charAt(j);
+					}
+					if (equal) {
+						mask |= 1L << token;
+					}
+				}
+				token++;
+				start = i + 1;
+			}
+		}
+		return mask;
+	}
+}
@@ -0,0 +1,289 @@
+package mari.mvp3;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Text terminal implementation of GameView. It displays game data as plain text lines and reads the player's preferences,
+ * guesses and commands from a reader, one per line. It does not load any AWT or Swing classes, so it starts quickly,
+ * uses little memory, and runs on headless servers.
+ * In scripted mode the input comes from a file and every line read is echoed to the output, so that an automated run
+ * produces a readable transcript.
+ *
+ * Besides guesses, the following commands are accepted: /new (new game), /quit (quit game), /admin (show secret string)
+ * and /player (hide secret string).
+ */
+public class ConsoleView implements GameView {
+
+	public static final String CMD_NEW_GAME = "/new";
+	public static final String CMD_QUIT_GAME = "/quit";
+	public static final String CMD_ADMIN = "/admin";
+	public static final String CMD_PLAYER = "/player";
+	private static final int LEADERBOARD_LINES = 10; // Number of leaderboard results printed
+	private static final List<String> GAME_MODES = Arrays.asList("words", "phrases", "tournament"); // Modes offered by the Swing view
+
+	private final BufferedReader in;
+	private final PrintStream out;
+	private final boolean scripted; // Whether input lines are echoed to the output
+	private String mode = "";
+	private String difficulty = "";
+	private String name = "";
+	private String guess = "";
+	private String secretString = "";
+	private boolean adminView;
+	private final ArrayList<Runnable> guessListeners = new ArrayList<>();
+	private final ArrayList<Runnable> quitGameListeners = new ArrayList<>();
+	private final ArrayList<Runnable> newGameListeners = new ArrayList<>();
+	private final ArrayList<Runnable> adminListeners = new ArrayList<>();
+	private final ArrayList<Runnable> playerListeners = new ArrayList<>();
+	private final ArrayList<Runnable> closeListeners = new ArrayList<>();
+
+	/**
+	 * @param in       is the reader the player's input is read from
+	 * @param out      is the stream game data is printed to
+	 * @param scripted is true if input lines must be echoed to the output
+	 */
+	public ConsoleView(BufferedReader in, PrintStream out, boolean scripted) {
+		this.in = in;
+		this.out = out;
+		this.scripted = scripted;
+	}
+
+	/**
+	 * Prints a prompt and reads one line of input
+	 * @return the line without leading and trailing spaces, or null if the input ended
+	 */
+	private String prompt(String text) {
+		out.print(text + " ");
+		String line;
+		try {
+			line = in.readLine();
+		} catch (IOException e) {
+			line = null;
+		}
+		if (line == null) {
+			out.println();
+			return null;
+		}
+		if (scripted) {
+			out.println(line);
+		}
+		return line.trim();
+	}
+
+	/**
+	 * Prompts for the name, the play mode and the difficulty level. A mode or level that the Swing view does not offer is
+	 * rejected with an error and prompted again; an empty answer is passed on, so that the Controller asks for all the fields
+	 */
+	public boolean didPlayerSubmitPreferences() {
+		String name = prompt("Enter your name:");
+		String mode = name == null ? null : promptMode();
+		String difficulty = mode == null ? null : promptDifficulty();
+		if (difficulty == null) {
+			return false;
+		}
+		this.name = name;
+		this.mode = mode;
+		this.difficulty = difficulty;
+		return true;
+	}
+
+	/**
+	 * @return the play mode in lower case, or null if the input ended
+	 */
+	private String promptMode() {
+		while (true) {
+			String mode = prompt("Guess words or phrases, or join a tournament [words/phrases/tournament]:");
+			if (mode == null || mode.isEmpty() || GAME_MODES.contains(mode.toLowerCase())) {
+				return mode == null ? null : mode.toLowerCase();
+			}
+			showErrorMsg("The play mode must be words, phrases or tournament");
+		}
+	}
+
+	/**
+	 * @return the difficulty level, from 1 to 10, or null if the input ended
+	 */
+	private String promptDifficulty() {
+		while (true) {
+			String difficulty = prompt("Difficulty level [1-" + CorpusManager.MAX_DIFFICULTY + "]:");
+			if (difficulty == null || difficulty.isEmpty()) {
+				return difficulty;
+			}
+			if (difficulty.matches("\\d{1,2}")) {
+				int level = Integer.parseInt(difficulty);
+				if (level >= 1 && level <= CorpusManager.MAX_DIFFICULTY) {
+					return Integer.toString(level);
+				}
+			}
+			showErrorMsg("The difficulty level must be a number from 1 to " + CorpusManager.MAX_DIFFICULTY);
+		}
+	}
+
+	public String getGameMode() {
+		return mode;
+	}
+
+	public String getDifficulty() {
+		return difficulty;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void showErrorMsg(String msg) {
+		out.println("! " + msg);
+	}
+
+	public void showGameWindow() {
+		out.println("Guess the secret word or phrase. Guess one letter or one word at a time!");
+		out.println("Commands: " + CMD_NEW_GAME + " " + CMD_QUIT_GAME + " " + CMD_ADMIN + " " + CMD_PLAYER);
+	}
+
+	public void showLeaderboard(Leaderboard lb) {
+		List<LeaderboardResult> results = lb.getLeaderboardResults();
+		out.println("Leaderboard");
+		int lines = Math.min(LEADERBOARD_LINES, results.size());
+		for (int i = 0; i < lines; i++) {
+			LeaderboardResult r = results.get(i);
+			out.println(String.format("%3d. %-20s %d", i + 1, r.getName(), r.getScore()));
+		}
+		List<LeaderboardResult> bests = lb.getTopPersonalBests(LEADERBOARD_LINES);
+		out.println("Personal bests");
+		for (int i = 0; i < bests.size(); i++) {
+			LeaderboardResult r = bests.get(i);
+			out.println(String.format("%3d. %-20s %d", i + 1, r.getName(), r.getScore()));
+		}
+	}
+
+	public void resetGameParameters(String secretString, StringBuilder hiddenSecretString, int attemptsLeft) {
+		this.secretString = secretString;
+		out.println();
+		setSecretTextArea(hiddenSecretString.toString());
+		out.println("Attempts left: " + attemptsLeft);
+		if (adminView) {
+			out.println("Secret string: " + secretString);
+		}
+	}
+
+	/**
+	 * Returns the first word of the last input line, in lower case
+	 */
+	public String getGuess() {
+		return guess;
+	}
+
+	public void clearGuessTextField() {
+	}
+
+	public void focusOnGuessTextField() {
+	}
+
+	public void setFeedback(String text) {
+		out.println(text);
+	}
+
+	public void runCorrectGuessRoutine(StringBuilder hiddenSecretString) {
+		out.println("You guessed correctly!");
+		setSecretTextArea(hiddenSecretString.toString());
+	}
+
+	public void runIncorrectGuessRoutine(int attemptsLeft, String guess) {
+		out.println("You guessed incorrectly! Attempts left: " + attemptsLeft);
+	}
+
+	public void setScore(int score) {
+		out.println("Score: " + score);
+	}
+
+	public void setSecretTextArea(String text) {
+		out.println(text.replace("", " ").trim());
+	}
+
+	public boolean getPlayAgain(String winOrLose, String score) {
+		String answer = prompt("You " + winOrLose + "! Your score is " + score + ". Do you want to play again? [y/n]");
+		return answer != null && answer.toLowerCase().startsWith("y");
+	}
+
+	/**
+	 * Asks for confirmation to quit. Quitting is confirmed when the input has ended
+	 */
+	public boolean confirmQuitGame() {
+		String answer = prompt("Are you sure you want to quit the game? [y/n]");
+		return answer == null || answer.toLowerCase().startsWith("y");
+	}
+
+	public void showAdminView() {
+		adminView = true;
+		out.println("Secret string: " + secretString);
+	}
+
+	public void hideAdminView() {
+		adminView = false;
+	}
+
+	public void addGuessListener(Runnable listener) {
+		guessListeners.add(listener);
+	}
+
+	public void addQuitGameListener(Runnable listener) {
+		quitGameListeners.add(listener);
+	}
+
+	public void addNewGameListener(Runnable listener) {
+		newGameListeners.add(listener);
+	}
+
+	public void addAdminListener(Runnable listener) {
+		adminListeners.add(listener);
+	}
+
+	public void addPlayerListener(Runnable listener) {
+		playerListeners.add(listener);
+	}
+
+	public void addCloseListener(Runnable listener) {
+		closeListeners.add(listener);
+	}
+
+	/**
+	 * Reads input lines until the input ends and dispatches each one as a command or a guess.
+	 * When the input ends, the close listeners are run
+	 */
+	public void startEventLoop() {
+		String line;
+		while ((line = prompt(">")) != null) {
+			switch (line.toLowerCase()) {
+			case CMD_NEW_GAME:
+				fire(newGameListeners);
+				break;
+			case CMD_QUIT_GAME:
+				fire(quitGameListeners);
+				break;
+			case CMD_ADMIN:
+				fire(adminListeners);
+				break;
+			case CMD_PLAYER:
+				fire(playerListeners);
+				break;
+			default:
+				// Only the first word is used as the guess, as in the Swing view
+				int endIndex = line.indexOf(" ");
+				guess = (endIndex != -1 ? line.substring(0, endIndex) : line).toLowerCase().trim();
+				fire(guessListeners);
+			}
+		}
+		fire(closeListeners);
+	}
+
+	private static void fire(ArrayList<Runnable> listeners) {
+		for (Runnable listener : listeners) {
+			listener.run();
+		}
+	}
+}
@@ -1,15 +1,15 @@
 package mari.mvp3; 
 
-import java.awt.event.WindowAdapter;
-import java.awt.event.WindowEvent;
+import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileReader;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.io.InputStreamReader;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
-import javax.swing.JOptionPane;
-
 /**
  * It is an intermediary between the View and the HangmanGame Model.
  * It implements the business logic for the view (action listeners). 
@@ -21,7 +21,7 @@ import javax.swing.JOptionPane;
  */
 public class Controller {
 
-	private View view; 
+	private GameView view; 
 	private HangmanGame game; 
 
 	/**
@@ -33,36 +33,57 @@ public class Controller {
 	public static final String HM_KEY_NAME = "name";
 
 	/**
-	 * Constructor that takes a View object representing the GUI as argument and
+	 * Constructor that takes a GameView object representing the GUI or the console as argument and
 	 * sets it to the view attribute. 
 	 * Note that the game attribute is not created in this constructor. This is because
 	 * the creation of a HangmanGame requires first obtaining user 
 	 * preferences (play mode, difficulty level) via the View
 	 * 
-	 * @param view is the View object
+	 * @param view is the GameView object
 	 */
-	public Controller(View view) {
+	public Controller(GameView view) {
 		this.view = view;  
 	}
 
+	/**
+	 * Defines the command line options that select the console front end instead of the Swing GUI
+	 */
+	public static final String ARG_HEADLESS = "--headless";
+	public static final String ARG_SCRIPT = "--script";
+	public static final String ARG_SPECTATE = "--spectate";
+	public static final String ARG_OFFHEAP_LEADERBOARD = "--offheap-leaderboard";
+
 	/**
 	 * Main method that creates a Controller object with view and game attributes,
 	 * implements the View business logic (action listeners), and prepares game and 
-	 * view for a new game
+	 * view for a new game.
+	 * The Swing GUI is used by default. The console front end is used with --headless (input read from the terminal),
+	 * with --script followed by a file name (input read from the file and echoed), or when Java runs in headless mode.
+	 * With --spectate, optionally followed by a port number, spectators can follow the game live on http://localhost:8081/spectate
+	 * With --offheap-leaderboard, the leaderboards are kept in memory-mapped files instead of the heap (see OffHeapLeaderboard)
 	 * @param args
 	 * @throws LeaderboardException 
 	 * @throws WordListException
 	 * @throws FileNotFoundException
 	 */
 	public static void main(String... args) throws LeaderboardException, WordListException, FileNotFoundException {
-		View view = null;
+		GameView view = null;
 		try {
-			view = new View();
+			view = createView(args);
+		} catch (FileNotFoundException e) {
+			System.out.println("The input script was not found");
+			System.exit(0);
 		} catch (Exception e) {
 			System.out.println("There was a problem creating the GUI");
 			System.exit(0);
 		}
 		Controller controller = new Controller(view);
+		openEventLog();
+		loadScoringRules();
+		watchCorpora();
+		startSpectatorFeed(args);
+		Leaderboard.useOffHeapStore(Arrays.asList(args).contains(ARG_OFFHEAP_LEADERBOARD));
+		startLeaderboardPersister();
 		Map<String, String> preferences = controller.getPlayerPreferences();
 		HangmanGame game = null;
 		try {
@@ -80,6 +101,111 @@ public class Controller {
 		controller.setHangmanGame(game);
 		controller.setUpViewEvents();
 		controller.resetGameParameters();
+		view.startEventLoop();
+	}
+
+	/**
+	 * Creates the front end selected by the command line arguments. The View class is only loaded when the Swing GUI is used,
+	 * so the console front end starts without loading AWT and Swing
+	 * @param args are the command line arguments
+	 * @return the GameView to use
+	 * @throws Exception if the script file is not found or the GUI cannot be created
+	 */
+	private static GameView createView(String... args) throws Exception {
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals(ARG_SCRIPT) && i + 1 < args.length) {
+				return new ConsoleView(new BufferedReader(new FileReader(args[i + 1])), System.out, true);
+			}
+			if (args[i].equals(ARG_HEADLESS)) {
+				return new ConsoleView(new BufferedReader(new InputStreamReader(System.in)), System.out, false);
+			}
+		}
+		if (Boolean.getBoolean("java.awt.headless")) {
+			return new ConsoleView(new BufferedReader(new InputStreamReader(System.in)), System.out, false);
+		}
+		return new View();
+	}
+
+	/**
+	 * Opens the game event log so that every game action is recorded for auditing and offline analytics.
+	 * The log is closed by a shutdown hook, which commits any pending events when the application exits.
+	 * If the log cannot be opened, the game continues without recording events
+	 */
+	private static void openEventLog() {
+		try {
+			GameEventLog eventLog = new GameEventLog(GameEventLog.filename_event_log);
+			HangmanGame.setEventLog(eventLog);
+			Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+				try {
+					eventLog.close();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}));
+		} catch (IOException e) {
+			System.out.println("There was a problem opening the game event log. Game actions will not be recorded");
+		}
+	}
+
+	/**
+	 * Loads the scoring rules from the scoring rules file, if there is one in the working directory. The default rules are used otherwise
+	 */
+	private static void loadScoringRules() {
+		if (!new File(ScoringRules.filename_scoring_rules).exists()) {
+			return;
+		}
+		try {
+			ScoringRules.setActive(ScoringRules.load(ScoringRules.filename_scoring_rules));
+		} catch (IOException e) {
+			System.out.println("There was a problem reading the scoring rules (" + e.getMessage() + "). The default rules will be used");
+		}
+	}
+
+	/**
+	 * Starts the spectator feed if it was requested on the command line, and registers it as the live listener of the games
+	 * @param args are the command line arguments
+	 */
+	private static void startSpectatorFeed(String... args) {
+		for (int i = 0; i < args.length; i++) {
+			if (!args[i].equals(ARG_SPECTATE)) {
+				continue;
+			}
+			int port = SpectatorFeed.DEFAULT_PORT;
+			if (i + 1 < args.length && args[i + 1].matches("\\d+")) {
+				port = Integer.parseInt(args[i + 1]);
+			}
+			SpectatorFeed feed = new SpectatorFeed();
+			try {
+				feed.start(port);
+				HangmanGame.setLiveListener(feed);
+			} catch (IOException e) {
+				System.out.println("There was a problem starting the spectator feed on port " + port + ". The game will not be visible to spectators");
+			}
+			return;
+		}
+	}
+
+	/**
+	 * Saves the leaderboard in the background, so that the New Game and Quit buttons and the window close button never wait for the disk.
+	 * A shutdown hook writes the changes not saved yet when the application exits
+	 */
+	private static void startLeaderboardPersister() {
+		LeaderboardPersister persister = new LeaderboardPersister();
+		Leaderboard.setPersister(persister);
+		persister.start();
+		Runtime.getRuntime().addShutdownHook(new Thread(persister::close, "leaderboard-flush"));
+	}
+
+	/**
+	 * Starts reloading the phrase files in the background when they are edited, so that new games use the updated phrases
+	 * without restarting the application
+	 */
+	private static void watchCorpora() {
+		try {
+			CorpusManager.forPhraseFiles().start();
+		} catch (IOException e) {
+			System.out.println("There was a problem watching the phrase files. Changes will be used after a restart");
+		}
 	}
 
 	/**
@@ -105,6 +231,9 @@ public class Controller {
 			while (mode.isEmpty() || name.isEmpty() || difficulty.isEmpty()) {
 				view.showErrorMsg("All fields are required");
 				didPlayerSubmitPreferences = view.didPlayerSubmitPreferences();
+				if (!didPlayerSubmitPreferences) {
+					System.exit(0);
+				}
 				mode = view.getGameMode();
 				difficulty = view.getDifficulty();
 				name = view.getName();
@@ -165,7 +294,7 @@ public class Controller {
 		* Upon detecting a click on the Guess button, controller manipulates view and game to
 		* to produce the appropriate the appropriate response
 		*/
-		view.getGuessButton().addActionListener(e -> {
+		view.addGuessListener(() -> {
 			int attemptsLeft = game.getAttemptsLeft();
 			// If a guess is submitted when the game is already won or lost, view displays error message and method returns; 
 			if (attemptsLeft == 0) {
@@ -182,37 +311,28 @@ public class Controller {
 			view.clearGuessTextField();
 			view.focusOnGuessTextField();
 
-			// If the guess is an empty guess or a special character, view displays error message and method returns; 
-			if (guess.equals("")) {
+			// The game applies the guess; the view displays the outcome. If the guess is empty, a special character or repeated, method returns
+			GuessOutcome outcome = game.submitGuess(guess);
+			switch (outcome) {
+			case EMPTY:
 				view.showErrorMsg("You did not enter any guess. Try again!");
 				return;
-			}
-			boolean isInvalidGuess = guess.matches("[^A-Za-z0-9]");
-			if (isInvalidGuess) {
+			case INVALID:
 				view.showErrorMsg("You entered an invalid character. Only letters and numbers are allowed. Try again!");
 				return;
-			}
-
-			// If guess is repeated guess, method returns; 
-			boolean isGuessRepeated = game.isGuessRepeated(guess);
-			if (isGuessRepeated) {
+			case REPEATED:
 				view.setFeedback("You repeated your guess");
 				return;
-			}
-
-			boolean isGuessCorrect = game.isGuessCorrect(guess);
-			// If guess is correct, game updates secret word and view reflects this update;
-			if (isGuessCorrect) {
-				game.addCorrectGuess(guess);
-				game.revealGuessedString(guess);
+			case CORRECT: // If guess is correct, game updated secret word and view reflects this update;
 				StringBuilder wordToGuess = game.getWordToGuess();
 				view.runCorrectGuessRoutine(wordToGuess);
-			} else { // If guess is incorrect, game reduces attempts left and records incorrect guesses, and view reflects these updates 
-				game.decreaseAttemptByOne();
+				break;
+			case INCORRECT: // If guess is incorrect, game reduced attempts left and recorded incorrect guess, and view reflects these updates 
 				attemptsLeft = game.getAttemptsLeft();
-				game.addIncorrectGuess(guess);
-				ArrayList<String> incorrectGuesses = game.getIncorrectGuesses();
 				view.runIncorrectGuessRoutine(attemptsLeft, guess);
+				break;
+			default:
+				return;
 			}
 			
 			// If game is lost or won, a score is calculated and saved, the updated leaderboard is displayed, 
@@ -244,9 +364,10 @@ public class Controller {
 
 		/**
 		* Upon detecting a click on the Quit button, displays pop-up window requesting confirmation to quit.
-		* If player confirms to quit, scores are saved to file for persistence, and application exits; Otherwise, it returns
+		* If player confirms to quit, scores are saved to file for persistence, and application exits; Otherwise, it returns.
+		* The scores are written by the LeaderboardPersister, whose shutdown hook writes them before the application exits
 		*/
-		view.getQuitGameButton().addActionListener(e -> {
+		view.addQuitGameListener(() -> {
 			if (view.confirmQuitGame()) {
 				game.saveScoresToFile();
 				System.exit(0);
@@ -259,7 +380,7 @@ public class Controller {
 * and game preferences to start a new game. A HangmanGame object is created and configured with the preferences.
 * The game state parameters and view are reset to begin a new game.
 */	
-		view.getNewGameButton().addActionListener(e -> {
+		view.addNewGameListener(() -> {
 				game.saveScoresToFile();
 				Map<String, String> preferences = getPlayerPreferences();// Hash map stores player's name, play mode, and difficulty level
 				HangmanGame game = null;
@@ -285,14 +406,14 @@ public class Controller {
 		/**
 		* Makes the secret string visible upon detecting a click on the Admin Mode button
 		*/
-		view.getAdminButton().addActionListener(e -> {
+		view.addAdminListener(() -> {
 			view.showAdminView();
 		});
 
 		/**
 		* Makes the secret string invisible upon detecting a click on the Player Mode button
 		*/
-		view.getPlayerButton().addActionListener(e -> {
+		view.addPlayerListener(() -> {
 			view.hideAdminView();
 		});
 
@@ -300,15 +421,11 @@ public class Controller {
 		* Requests confirmation to exit the application upon detecting a click X button of the window
 		* Exits application upon player confirmation.
 		*/
-		view.getFrame().addWindowListener(new WindowAdapter() {
-			@Override
-			public void windowClosing(WindowEvent windowEvent) {
-				if (view.confirmQuitGame()) {
-					game.saveScoresToFile();
-					System.exit(0);
-				} 
-			}
-
+		view.addCloseListener(() -> {
+			if (view.confirmQuitGame()) {
+				game.saveScoresToFile();
+				System.exit(0);
+			} 
 		});
 
 	}
@@ -317,11 +434,11 @@ public class Controller {
 	 * Getters and setters for Controller class' view and game attributes
 	 * @return
 	 */
-	public View getView() {
+	public GameView getView() {
 		return view;
 	}
 
-	public void setView(View view) {
+	public void setView(GameView view) {
 		this.view = view;
 	}
 
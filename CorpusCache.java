@@ -0,0 +1,89 @@
+package mari.mvp3;
+
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide cache of the word and phrase lists, shared by every game. Each list is kept once as an immutable StringCorpus
+ * under a key identifying its source (e.g. "words:3", or "phrases:level3" for the phrases of a level, shared by the phrase and
+ * tournament modes), so that games played with the same play mode and difficulty level reference the same corpus instead of each
+ * holding its own copy.
+ */
+public class CorpusCache {
+
+	/**
+	 * Loads the list of strings of a corpus that is not cached yet
+	 */
+	public interface Loader {
+		ArrayList<String> load() throws WordListException, FileNotFoundException;
+	}
+
+	/**
+	 * Loads a corpus that is already packed, such as a word list processed by DictionaryPipeline
+	 */
+	public interface CorpusLoader {
+		StringCorpus load() throws WordListException, FileNotFoundException;
+	}
+
+	private final static ConcurrentHashMap<String, StringCorpus> corpora = new ConcurrentHashMap<>();
+
+	private CorpusCache() {
+	}
+
+	/**
+	 * Returns the cached corpus of a key, loading and packing it if it is not cached yet.
+	 * If two games load the same corpus at the same time, both load it but only the first corpus cached is kept
+	 * @param key identifies the source of the corpus
+	 * @param loader loads the list of strings if the corpus is not cached
+	 * @return the shared corpus
+	 * @throws WordListException if the list of words cannot be retrieved
+	 * @throws FileNotFoundException if the file containing the list of phrases is not found
+	 */
+	public static StringCorpus getOrLoad(String key, Loader loader) throws WordListException, FileNotFoundException {
+		return getOrLoadCorpus(key, () -> StringCorpus.of(loader.load()));
+	}
+
+	/**
+	 * Returns the cached corpus of a key, loading it already packed if it is not cached yet
+	 * @param key identifies the source of the corpus
+	 * @param loader loads the packed corpus if it is not cached
+	 * @return the shared corpus
+	 * @throws WordListException if the list of words cannot be retrieved
+	 * @throws FileNotFoundException if the file containing the list of phrases is not found
+	 */
+	public static StringCorpus getOrLoadCorpus(String key, CorpusLoader loader) throws WordListException, FileNotFoundException {
+		StringCorpus corpus = corpora.get(key);
+		if (corpus != null) {
+			return corpus;
+		}
+		StringCorpus loaded = loader.load();
+		corpus = corpora.putIfAbsent(key, loaded);
+		return corpus != null ? corpus : loaded;
+	}
+
+	/**
+	 * @return the cached corpus of a key, or null if it is not cached
+	 */
+	public static StringCorpus get(String key) {
+		return corpora.get(key);
+	}
+
+	/**
+	 * Atomically replaces a cached corpus with a new version. Games that already hold the old version keep it until they pick a new secret string.
+	 * Nothing is cached if the key is not cached anymore, since the next game loads the latest list anyway
+	 * @param key identifies the source of the corpus
+	 * @param corpus is the new version of the corpus
+	 * @return the replaced corpus, or null if the key was not cached
+	 */
+	public static StringCorpus replace(String key, StringCorpus corpus) {
+		return corpora.replace(key, corpus);
+	}
+
+	/**
+	 * Removes a corpus from the cache so that the next game loads it again. Games already using it keep their reference
+	 */
+	public static void invalidate(String key) {
+		corpora.remove(key);
+	}
+}
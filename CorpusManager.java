@@ -0,0 +1,221 @@
+package mari.mvp3;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reloads the word and phrase corpora while the game is running. The phrase files are watched with a WatchService on their
+ * directory; when a file changes, a background thread loads it, packs it into a new StringCorpus and swaps it into the
+ * CorpusCache with a single atomic replace. Games in progress keep the secret string they already picked and new games
+ * (including "play again") pick from the new version, so the game loop never waits for a reload. The list of strings of the
+ * new version is dropped as soon as it is packed, and the old version is released once no game references it.
+ * A file can feed several corpora: when a phrase file changes, the PhraseIndex is rebuilt and the phrases of every difficulty level are
+ * swapped in. The dictionary of words is served by a URL that cannot be watched, so it is refreshed on demand with refreshDictionary().
+ */
+public class CorpusManager {
+
+	protected final static long QUIET_PERIOD_MILLIS = 200; // Editors write a file in several steps, so wait until it stops changing
+	protected final static int MAX_DIFFICULTY = 10;
+
+	private final Path directory;
+	private final ConcurrentHashMap<String, Set<String>> watchedFiles = new ConcurrentHashMap<>(); // File name -> corpus keys
+	private final ConcurrentHashMap<String, CorpusCache.CorpusLoader> loaders = new ConcurrentHashMap<>(); // Corpus key -> loader
+	private WatchService watchService;
+	private Thread watcher;
+	private volatile long reloads; // Corpora swapped in since the manager was created
+	private volatile long failedReloads; // Reloads that failed, leaving the previous version in place
+	private volatile long lastLoadNanos; // Time spent loading and packing the last corpus reloaded
+	private volatile long lastSwapNanos; // Time spent swapping the last corpus reloaded into the cache
+	private volatile String lastReloadedKey;
+
+	/**
+	 * @param directory is the directory containing the phrase files
+	 */
+	public CorpusManager(Path directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Creates a manager watching the two phrase files in the working directory
+	 */
+	public static CorpusManager forPhraseFiles() {
+		CorpusManager manager = new CorpusManager(Paths.get("").toAbsolutePath());
+		manager.watchPhraseFile(HangmanPhraseMode.filename_easy_phrases);
+		manager.watchPhraseFile(HangmanPhraseMode.filename_difficult_phrases);
+		return manager;
+	}
+
+	/**
+	 * Watches a phrase file of the directory. The phrases of all the difficulty levels are graded together by the PhraseIndex,
+	 * so a change reloads every level, with the corpus keys used by HangmanPhraseMode. The first level reloaded rebuilds the index
+	 * @param filename is the name of the phrase file
+	 */
+	public void watchPhraseFile(String filename) {
+		for (int difficulty = 1; difficulty <= MAX_DIFFICULTY; difficulty++) {
+			int level = difficulty;
+			watch(filename, HangmanPhraseMode.getCorpusKey(level), () -> HangmanPhraseMode.loadLevel(level));
+		}
+	}
+
+	/**
+	 * Watches a file of the directory
+	 * @param filename is the name of the file
+	 * @param key is the corpus key of the file in the CorpusCache
+	 * @param loader loads the corpus of the file
+	 */
+	public void watch(String filename, String key, CorpusCache.CorpusLoader loader) {
+		loaders.put(key, loader);
+		watchedFiles.computeIfAbsent(filename, f -> ConcurrentHashMap.newKeySet()).add(key);
+	}
+
+	/**
+	 * Starts the daemon thread that watches the directory and reloads the files that change
+	 * @throws IOException if the directory cannot be watched
+	 */
+	public synchronized void start() throws IOException {
+		if (watcher != null) {
+			return;
+		}
+		watchService = FileSystems.getDefault().newWatchService();
+		directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+		watcher = new Thread(this::watchLoop, "corpus-reload");
+		watcher.setDaemon(true);
+		watcher.start();
+	}
+
+	/**
+	 * Stops the thread started by start()
+	 */
+	public synchronized void stop() {
+		if (watcher == null) {
+			return;
+		}
+		try {
+			watchService.close();
+		} catch (IOException e) {
+			// The watcher thread stops anyway once the service is closed
+		}
+		watcher.interrupt();
+		watcher = null;
+		watchService = null;
+	}
+
+	/**
+	 * Collects the watched files that changed until no change is seen for the quiet period, then reloads them
+	 */
+	private void watchLoop() {
+		WatchService service = watchService;
+		Set<String> changed = new LinkedHashSet<>();
+		try {
+			while (true) {
+				WatchKey key = changed.isEmpty() ? service.take() : service.poll(QUIET_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+				if (key == null) {
+					for (String filename : changed) {
+						for (String corpusKey : watchedFiles.get(filename)) {
+							reload(corpusKey);
+						}
+					}
+					changed.clear();
+					continue;
+				}
+				for (WatchEvent<?> event : key.pollEvents()) {
+					Object context = event.context();
+					if (context instanceof Path && watchedFiles.containsKey(context.toString())) {
+						changed.add(context.toString());
+					}
+				}
+				key.reset();
+			}
+		} catch (InterruptedException | ClosedWatchServiceException e) {
+			// Stopped
+		}
+	}
+
+	/**
+	 * Loads a new version of a corpus and swaps it into the CorpusCache. A corpus that is not cached is not loaded, since the
+	 * next game that needs it loads the latest version anyway. If the load fails the previous version stays in place.
+	 * Reloads run one at a time, so at most one new version is being built in memory next to the cached ones
+	 * @param key is the corpus key
+	 * @return true if a new version was swapped in
+	 */
+	public boolean reload(String key) {
+		CorpusCache.CorpusLoader loader = loaders.get(key);
+		return loader != null && reload(key, loader);
+	}
+
+	private synchronized boolean reload(String key, CorpusCache.CorpusLoader loader) {
+		if (CorpusCache.get(key) == null) {
+			return false;
+		}
+		long start = System.nanoTime();
+		StringCorpus corpus;
+		try {
+			corpus = loader.load();
+		} catch (WordListException | FileNotFoundException e) {
+			failedReloads++;
+			return false;
+		}
+		if (corpus.size() == 0) { // A file caught while being truncated would make every new game fail
+			failedReloads++;
+			return false;
+		}
+		long loaded = System.nanoTime();
+		boolean swapped = CorpusCache.replace(key, corpus) != null;
+		long end = System.nanoTime();
+		if (swapped) {
+			lastLoadNanos = loaded - start;
+			lastSwapNanos = end - loaded;
+			lastReloadedKey = key;
+			reloads++;
+		}
+		return swapped;
+	}
+
+	/**
+	 * Fetches the dictionary again for every difficulty level currently cached and swaps in the new versions.
+	 * This blocks while the dictionary is downloaded, so it must be called from a background thread
+	 * @return the number of difficulty levels refreshed
+	 */
+	public int refreshDictionary() {
+		int refreshed = 0;
+		for (int difficulty = 1; difficulty <= MAX_DIFFICULTY; difficulty++) {
+			int level = difficulty;
+			if (reload("words:" + level, () -> HangmanWordMode.loadDictionary(level).getCorpus())) {
+				refreshed++;
+			}
+		}
+		return refreshed;
+	}
+
+	public long getReloads() {
+		return reloads;
+	}
+
+	public long getFailedReloads() {
+		return failedReloads;
+	}
+
+	public long getLastLoadNanos() {
+		return lastLoadNanos;
+	}
+
+	public long getLastSwapNanos() {
+		return lastSwapNanos;
+	}
+
+	public String getLastReloadedKey() {
+		return lastReloadedKey;
+	}
+}
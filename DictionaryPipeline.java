@@ -0,0 +1,355 @@
+package mari.mvp3;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Preprocessing stage between fetching a word list and serving it. The raw bytes of the list are split into chunks at line breaks,
+ * and the chunks are processed in parallel: each line is trimmed and lower cased in place, then rejected if it is empty, if it has a
+ * character that the hidden secret string cannot hide (anything but the letters a to z and the digits 0 to 9), or if it is longer
+ * than MAX_WORD_LENGTH. The words kept are bucketed by length, so duplicates can only be in the same bucket, and the buckets are
+ * deduplicated in parallel with a hash table of offsets into the raw bytes. The words are finally copied once into a Latin-1
+ * StringCorpus, ordered by length and then by first occurrence. No String is created for the words along the way.
+ * The counts of the rejected lines are recorded in LoadStatistics.
+ */
+public class DictionaryPipeline {
+
+	protected final static int MAX_WORD_LENGTH = 32; // Longest word kept. Longer entries are not playable words
+	protected final static int CHUNKS_PER_THREAD = 4; // Chunks per core, so that cores that finish early can take more chunks
+	protected final static int MIN_CHUNK_BYTES = 1 << 16;
+
+	/**
+	 * Words of a processed list, ready to be served
+	 */
+	public static final class Dictionary {
+
+		private final StringCorpus corpus;
+		private final int[] lengthStarts; // Words of length l are the entries lengthStarts[l] to lengthStarts[l + 1] - 1
+		private final LoadStatistics statistics;
+
+		private Dictionary(StringCorpus corpus, int[] lengthStarts, LoadStatistics statistics) {
+			this.corpus = corpus;
+			this.lengthStarts = lengthStarts;
+			this.statistics = statistics;
+		}
+
+		/**
+		 * @return the words, ordered by length and then by first occurrence in the list
+		 */
+		public StringCorpus getCorpus() {
+			return corpus;
+		}
+
+		public LoadStatistics getStatistics() {
+			return statistics;
+		}
+
+		/**
+		 * @param length is a word length, from 1 to MAX_WORD_LENGTH
+		 * @return the index in the corpus of the first word of the length
+		 */
+		public int getFirstOfLength(int length) {
+			return lengthStarts[length];
+		}
+
+		/**
+		 * @param length is a word length, from 1 to MAX_WORD_LENGTH
+		 * @return the number of words of the length
+		 */
+		public int getCountOfLength(int length) {
+			return lengthStarts[length + 1] - lengthStarts[length];
+		}
+
+		/**
+		 * @return the words as a list of strings, for the callers of CorpusCache.Loader
+		 */
+		public ArrayList<String> toList() {
+			ArrayList<String> words = new ArrayList<>(corpus.size());
+			for (int i = 0; i < corpus.size(); i++) {
+				words.add(corpus.get(i));
+			}
+			return words;
+		}
+	}
+
+	/**
+	 * Growable list of int offsets, so that a chunk can record millions of words without boxing them
+	 */
+	private static final class IntList {
+		int[] values = new int[16];
+		int size;
+
+		void add(int value) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = value;
+		}
+	}
+
+	/**
+	 * Words of a chunk, as the offsets of their first byte by length
+	 */
+	private static final class Chunk {
+		final IntList[] starts = new IntList[MAX_WORD_LENGTH + 1];
+		int lines;
+		int empty;
+		int modified;
+		int invalid;
+		int tooLong;
+	}
+
+	private DictionaryPipeline() {
+	}
+
+	/**
+	 * Reads a word list from a stream and processes it
+	 * @param in is the stream, read to the end but not closed
+	 * @param source is the URL or file name of the list, for the statistics
+	 * @return the processed words
+	 * @throws IOException if the stream cannot be read
+	 */
+	public static Dictionary process(InputStream in, String source) throws IOException {
+		long start = System.nanoTime();
+		byte[] bytes = in.readAllBytes();
+		long read = System.nanoTime();
+		Dictionary dictionary = process(bytes, bytes.length, source);
+		dictionary.statistics.readNanos = read - start;
+		return dictionary;
+	}
+
+	/**
+	 * Processes the raw bytes of a word list, one word per line. The bytes are lower cased and trimmed in place
+	 * @param bytes are the bytes of the list, in an ASCII compatible encoding such as UTF-8
+	 * @param length is the number of bytes of the list
+	 * @param source is the URL or file name of the list, for the statistics
+	 * @return the processed words
+	 */
+	public static Dictionary process(byte[] bytes, int length, String source) {
+		long start = System.nanoTime();
+		int[] bounds = chunkBounds(bytes, length);
+		Chunk[] chunks = new Chunk[bounds.length - 1];
+		IntStream.range(0, chunks.length).parallel().forEach(c -> chunks[c] = scan(bytes, bounds[c], bounds[c + 1]));
+
+		// Deduplicates each length bucket, keeping the chunks in order so that the first occurrence of a word is kept
+		int[][] kept = new int[MAX_WORD_LENGTH + 1][];
+		IntStream.rangeClosed(1, MAX_WORD_LENGTH).parallel().forEach(l -> kept[l] = deduplicate(bytes, l, chunks));
+
+		int[] lengthStarts = new int[MAX_WORD_LENGTH + 2];
+		long total = 0;
+		for (int l = 1; l <= MAX_WORD_LENGTH; l++) {
+			lengthStarts[l + 1] = lengthStarts[l] + kept[l].length;
+			total += (long) l * kept[l].length;
+		}
+		if (total > Integer.MAX_VALUE - 8) {
+			throw new IllegalArgumentException(source + " is too large to be packed in a corpus");
+		}
+		int words = lengthStarts[MAX_WORD_LENGTH + 1];
+		byte[] packed = new byte[(int) total];
+		int[] offsets = new int[words + 1];
+		int[] bucketOffsets = new int[MAX_WORD_LENGTH + 2];
+		for (int l = 1; l <= MAX_WORD_LENGTH; l++) {
+			bucketOffsets[l + 1] = bucketOffsets[l] + l * kept[l].length;
+		}
+		IntStream.rangeClosed(1, MAX_WORD_LENGTH).parallel().forEach(l -> {
+			int position = bucketOffsets[l];
+			int entry = lengthStarts[l];
+			for (int wordStart : kept[l]) {
+				offsets[entry++] = position;
+				System.arraycopy(bytes, wordStart, packed, position, l);
+				position += l;
+			}
+		});
+		offsets[words] = packed.length;
+
+		LoadStatistics stats = new LoadStatistics();
+		stats.source = source;
+		stats.bytes = length;
+		for (Chunk chunk : chunks) {
+			stats.lines += chunk.lines;
+			stats.empty += chunk.empty;
+			stats.modified += chunk.modified;
+			stats.invalid += chunk.invalid;
+			stats.tooLong += chunk.tooLong;
+		}
+		stats.accepted = words;
+		stats.duplicates = stats.lines - stats.empty - stats.invalid - stats.tooLong - words;
+		stats.processNanos = System.nanoTime() - start;
+		return new Dictionary(StringCorpus.ofLatin1(packed, offsets), lengthStarts, stats);
+	}
+
+	/**
+	 * Splits the bytes into about CHUNKS_PER_THREAD chunks per core, each ending after a line break
+	 * @return the chunk boundaries, from 0 to length
+	 */
+	private static int[] chunkBounds(byte[] bytes, int length) {
+		int target = Math.max(1, Math.min(ForkJoinPool.getCommonPoolParallelism() * CHUNKS_PER_THREAD, length / MIN_CHUNK_BYTES));
+		int[] bounds = new int[target + 1];
+		int chunks = 0;
+		int position = 0;
+		for (int c = 1; c < target && position < length; c++) {
+			int end = Math.max(position, (int) ((long) length * c / target));
+			while (end < length && bytes[end] != '\n') {
+				end++;
+			}
+			if (end < length) {
+				position = end + 1;
+				bounds[++chunks] = position;
+			}
+		}
+		if (position < length || chunks == 0) {
+			bounds[++chunks] = length;
+		}
+		return Arrays.copyOf(bounds, chunks + 1);
+	}
+
+	/**
+	 * Splits a chunk into lines, normalizes each line in place and records the start of the words kept by length
+	 */
+	private static Chunk scan(byte[] bytes, int from, int to) {
+		Chunk chunk = new Chunk();
+		int lineStart = from;
+		while (lineStart < to) {
+			int lineEnd = lineStart;
+			while (lineEnd < to && bytes[lineEnd] != '\n') {
+				lineEnd++;
+			}
+			chunk.lines++;
+			int start = lineStart;
+			int end = lineEnd;
+			while (start < end && isBlank(bytes[start])) {
+				start++;
+			}
+			while (end > start && isBlank(bytes[end - 1])) {
+				end--;
+			}
+			if (start == end) {
+				chunk.empty++;
+			} else if (end - start > MAX_WORD_LENGTH) {
+				chunk.tooLong++;
+			} else {
+				boolean valid = true;
+				for (int i = start; i < end && valid; i++) {
+					byte b = bytes[i];
+					if (b >= 'A' && b <= 'Z') {
+						bytes[i] = (byte) (b + ('a' - 'A'));
+					} else {
+						valid = (b >= 'a' && b <= 'z') || (b >= '0' && b <= '9');
+					}
+				}
+				if (!valid) {
+					chunk.invalid++;
+				} else {
+					if (end - start != (lineEnd > lineStart && bytes[lineEnd - 1] == '\r' ? lineEnd - 1 : lineEnd) - lineStart) {
+						chunk.modified++;
+					}
+					IntList starts = chunk.starts[end - start];
+					if (starts == null) {
+						starts = chunk.starts[end - start] = new IntList();
+					}
+					starts.add(start);
+				}
+			}
+			lineStart = lineEnd + 1;
+		}
+		return chunk;
+	}
+
+	private static boolean isBlank(byte b) {
+		return b == ' ' || b == '\t' || b == '\r';
+	}
+
+	/**
+	 * Deduplicates the words of one length with an open addressing hash table of offsets into the bytes
+	 * @return the offsets of the first occurrence of every word of the length, in the order of the list
+	 */
+	private static int[] deduplicate(byte[] bytes, int length, Chunk[] chunks) {
+		int count = 0;
+		for (Chunk chunk : chunks) {
+			if (chunk.starts[length] != null) {
+				count += chunk.starts[length].size;
+			}
+		}
+		int[] kept = new int[count];
+		if (count == 0) {
+			return kept;
+		}
+		int capacity = Integer.highestOneBit(Math.max(2, count) * 2 - 1) << 1;
+		int[] table = new int[capacity]; // Offsets of the words kept, plus one; 0 marks an empty slot
+		int mask = capacity - 1;
+		int size = 0;
+		for (Chunk chunk : chunks) {
+			IntList starts = chunk.starts[length];
+			if (starts == null) {
+				continue;
+			}
+			for (int n = 0; n < starts.size; n++) {
+				int start = starts.values[n];
+				int slot = hash(bytes, start, length) & mask;
+				boolean duplicate = false;
+				while (table[slot] != 0) {
+					if (equal(bytes, table[slot] - 1, start, length)) {
+						duplicate = true;
+						break;
+					}
+					slot = (slot + 1) & mask;
+				}
+				if (!duplicate) {
+					table[slot] = start + 1;
+					kept[size++] = start;
+				}
+			}
+		}
+		return Arrays.copyOf(kept, size);
+	}
+
+	private static int hash(byte[] bytes, int start, int length) {
+		int h = 0;
+		for (int i = start; i < start + length; i++) {
+			h = 31 * h + bytes[i];
+		}
+		h *= 0x9e3779b9; // Spreads short words over the whole table, since linear probing is slow on clustered hashes
+		return h ^ (h >>> 16);
+	}
+
+	private static boolean equal(byte[] bytes, int a, int b, int length) {
+		for (int i = 0; i < length; i++) {
+			if (bytes[a + i] != bytes[b + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Processes word list files and prints their statistics and the number of words of each length
+	 * @param args are the word list files, one word per line
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0) {
+			System.out.println("Usage: DictionaryPipeline file...");
+			return;
+		}
+		for (String file : args) {
+			long start = System.nanoTime();
+			byte[] bytes = Files.readAllBytes(Paths.get(file));
+			long read = System.nanoTime();
+			Dictionary dictionary = process(bytes, bytes.length, file);
+			dictionary.statistics.readNanos = read - start;
+			System.out.println(dictionary.getStatistics());
+			StringBuilder lengths = new StringBuilder("Words by length:");
+			for (int l = 1; l <= MAX_WORD_LENGTH; l++) {
+				if (dictionary.getCountOfLength(l) > 0) {
+					lengths.append(' ').append(l).append('=').append(dictionary.getCountOfLength(l));
+				}
+			}
+			System.out.println(lengths);
+		}
+	}
+}
@@ -0,0 +1,224 @@
+package mari.mvp3;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streaming aggregation engine over game event logs. Each log file is read sequentially with a large read buffer
+ * and folded into a GameStats object of primitive counters; only the games that are still in progress are kept in memory.
+ * A game in progress is counted as abandoned when its player starts another game or when it has no event for IDLE_GAME_MILLIS,
+ * so that games that never finish do not stay in memory until the end of the file. Games of an unknown play mode are skipped.
+ * Files are processed in parallel with fork-join and their statistics are merged into a single report.
+ * Scores are recomputed with the active ScoringRules.
+ */
+public class GameAnalytics {
+
+	protected final static int READ_BUFFER_SIZE = 1 << 20;
+	protected final static long IDLE_GAME_MILLIS = TimeUnit.HOURS.toMillis(1); // Time without event after which a game in progress is abandoned
+
+	/**
+	 * Aggregates the events of several log files in parallel using the common fork-join pool
+	 * @param filenames are the log files to aggregate
+	 * @return the merged statistics
+	 * @throws IOException if one of the files cannot be read
+	 */
+	public static GameStats analyze(List<String> filenames) throws IOException {
+		return analyze(filenames, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Aggregates the events of several log files in parallel using the given fork-join pool
+	 * @param filenames are the log files to aggregate
+	 * @param pool is the pool running the aggregation tasks
+	 * @return the merged statistics
+	 * @throws IOException if one of the files cannot be read
+	 */
+	public static GameStats analyze(List<String> filenames, ForkJoinPool pool) throws IOException {
+		try {
+			return pool.invoke(new AnalyzeTask(filenames.toArray(new String[0]), 0, filenames.size()));
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Aggregates the events of a single log file on the calling thread
+	 * @param filename is the log file to aggregate
+	 * @return the statistics of the file
+	 * @throws IOException if the file cannot be read
+	 */
+	public static GameStats analyzeFile(String filename) throws IOException {
+		Aggregator aggregator = new Aggregator();
+		GameEventLog.read(filename, aggregator, READ_BUFFER_SIZE);
+		aggregator.stats.abandonedGames += aggregator.openGames.size();
+		return aggregator.stats;
+	}
+
+	/**
+	 * Fork-join task that splits the list of files in halves until a single file is left, then merges the results
+	 */
+	private static class AnalyzeTask extends RecursiveTask<GameStats> {
+
+		private static final long serialVersionUID = 1L;
+		private final String[] filenames;
+		private final int from;
+		private final int to;
+
+		AnalyzeTask(String[] filenames, int from, int to) {
+			this.filenames = filenames;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected GameStats compute() {
+			if (to - from == 0) {
+				return new GameStats();
+			}
+			if (to - from == 1) {
+				try {
+					return analyzeFile(filenames[from]);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+			int middle = (from + to) >>> 1;
+			AnalyzeTask left = new AnalyzeTask(filenames, from, middle);
+			left.fork();
+			GameStats right = new AnalyzeTask(filenames, middle, to).compute();
+			return left.join().merge(right);
+		}
+	}
+
+	/**
+	 * State of a game that was created but has not finished yet
+	 */
+	private static class OpenGame {
+		long sessionId;
+		String name;
+		int mode;
+		int difficulty;
+		String secret;
+		int misses;
+		long createdAt;
+		long lastEventAt;
+		int streak;
+		int longestStreak;
+	}
+
+	/**
+	 * Listener that folds the events of one log file into a GameStats object
+	 */
+	private static class Aggregator implements GameEventListener {
+
+		final GameStats stats = new GameStats();
+		final ScoringRules rules = ScoringRules.getActive();
+		final LinkedHashMap<Long, OpenGame> openGames = new LinkedHashMap<>(); // Ordered by last event, the idlest game first
+		final HashMap<String, OpenGame> openGamesByName = new HashMap<>(); // Last game started by each player
+
+		@Override
+		public void onGameCreated(long sessionId, long timestamp, String name, String mode, int difficulty, int secretId, String secret) {
+			stats.events++;
+			stats.games++;
+			evictIdleGames(timestamp);
+			int modeIndex = GameStats.modeIndex(mode);
+			if (modeIndex < 0) {
+				stats.unknownModeGames++;
+				return;
+			}
+			OpenGame game = new OpenGame();
+			game.sessionId = sessionId;
+			game.name = name;
+			game.mode = modeIndex;
+			game.difficulty = difficulty;
+			game.secret = secret;
+			game.createdAt = timestamp;
+			game.lastEventAt = timestamp;
+			OpenGame previous = openGamesByName.put(name, game);
+			if (previous != null && openGames.remove(previous.sessionId) != null) {
+				stats.abandonedGames++;
+			}
+			if (openGames.put(sessionId, game) != null) {
+				stats.abandonedGames++;
+			}
+		}
+
+		@Override
+		public void onGuess(long sessionId, long timestamp, String guess, boolean correct, int attemptsLeft) {
+			stats.events++;
+			evictIdleGames(timestamp);
+			OpenGame game = openGames.remove(sessionId);
+			if (game == null) {
+				return;
+			}
+			game.lastEventAt = timestamp;
+			openGames.put(sessionId, game); // Moves the game to the end of the idle order
+			if (correct) {
+				game.streak++;
+				game.longestStreak = Math.max(game.longestStreak, game.streak);
+			} else {
+				game.misses++;
+				game.streak = 0;
+			}
+			stats.recordGuess(game.mode, game.difficulty, guess, correct);
+		}
+
+		@Override
+		public void onGameFinished(long sessionId, long timestamp, boolean won, int score) {
+			stats.events++;
+			OpenGame game = openGames.remove(sessionId);
+			if (game == null) {
+				return;
+			}
+			openGamesByName.remove(game.name, game);
+			int recomputed;
+			if (!rules.hasRules(GameStats.MODES[game.mode])) {
+				recomputed = score; // Tournament scores depend on the finish place, which is not recorded in the log
+			} else {
+				recomputed = rules.score(GameStats.MODES[game.mode], game.difficulty, game.secret, game.misses,
+						timestamp - game.createdAt, game.longestStreak, won);
+			}
+			if (recomputed != score) {
+				stats.scoreMismatches++;
+			}
+			stats.recordFinish(game.mode, game.difficulty, game.secret, game.misses, won, recomputed);
+		}
+
+		/**
+		 * Counts as abandoned the games with no event for IDLE_GAME_MILLIS before the timestamp of the current event
+		 */
+		private void evictIdleGames(long timestamp) {
+			Iterator<OpenGame> games = openGames.values().iterator();
+			while (games.hasNext()) {
+				OpenGame game = games.next();
+				if (timestamp - game.lastEventAt < IDLE_GAME_MILLIS) {
+					return;
+				}
+				games.remove();
+				openGamesByName.remove(game.name, game);
+				stats.abandonedGames++;
+			}
+		}
+	}
+
+	/**
+	 * Aggregates the log files given as arguments and prints the report to standard output
+	 * @param args are the log files to aggregate. The default game event log is used when no file is given
+	 */
+	public static void main(String... args) throws IOException {
+		List<String> filenames = args.length == 0 ? Arrays.asList(GameEventLog.filename_event_log) : Arrays.asList(args);
+		long start = System.nanoTime();
+		GameStats stats = analyze(filenames);
+		stats.printReport(System.out);
+		System.out.println(String.format("Aggregated %d events from %d files in %d ms", stats.getEvents(), filenames.size(),
+				(System.nanoTime() - start) / 1_000_000));
+	}
+}
@@ -0,0 +1,42 @@
+package mari.mvp3;
+
+/**
+ * Callback interface used when reading a game event log. Each method corresponds to one type of event recorded by GameEventLog.
+ * All methods have empty default implementations so that a reader only needs to override the events it is interested in.
+ */
+public interface GameEventListener {
+
+	/**
+	 * Called when a game was created and its secret string was chosen
+	 * @param sessionId is the id of the game session
+	 * @param timestamp is the epoch time in milliseconds when the event was recorded
+	 * @param name is the player name
+	 * @param mode is the play mode ("words" or "phrases")
+	 * @param difficulty is the difficulty level
+	 * @param secretId is the index of the secret string in the list of strings it was chosen from
+	 * @param secret is the secret string
+	 */
+	default void onGameCreated(long sessionId, long timestamp, String name, String mode, int difficulty, int secretId, String secret) {
+	}
+
+	/**
+	 * Called for every guess submitted by the player
+	 * @param sessionId is the id of the game session
+	 * @param timestamp is the epoch time in milliseconds when the event was recorded
+	 * @param guess is the letter or word guessed
+	 * @param correct is true if the guess was correct
+	 * @param attemptsLeft is the number of attempts left after the guess
+	 */
+	default void onGuess(long sessionId, long timestamp, String guess, boolean correct, int attemptsLeft) {
+	}
+
+	/**
+	 * Called when a game was won or lost and its score was saved
+	 * @param sessionId is the id of the game session
+	 * @param timestamp is the epoch time in milliseconds when the event was recorded
+	 * @param won is true if the player guessed the secret string
+	 * @param score is the score saved to the leaderboard
+	 */
+	default void onGameFinished(long sessionId, long timestamp, boolean won, int score) {
+	}
+}
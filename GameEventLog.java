@@ -0,0 +1,435 @@
+package mari.mvp3;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Binary append-only log that records every game action as an event: game created, guess submitted and game finished.
+ * Events are encoded into an in-memory batch by the game thread and written to disk by a background writer thread (group commit),
+ * so that one write (and optionally one fsync) covers every event appended since the previous commit.
+ * The log can be read back sequentially with read() or used to reconstruct a single session with replaySession().
+ * Strings are written as their number of UTF-8 bytes followed by the bytes, so names, secrets and guesses of any length can be logged.
+ * A string length larger than the rest of the file is read as an event cut short at the end of the file.
+ * If the writer thread falls behind, a batch stops growing at maxPendingBytes and the game threads wait for it to be written.
+ */
+public class GameEventLog implements Closeable {
+
+	public final static String filename_event_log = "game_events.log";
+
+	protected final static int MAGIC = 0x48474c32; // "HGL2", written at the start of every log file
+	protected final static byte EVENT_GAME_CREATED = 1;
+	protected final static byte EVENT_GUESS = 2;
+	protected final static byte EVENT_GAME_FINISHED = 3;
+	protected final static int DEFAULT_BATCH_BYTES = 64 * 1024; // A commit is triggered early once a batch reaches this size
+	protected final static long DEFAULT_COMMIT_INTERVAL_MS = 10; // Maximum time an event waits in memory before being committed
+	protected final static int PENDING_BATCHES = 256; // Size of a pending batch, in multiples of the batch size, after which appending waits for the writer
+	private final static int READ_BUFFER_SIZE = 1 << 16;
+
+	private final static AtomicLong sessionIds = new AtomicLong(System.currentTimeMillis() << 20);
+
+	private final FileOutputStream fileOut;
+	private final boolean syncOnCommit; // Whether every commit is forced to the storage device
+	private final int batchBytes;
+	private final int maxPendingBytes; // Size of the active batch at which appending waits for the writer thread
+	private final long commitIntervalMs;
+	private final Object lock = new Object();
+	private ByteArrayOutputStream activeBatch = new ByteArrayOutputStream(DEFAULT_BATCH_BYTES); // Batch receiving new events
+	private DataOutputStream activeOut = new DataOutputStream(activeBatch);
+	private ByteArrayOutputStream committingBatch = new ByteArrayOutputStream(DEFAULT_BATCH_BYTES); // Batch being written by the writer thread
+	private DataOutputStream committingOut = new DataOutputStream(committingBatch);
+	private long appendedEvents; // Number of events appended, guarded by lock
+	private long committedEvents; // Number of events written to the file, guarded by lock
+	private boolean closed; // guarded by lock
+	private IOException writeError; // First error raised by the writer thread, guarded by lock
+	private final Thread writer;
+
+	/**
+	 * Opens the log for appending with the default batching parameters and without forcing commits to disk
+	 * @param filename is the file the events are appended to
+	 * @throws IOException if the file cannot be opened
+	 */
+	public GameEventLog(String filename) throws IOException {
+		this(filename, DEFAULT_BATCH_BYTES, DEFAULT_COMMIT_INTERVAL_MS, false);
+	}
+
+	/**
+	 * Opens the log for appending and starts the writer thread. A header is written if the file is new or empty.
+	 * @param filename is the file the events are appended to
+	 * @param batchBytes is the batch size that triggers a commit before the commit interval elapses
+	 * @param commitIntervalMs is the maximum time in milliseconds an event waits before being committed
+	 * @param syncOnCommit is true if every commit must be forced to the storage device
+	 * @throws IOException if the file cannot be opened or is not a game event log
+	 */
+	public GameEventLog(String filename, int batchBytes, long commitIntervalMs, boolean syncOnCommit) throws IOException {
+		File f = new File(filename);
+		if (f.length() > 0 && (f.length() < 4 || readMagic(f) != MAGIC)) { // Events must not be appended to another file
+			throw new IOException(filename + " is not a game event log");
+		}
+		boolean isNewFile = !f.exists() || f.length() == 0;
+		this.fileOut = new FileOutputStream(f, true);
+		this.batchBytes = batchBytes;
+		this.maxPendingBytes = (int) Math.min(Integer.MAX_VALUE / 2, (long) batchBytes * PENDING_BATCHES);
+		this.commitIntervalMs = commitIntervalMs;
+		this.syncOnCommit = syncOnCommit;
+		if (isNewFile) {
+			DataOutputStream header = new DataOutputStream(this.fileOut);
+			header.writeInt(MAGIC);
+			header.flush();
+		}
+		this.writer = new Thread(this::runWriter, "game-event-log-writer");
+		this.writer.setDaemon(true);
+		this.writer.start();
+	}
+
+	private static int readMagic(File f) throws IOException {
+		try (DataInputStream in = new DataInputStream(new FileInputStream(f))) {
+			return in.readInt();
+		}
+	}
+
+	/**
+	 * Generates an id that is unique within this process and very unlikely to collide with ids generated by other runs
+	 * @return a new session id
+	 */
+	public static long nextSessionId() {
+		return sessionIds.incrementAndGet();
+	}
+
+	/**
+	 * Records the creation of a game after its secret string was chosen
+	 */
+	public void logGameCreated(long sessionId, String name, String mode, int difficulty, int secretId, String secret) {
+		synchronized (lock) {
+			try {
+				writeHeader(EVENT_GAME_CREATED, sessionId);
+				writeString(name);
+				writeString(mode);
+				activeOut.writeByte(difficulty);
+				activeOut.writeInt(secretId);
+				writeString(secret);
+			} catch (IOException e) { // Never thrown when writing to a ByteArrayOutputStream, since strings are not limited in length
+				throw new IllegalStateException(e);
+			}
+			eventAppended();
+		}
+	}
+
+	/**
+	 * Records a guess and its outcome
+	 */
+	public void logGuess(long sessionId, String guess, boolean correct, int attemptsLeft) {
+		synchronized (lock) {
+			try {
+				writeHeader(EVENT_GUESS, sessionId);
+				writeString(guess);
+				activeOut.writeBoolean(correct);
+				activeOut.writeByte(attemptsLeft);
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+			eventAppended();
+		}
+	}
+
+	/**
+	 * Records the end of a game and the score saved to the leaderboard
+	 */
+	public void logGameFinished(long sessionId, boolean won, int score) {
+		synchronized (lock) {
+			try {
+				writeHeader(EVENT_GAME_FINISHED, sessionId);
+				activeOut.writeBoolean(won);
+				activeOut.writeInt(score);
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+			eventAppended();
+		}
+	}
+
+	// Must be called while holding lock. Waits for the writer thread while the active batch is full
+	private void writeHeader(byte type, long sessionId) throws IOException {
+		while (activeBatch.size() >= maxPendingBytes && !closed) {
+			lock.notifyAll();
+			try {
+				lock.wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break; // The event is appended anyway rather than lost
+			}
+		}
+		if (closed) {
+			throw new IllegalStateException("The game event log is closed");
+		}
+		activeOut.writeByte(type);
+		activeOut.writeLong(sessionId);
+		activeOut.writeLong(System.currentTimeMillis());
+	}
+
+	// Must be called while holding lock
+	private void writeString(String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		activeOut.writeInt(bytes.length);
+		activeOut.write(bytes);
+	}
+
+	// Must be called while holding lock
+	private void eventAppended() {
+		appendedEvents++;
+		if (activeBatch.size() >= batchBytes) {
+			lock.notifyAll();
+		}
+	}
+
+	/**
+	 * Blocks until every event appended before this call has been written to the file
+	 * @throws IOException if the writer thread failed to write a batch
+	 */
+	public void flush() throws IOException {
+		synchronized (lock) {
+			long target = appendedEvents;
+			lock.notifyAll();
+			while (committedEvents < target && writeError == null) {
+				try {
+					lock.wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IOException("Interrupted while flushing the game event log");
+				}
+			}
+			if (writeError != null) {
+				throw writeError;
+			}
+		}
+	}
+
+	/**
+	 * Commits every pending event, stops the writer thread and closes the file
+	 */
+	@Override
+	public void close() throws IOException {
+		synchronized (lock) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			lock.notifyAll();
+		}
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		fileOut.close();
+		synchronized (lock) {
+			if (writeError != null) {
+				throw writeError;
+			}
+		}
+	}
+
+	/**
+	 * Writer thread loop. Waits until the commit interval elapses or a batch fills up, swaps the active and committing batches
+	 * and writes the whole batch with a single call, so that the game thread never waits on disk I/O.
+	 */
+	private void runWriter() {
+		while (true) {
+			long batchEvents;
+			synchronized (lock) {
+				if (activeBatch.size() < batchBytes && !closed) {
+					try {
+						lock.wait(commitIntervalMs);
+					} catch (InterruptedException e) {
+						closed = true;
+					}
+				}
+				if (activeBatch.size() == 0) {
+					if (closed) {
+						return;
+					}
+					continue;
+				}
+				ByteArrayOutputStream batch = activeBatch;
+				DataOutputStream out = activeOut;
+				activeBatch = committingBatch;
+				activeOut = committingOut;
+				committingBatch = batch;
+				committingOut = out;
+				batchEvents = appendedEvents;
+			}
+			IOException error = null;
+			try {
+				committingBatch.writeTo(fileOut);
+				if (syncOnCommit) {
+					fileOut.getChannel().force(false);
+				}
+			} catch (IOException e) {
+				error = e;
+			}
+			committingBatch.reset();
+			synchronized (lock) {
+				if (error != null && writeError == null) {
+					writeError = error;
+				}
+				committedEvents = batchEvents;
+				lock.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Reads every event in a log file sequentially and passes it to the listener.
+	 * A truncated event at the end of the file (e.g. after a crash) is ignored.
+	 * @param filename is the log file to read
+	 * @param listener receives the events in the order they were written
+	 * @throws IOException if the file cannot be read or is not a game event log
+	 */
+	public static void read(String filename, GameEventListener listener) throws IOException {
+		read(filename, listener, READ_BUFFER_SIZE);
+	}
+
+	/**
+	 * Reads every event in a log file sequentially using a read buffer of the given size.
+	 * Large buffers reduce the number of system calls when scanning big log files
+	 * @param filename is the log file to read
+	 * @param listener receives the events in the order they were written
+	 * @param bufferSize is the size in bytes of the read buffer
+	 * @throws IOException if the file cannot be read or is not a game event log
+	 */
+	public static void read(String filename, GameEventListener listener, int bufferSize) throws IOException {
+		FileInputStream file = new FileInputStream(filename);
+		CountingInputStream counter = new CountingInputStream(new BufferedInputStream(file, bufferSize), file.getChannel().size());
+		try (DataInputStream in = new DataInputStream(counter)) {
+			try {
+				if (in.readInt() != MAGIC) {
+					throw new IOException(filename + " is not a game event log");
+				}
+			} catch (EOFException e) { // Empty file
+				return;
+			}
+			while (true) {
+				int type = in.read();
+				if (type == -1) {
+					return;
+				}
+				try {
+					long sessionId = in.readLong();
+					long timestamp = in.readLong();
+					switch (type) {
+					case EVENT_GAME_CREATED:
+						String name = readString(in, counter);
+						String mode = readString(in, counter);
+						int difficulty = in.readByte();
+						int secretId = in.readInt();
+						String secret = readString(in, counter);
+						listener.onGameCreated(sessionId, timestamp, name, mode, difficulty, secretId, secret);
+						break;
+					case EVENT_GUESS:
+						String guess = readString(in, counter);
+						boolean correct = in.readBoolean();
+						int attemptsLeft = in.readByte();
+						listener.onGuess(sessionId, timestamp, guess, correct, attemptsLeft);
+						break;
+					case EVENT_GAME_FINISHED:
+						boolean won = in.readBoolean();
+						int score = in.readInt();
+						listener.onGameFinished(sessionId, timestamp, won, score);
+						break;
+					default:
+						throw new IOException("Unknown event type " + type + " in " + filename);
+					}
+				} catch (EOFException e) { // Event cut short by a crash while it was being written
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads a string, checking its length before allocating it
+	 * @throws EOFException if the length is larger than the rest of the file, as in an event cut short at the end of the file
+	 */
+	private static String readString(DataInputStream in, CountingInputStream counter) throws IOException {
+		int length = in.readInt();
+		if (length < 0) {
+			throw new IOException("Invalid string length " + length + " in a game event log");
+		}
+		if (length > counter.remaining()) {
+			throw new EOFException("String length " + length + " past the end of the game event log");
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Input stream counting the bytes read from a file, so that lengths read from the file can be checked against the bytes left
+	 */
+	private static class CountingInputStream extends FilterInputStream {
+
+		private final long size; // Size of the file when it was opened
+		private long position; // Bytes read
+
+		CountingInputStream(InputStream in, long size) {
+			super(in);
+			this.size = size;
+		}
+
+		long remaining() {
+			return size - position;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = in.read();
+			if (b != -1) {
+				position++;
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = in.read(b, off, len);
+			if (n > 0) {
+				position += n;
+			}
+			return n;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = in.skip(n);
+			position += skipped;
+			return skipped;
+		}
+	}
+
+	/**
+	 * Reconstructs a single game session from a log file
+	 * @param filename is the log file to read
+	 * @param sessionId is the id of the session to reconstruct
+	 * @return the reconstructed session, or null if no event of the session was found
+	 * @throws IOException if the file cannot be read
+	 */
+	public static GameReplay replaySession(String filename, long sessionId) throws IOException {
+		GameReplay replay = new GameReplay(sessionId);
+		read(filename, replay);
+		if (replay.getSecret() == null && replay.getGuesses().isEmpty() && !replay.isFinished()) {
+			return null;
+		}
+		return replay;
+	}
+}
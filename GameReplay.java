@@ -0,0 +1,155 @@
+package mari.mvp3;
+
+import java.util.ArrayList;
+
+/**
+ * The reconstructed state of a single game session, rebuilt from the events recorded in a game event log.
+ * Guesses are kept in the order in which they were submitted, together with their outcome.
+ */
+public class GameReplay implements GameEventListener {
+
+	protected final long sessionId;
+	protected String name;
+	protected String mode;
+	protected int difficulty;
+	protected int secretId = -1;
+	protected String secret;
+	protected long createdAt;
+	protected long finishedAt;
+	protected ArrayList<String> guesses = new ArrayList<>(); // Guesses in the order they were submitted
+	protected ArrayList<Boolean> outcomes = new ArrayList<>(); // Outcome of each guess, true if the guess was correct
+	protected int attemptsLeft = HangmanGame.MAX_ATTEMPTS;
+	protected boolean finished;
+	protected boolean won;
+	protected int score;
+
+	protected GameReplay(long sessionId) {
+		this.sessionId = sessionId;
+	}
+
+	@Override
+	public void onGameCreated(long sessionId, long timestamp, String name, String mode, int difficulty, int secretId, String secret) {
+		if (sessionId != this.sessionId) {
+			return;
+		}
+		this.createdAt = timestamp;
+		this.name = name;
+		this.mode = mode;
+		this.difficulty = difficulty;
+		this.secretId = secretId;
+		this.secret = secret;
+	}
+
+	@Override
+	public void onGuess(long sessionId, long timestamp, String guess, boolean correct, int attemptsLeft) {
+		if (sessionId != this.sessionId) {
+			return;
+		}
+		this.guesses.add(guess);
+		this.outcomes.add(correct);
+		this.attemptsLeft = attemptsLeft;
+	}
+
+	@Override
+	public void onGameFinished(long sessionId, long timestamp, boolean won, int score) {
+		if (sessionId != this.sessionId) {
+			return;
+		}
+		this.finishedAt = timestamp;
+		this.finished = true;
+		this.won = won;
+		this.score = score;
+	}
+
+	/**
+	 * Rebuilds the hidden secret string as the player saw it after the last recorded guess.
+	 * Letters and numbers that were not guessed are shown as underscores.
+	 * @return the hidden secret string, or null if the creation of the game was not found in the log
+	 */
+	public String getHiddenSecretString() {
+		if (this.secret == null) {
+			return null;
+		}
+		StringBuilder hidden = new StringBuilder(this.secret.replaceAll("[a-zA-Z0-9]", "_"));
+		String[] words = this.secret.split("\\s+");
+		for (int g = 0; g < this.guesses.size(); g++) {
+			String guess = this.guesses.get(g);
+			if (!this.outcomes.get(g)) {
+				continue;
+			}
+			if (guess.length() == 1) {
+				for (int i = 0; i < this.secret.length(); i++) {
+					if (this.secret.charAt(i) == guess.charAt(0)) {
+						hidden.setCharAt(i, guess.charAt(0));
+					}
+				}
+			} else {
+				int start = 0;
+				for (String word : words) {
+					start = this.secret.indexOf(word, start);
+					if (word.equalsIgnoreCase(guess)) {
+						hidden.replace(start, start + word.length(), word);
+					}
+					start += word.length();
+				}
+			}
+		}
+		return hidden.toString();
+	}
+
+	public long getSessionId() {
+		return sessionId;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getMode() {
+		return mode;
+	}
+
+	public int getDifficulty() {
+		return difficulty;
+	}
+
+	public int getSecretId() {
+		return secretId;
+	}
+
+	public String getSecret() {
+		return secret;
+	}
+
+	public long getCreatedAt() {
+		return createdAt;
+	}
+
+	public long getFinishedAt() {
+		return finishedAt;
+	}
+
+	public ArrayList<String> getGuesses() {
+		return guesses;
+	}
+
+	public ArrayList<Boolean> getOutcomes() {
+		return outcomes;
+	}
+
+	public int getAttemptsLeft() {
+		return attemptsLeft;
+	}
+
+	public boolean isFinished() {
+		return finished;
+	}
+
+	public boolean getWon() {
+		return won;
+	}
+
+	public int getScore() {
+		return score;
+	}
+}
@@ -0,0 +1,39 @@
+package mari.mvp3;
+
+/**
+ * A game played through the GameSessionManager. It associates a HangmanGame with the client playing it
+ * and with the token bucket limiting the rate of guesses of this session.
+ */
+public class GameSession {
+
+	protected final long sessionId;
+	protected final String clientId; // Identifies the remote client (e.g. address or account) that created the session
+	protected final HangmanGame game;
+	protected final TokenBucket guessRate; // Limits the guesses of this session
+	protected volatile long lastAccessNanos; // System.nanoTime() of the last guess or creation of the session
+	protected final HashedTimingWheel.Timeout<GameSession> idleTimeout = new HashedTimingWheel.Timeout<>(this); // Expires the session when it stays idle
+
+	protected GameSession(long sessionId, String clientId, HangmanGame game, TokenBucket guessRate) {
+		this.sessionId = sessionId;
+		this.clientId = clientId;
+		this.game = game;
+		this.guessRate = guessRate;
+		this.lastAccessNanos = System.nanoTime();
+	}
+
+	public long getSessionId() {
+		return sessionId;
+	}
+
+	public String getClientId() {
+		return clientId;
+	}
+
+	public HangmanGame getGame() {
+		return game;
+	}
+
+	public long getLastAccessNanos() {
+		return lastAccessNanos;
+	}
+}
@@ -0,0 +1,315 @@
+package mari.mvp3;
+
+import java.io.FileNotFoundException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Multi-session game engine used when guesses come from remote clients instead of the Swing guess button.
+ * It keeps the active game sessions by id and processes guesses from many threads. Before a guess reaches the game it goes
+ * through a global AdmissionController, which rejects it immediately while the engine misses its latency objective,
+ * then through the token bucket of the session and the token bucket of the client that created the session.
+ * Sessions of every play mode can run at the same time: each game saves its score to the leaderboard file of its own mode.
+ * Sessions that receive no guess for the idle timeout are evicted. Their expiry is tracked with a hashed timing wheel:
+ * a guess only records the time of the access, and when the timeout of a session that was accessed since it was scheduled
+ * comes up, it is simply rescheduled from its last access, so touching a session costs one volatile write.
+ */
+public class GameSessionManager {
+
+	protected final static double DEFAULT_SESSION_GUESSES_PER_SECOND = 5;
+	protected final static int DEFAULT_SESSION_BURST = 10;
+	protected final static double DEFAULT_CLIENT_GUESSES_PER_SECOND = 50;
+	protected final static int DEFAULT_CLIENT_BURST = 100;
+	protected final static long DEFAULT_LATENCY_OBJECTIVE_NANOS = 2_000_000; // 2 ms
+	protected final static long DEFAULT_MAX_IN_FLIGHT = 10_000;
+	protected final static long DEFAULT_IDLE_TIMEOUT_NANOS = TimeUnit.MINUTES.toNanos(10);
+	protected final static long WHEEL_TICK_NANOS = TimeUnit.SECONDS.toNanos(1);
+	protected final static int WHEEL_SLOTS = 1024; // One revolution of about 17 minutes covers the default idle timeout
+
+	private final ConcurrentHashMap<Long, GameSession> sessions = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<String, TokenBucket> clientRates = new ConcurrentHashMap<>(); // Client id -> token bucket shared by its sessions
+	private final HangmanFactory factory = new HangmanFactory();
+	private final AdmissionController admission;
+	private final double sessionGuessesPerSecond;
+	private final int sessionBurst;
+	private final double clientGuessesPerSecond;
+	private final int clientBurst;
+	private final HashedTimingWheel<GameSession> idleWheel = new HashedTimingWheel<>(WHEEL_TICK_NANOS, WHEEL_SLOTS); // guarded by itself
+	private volatile long idleTimeoutNanos = DEFAULT_IDLE_TIMEOUT_NANOS;
+	private volatile boolean saveEvictedAsLoss; // Whether unfinished games are saved to the leaderboard with a score of zero when evicted
+	private ScheduledExecutorService evictionTimer;
+
+	/**
+	 * Creates an engine with the default rate limits and latency objective
+	 */
+	public GameSessionManager() {
+		this(DEFAULT_SESSION_GUESSES_PER_SECOND, DEFAULT_SESSION_BURST, DEFAULT_CLIENT_GUESSES_PER_SECOND, DEFAULT_CLIENT_BURST,
+				new AdmissionController(DEFAULT_LATENCY_OBJECTIVE_NANOS, DEFAULT_MAX_IN_FLIGHT));
+	}
+
+	/**
+	 * @param sessionGuessesPerSecond is the sustained guess rate allowed for a session
+	 * @param sessionBurst is the number of guesses a session may send at once
+	 * @param clientGuessesPerSecond is the sustained guess rate allowed for all the sessions of a client
+	 * @param clientBurst is the number of guesses all the sessions of a client may send at once
+	 * @param admission is the global admission controller
+	 */
+	public GameSessionManager(double sessionGuessesPerSecond, int sessionBurst, double clientGuessesPerSecond, int clientBurst,
+			AdmissionController admission) {
+		this.sessionGuessesPerSecond = sessionGuessesPerSecond;
+		this.sessionBurst = sessionBurst;
+		this.clientGuessesPerSecond = clientGuessesPerSecond;
+		this.clientBurst = clientBurst;
+		this.admission = admission;
+	}
+
+	/**
+	 * Creates, configures and starts a new game session
+	 * @param clientId identifies the client creating the session
+	 * @param mode is the play mode, as accepted by HangmanFactory.createGame()
+	 * @param name is the player name
+	 * @param difficulty is the difficulty level
+	 * @return the new session
+	 * @throws LeaderboardException if the leaderboard cannot be loaded
+	 * @throws WordListException if the list of words cannot be retrieved
+	 * @throws FileNotFoundException if the file containing the list of phrases is not found
+	 */
+	public GameSession createSession(String clientId, String mode, String name, int difficulty)
+			throws LeaderboardException, WordListException, FileNotFoundException {
+		HangmanGame game = factory.createGame(mode);
+		if (game == null) {
+			throw new IllegalArgumentException("Unknown play mode " + mode);
+		}
+		game.configure(name, difficulty);
+		game.resetGameStatus();
+		GameSession session = new GameSession(game.getSessionId(), clientId, game,
+				new TokenBucket(sessionGuessesPerSecond, sessionBurst));
+		sessions.put(session.getSessionId(), session);
+		synchronized (idleWheel) {
+			idleWheel.schedule(session.idleTimeout, session.lastAccessNanos + idleTimeoutNanos);
+		}
+		return session;
+	}
+
+	/**
+	 * Submits a guess to a session. When the guess ends the game, the score is calculated and saved to the leaderboard file of the
+	 * play mode of the session
+	 * @param sessionId is the id of the session
+	 * @param guess is the letter or word guessed
+	 * @return the outcome of the guess
+	 */
+	public GuessOutcome guess(long sessionId, String guess) {
+		long start = System.nanoTime();
+		if (!admission.tryAdmit()) {
+			return GuessOutcome.OVERLOADED;
+		}
+		try {
+			GameSession session = sessions.get(sessionId);
+			if (session == null) {
+				return GuessOutcome.UNKNOWN_SESSION;
+			}
+			if (!session.guessRate.tryAcquire(start)) {
+				return GuessOutcome.RATE_LIMITED;
+			}
+			if (!clientRate(session.getClientId()).tryAcquire(start)) {
+				session.guessRate.release(1, start); // The guess is not applied, so it does not count against the session
+				return GuessOutcome.RATE_LIMITED;
+			}
+			session.lastAccessNanos = start;
+			HangmanGame game = session.getGame();
+			synchronized (game) {
+				GuessOutcome outcome = game.submitGuess(guess.toLowerCase().trim());
+				if (outcome.isAccepted() && game.isGameOver()) {
+					game.calculateAndSaveScore();
+				}
+				return outcome;
+			}
+		} finally {
+			admission.complete(start);
+		}
+	}
+
+	/**
+	 * Submits several letters to a session in one request, e.g. from a bot. The batch goes through admission control once and
+	 * takes one token per letter from the session and client buckets; when fewer tokens are available, the first letters are
+	 * applied and the others are RATE_LIMITED. Tokens taken from the session bucket but refused by the client bucket are given back.
+	 * When the letters end the game, the score is calculated and saved to the leaderboard
+	 * @param sessionId is the id of the session
+	 * @param letters are the letters guessed, one guess per character, in the order they are applied
+	 * @return the outcome of each letter
+	 */
+	public GuessOutcome[] guessLetters(long sessionId, String letters) {
+		GuessOutcome[] outcomes = new GuessOutcome[letters.length()];
+		long start = System.nanoTime();
+		if (!admission.tryAdmit()) {
+			Arrays.fill(outcomes, GuessOutcome.OVERLOADED);
+			return outcomes;
+		}
+		try {
+			GameSession session = sessions.get(sessionId);
+			if (session == null) {
+				Arrays.fill(outcomes, GuessOutcome.UNKNOWN_SESSION);
+				return outcomes;
+			}
+			int taken = session.guessRate.tryAcquireUpTo(letters.length(), start);
+			int granted = clientRate(session.getClientId()).tryAcquireUpTo(taken, start);
+			session.guessRate.release(taken - granted, start);
+			Arrays.fill(outcomes, granted, outcomes.length, GuessOutcome.RATE_LIMITED);
+			if (granted == 0) {
+				return outcomes;
+			}
+			session.lastAccessNanos = start;
+			HangmanGame game = session.getGame();
+			synchronized (game) {
+				GuessOutcome[] applied = game.submitGuesses(letters.subSequence(0, granted));
+				System.arraycopy(applied, 0, outcomes, 0, granted);
+				for (GuessOutcome outcome : applied) {
+					if (outcome.isAccepted()) {
+						if (game.isGameOver()) {
+							game.calculateAndSaveScore();
+						}
+						break;
+					}
+				}
+				return outcomes;
+			}
+		} finally {
+			admission.complete(start);
+		}
+	}
+
+	/**
+	 * Returns the token bucket shared by the sessions of a client, creating it on first use
+	 */
+	private TokenBucket clientRate(String clientId) {
+		TokenBucket bucket = clientRates.get(clientId);
+		if (bucket == null) {
+			TokenBucket created = new TokenBucket(clientGuessesPerSecond, clientBurst);
+			bucket = clientRates.putIfAbsent(clientId, created);
+			if (bucket == null) {
+				bucket = created;
+			}
+		}
+		return bucket;
+	}
+
+	/**
+	 * Discards the token buckets of clients that are back to a full bucket, which are equivalent to new buckets.
+	 * This bounds the memory used by clients that stopped sending guesses
+	 * @return the number of buckets discarded
+	 */
+	public int purgeIdleClientRates() {
+		long now = System.nanoTime();
+		int purged = 0;
+		Iterator<Map.Entry<String, TokenBucket>> it = clientRates.entrySet().iterator();
+		while (it.hasNext()) {
+			if (it.next().getValue().isFull(now)) {
+				it.remove();
+				purged++;
+			}
+		}
+		return purged;
+	}
+
+	public GameSession getSession(long sessionId) {
+		return sessions.get(sessionId);
+	}
+
+	/**
+	 * Removes a session from the engine
+	 * @return the removed session, or null if no session has the id
+	 */
+	public GameSession endSession(long sessionId) {
+		GameSession session = sessions.remove(sessionId);
+		if (session != null) {
+			synchronized (idleWheel) {
+				idleWheel.cancel(session.idleTimeout);
+			}
+		}
+		return session;
+	}
+
+	/**
+	 * Sets how long a session may stay without guesses before it is evicted, and what happens to its game
+	 * @param idleTimeoutNanos is the idle time after which a session is evicted
+	 * @param saveEvictedAsLoss is true if an unfinished game must be saved to the leaderboard as a loss when its session is evicted
+	 */
+	public void setIdleEviction(long idleTimeoutNanos, boolean saveEvictedAsLoss) {
+		this.idleTimeoutNanos = idleTimeoutNanos;
+		this.saveEvictedAsLoss = saveEvictedAsLoss;
+	}
+
+	/**
+	 * Evicts the sessions that have been idle for longer than the idle timeout. Sessions accessed since their timeout was
+	 * scheduled are rescheduled from their last access instead
+	 * @param nowNanos is the current System.nanoTime()
+	 * @return the number of sessions evicted
+	 */
+	public int evictIdleSessions(long nowNanos) {
+		int[] evicted = new int[1];
+		synchronized (idleWheel) {
+			idleWheel.advance(nowNanos, timeout -> {
+				GameSession session = timeout.getValue();
+				long idleDeadline = session.lastAccessNanos + idleTimeoutNanos;
+				if (idleDeadline - nowNanos > 0) {
+					idleWheel.schedule(timeout, idleDeadline);
+				} else if (sessions.remove(session.getSessionId(), session)) {
+					evicted[0]++;
+					evict(session);
+				}
+			});
+		}
+		return evicted[0];
+	}
+
+	private void evict(GameSession session) {
+		if (!saveEvictedAsLoss) {
+			return;
+		}
+		HangmanGame game = session.getGame();
+		synchronized (game) {
+			if (!game.isGameOver()) {
+				game.calculateAndSaveScore();
+			}
+		}
+	}
+
+	/**
+	 * Starts a daemon thread that evicts idle sessions once per tick of the timing wheel
+	 */
+	public synchronized void startIdleEviction() {
+		if (evictionTimer != null) {
+			return;
+		}
+		evictionTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "idle-session-eviction");
+			t.setDaemon(true);
+			return t;
+		});
+		evictionTimer.scheduleAtFixedRate(() -> evictIdleSessions(System.nanoTime()), WHEEL_TICK_NANOS, WHEEL_TICK_NANOS,
+				TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Stops the thread started by startIdleEviction()
+	 */
+	public synchronized void stopIdleEviction() {
+		if (evictionTimer != null) {
+			evictionTimer.shutdownNow();
+			evictionTimer = null;
+		}
+	}
+
+	public int getSessionCount() {
+		return sessions.size();
+	}
+
+	public AdmissionController getAdmissionController() {
+		return admission;
+	}
+}
@@ -0,0 +1,255 @@
+package mari.mvp3;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Aggregated statistics computed from game event logs. Counters are kept in flat primitive arrays indexed by
+ * play mode, difficulty level and letter, so that the memory used does not depend on the number of events aggregated.
+ * The only map is keyed by secret string, which is bounded by the size of the word and phrase lists.
+ * Statistics computed from different log files are combined with merge().
+ */
+public class GameStats {
+
+	protected final static String[] MODES = { "words", "phrases", "tournament" };
+	protected final static int LEVELS = 11; // Difficulty levels 1 to 10, index 0 is unused
+	protected final static int SYMBOLS = 36; // Letters a to z followed by digits 0 to 9
+
+	protected long events;
+	protected long games; // Games created
+	protected long abandonedGames; // Games created that never finished: idle for too long, replaced by another game of the player or left at the end of the log file
+	protected long unknownModeGames; // Games created with a play mode that is not in MODES, not aggregated
+	protected long scoreMismatches; // Finished games whose logged score differs from the score recomputed with the scoring rules
+	protected final long[] gamesFinished = new long[MODES.length * LEVELS];
+	protected final long[] gamesWon = new long[MODES.length * LEVELS];
+	protected final long[] misses = new long[MODES.length * LEVELS]; // Incorrect guesses made in finished games
+	protected final long[] scores = new long[MODES.length * LEVELS]; // Sum of recomputed scores of finished games
+	protected final long[] letterHits = new long[MODES.length * LEVELS * SYMBOLS];
+	protected final long[] letterMisses = new long[MODES.length * LEVELS * SYMBOLS];
+	protected long wordGuesses;
+	protected long wordHits;
+	protected final HashMap<String, long[]> secrets = new HashMap<>(); // "mode:secret" -> {times played, times solved}
+
+	/**
+	 * @return the index of the play mode in MODES, or -1 if the mode is unknown
+	 */
+	protected static int modeIndex(String mode) {
+		for (int m = 0; m < MODES.length; m++) {
+			if (MODES[m].equals(mode)) {
+				return m;
+			}
+		}
+		return -1;
+	}
+
+	private static int knownModeIndex(String mode) {
+		int m = modeIndex(mode);
+		if (m < 0) {
+			throw new IllegalArgumentException("Unknown play mode: " + mode);
+		}
+		return m;
+	}
+
+	protected static int levelIndex(int mode, int difficulty) {
+		return mode * LEVELS + Math.max(0, Math.min(LEVELS - 1, difficulty));
+	}
+
+	/**
+	 * Maps a letter or digit to its counter index
+	 * @return the index, or -1 if the character is neither a lower case letter nor a digit
+	 */
+	protected static int symbolIndex(char c) {
+		if (c >= 'a' && c <= 'z') {
+			return c - 'a';
+		}
+		if (c >= '0' && c <= '9') {
+			return 26 + c - '0';
+		}
+		return -1;
+	}
+
+	protected static char symbolAt(int index) {
+		return index < 26 ? (char) ('a' + index) : (char) ('0' + index - 26);
+	}
+
+	protected void recordGuess(int mode, int difficulty, String guess, boolean correct) {
+		if (guess.length() == 1) {
+			int symbol = symbolIndex(guess.charAt(0));
+			if (symbol < 0) {
+				return;
+			}
+			int i = levelIndex(mode, difficulty) * SYMBOLS + symbol;
+			if (correct) {
+				letterHits[i]++;
+			} else {
+				letterMisses[i]++;
+			}
+		} else {
+			wordGuesses++;
+			if (correct) {
+				wordHits++;
+			}
+		}
+	}
+
+	protected void recordFinish(int mode, int difficulty, String secret, int gameMisses, boolean won, int score) {
+		int level = levelIndex(mode, difficulty);
+		gamesFinished[level]++;
+		misses[level] += gameMisses;
+		scores[level] += score;
+		if (won) {
+			gamesWon[level]++;
+		}
+		long[] counts = secrets.get(MODES[mode] + ":" + secret);
+		if (counts == null) {
+			counts = new long[2];
+			secrets.put(MODES[mode] + ":" + secret, counts);
+		}
+		counts[0]++;
+		if (won) {
+			counts[1]++;
+		}
+	}
+
+	/**
+	 * Adds the counters of another GameStats object to this one
+	 * @param other is the statistics to add
+	 * @return this object
+	 */
+	protected GameStats merge(GameStats other) {
+		events += other.events;
+		games += other.games;
+		abandonedGames += other.abandonedGames;
+		unknownModeGames += other.unknownModeGames;
+		scoreMismatches += other.scoreMismatches;
+		wordGuesses += other.wordGuesses;
+		wordHits += other.wordHits;
+		add(gamesFinished, other.gamesFinished);
+		add(gamesWon, other.gamesWon);
+		add(misses, other.misses);
+		add(scores, other.scores);
+		add(letterHits, other.letterHits);
+		add(letterMisses, other.letterMisses);
+		for (Map.Entry<String, long[]> e : other.secrets.entrySet()) {
+			long[] counts = secrets.get(e.getKey());
+			if (counts == null) {
+				secrets.put(e.getKey(), e.getValue().clone());
+			} else {
+				counts[0] += e.getValue()[0];
+				counts[1] += e.getValue()[1];
+			}
+		}
+		return this;
+	}
+
+	private static void add(long[] target, long[] source) {
+		for (int i = 0; i < target.length; i++) {
+			target[i] += source[i];
+		}
+	}
+
+	/**
+	 * Returns the ratio of correct guesses of a letter at a difficulty level
+	 * @return the hit rate, or NaN if the letter was never guessed
+	 */
+	public double getLetterHitRate(String mode, int difficulty, char letter) {
+		int symbol = symbolIndex(letter);
+		if (symbol < 0) {
+			throw new IllegalArgumentException("Only lower case letters and digits are tracked");
+		}
+		int i = levelIndex(knownModeIndex(mode), difficulty) * SYMBOLS + symbol;
+		long total = letterHits[i] + letterMisses[i];
+		return total == 0 ? Double.NaN : (double) letterHits[i] / total;
+	}
+
+	/**
+	 * Returns the average number of incorrect guesses per finished game at a difficulty level
+	 * @return the average, or NaN if no game was finished
+	 */
+	public double getAverageMisses(String mode, int difficulty) {
+		int level = levelIndex(knownModeIndex(mode), difficulty);
+		return gamesFinished[level] == 0 ? Double.NaN : (double) misses[level] / gamesFinished[level];
+	}
+
+	/**
+	 * Returns the secret strings of a play mode that were played at least once and never solved, sorted alphabetically
+	 */
+	public ArrayList<String> getNeverSolved(String mode) {
+		ArrayList<String> neverSolved = new ArrayList<>();
+		String prefix = mode + ":";
+		for (Map.Entry<String, long[]> e : secrets.entrySet()) {
+			if (e.getKey().startsWith(prefix) && e.getValue()[1] == 0) {
+				neverSolved.add(e.getKey().substring(prefix.length()));
+			}
+		}
+		Collections.sort(neverSolved);
+		return neverSolved;
+	}
+
+	public long getEvents() {
+		return events;
+	}
+
+	public long getGames() {
+		return games;
+	}
+
+	public long getAbandonedGames() {
+		return abandonedGames;
+	}
+
+	public long getUnknownModeGames() {
+		return unknownModeGames;
+	}
+
+	public long getScoreMismatches() {
+		return scoreMismatches;
+	}
+
+	/**
+	 * Prints a report with the game counts, win rates, average misses and scores per play mode and difficulty level,
+	 * the hit rate of every letter per difficulty level, and the secret strings that were never solved
+	 * @param out is the stream the report is printed to
+	 */
+	public void printReport(PrintStream out) {
+		out.println("Events: " + events + "  Games: " + games + "  Abandoned: " + abandonedGames
+				+ "  Unknown mode: " + unknownModeGames + "  Score mismatches: " + scoreMismatches);
+		out.println("Word guesses: " + wordGuesses + "  correct: " + wordHits);
+		for (int m = 0; m < MODES.length; m++) {
+			out.println();
+			out.println("Mode " + MODES[m]);
+			out.println("Level  Games  Won  Avg misses  Avg score");
+			for (int d = 1; d < LEVELS; d++) {
+				int level = levelIndex(m, d);
+				long finished = gamesFinished[level];
+				if (finished == 0) {
+					continue;
+				}
+				out.println(String.format("%5d %6d %4d %11.2f %10.2f", d, finished, gamesWon[level],
+						(double) misses[level] / finished, (double) scores[level] / finished));
+			}
+			out.println("Letter hit rate per level");
+			for (int d = 1; d < LEVELS; d++) {
+				StringBuilder line = new StringBuilder();
+				for (int s = 0; s < SYMBOLS; s++) {
+					int i = levelIndex(m, d) * SYMBOLS + s;
+					long total = letterHits[i] + letterMisses[i];
+					if (total > 0) {
+						line.append(String.format(" %c=%.2f", symbolAt(s), (double) letterHits[i] / total));
+					}
+				}
+				if (line.length() > 0) {
+					out.println(String.format("%5d", d) + line);
+				}
+			}
+			ArrayList<String> neverSolved = getNeverSolved(MODES[m]);
+			out.println("Never solved: " + neverSolved.size());
+			for (String secret : neverSolved) {
+				out.println("  " + secret);
+			}
+		}
+	}
+}
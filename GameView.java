@@ -0,0 +1,128 @@
+package mari.mvp3;
+
+/**
+ * Interface implemented by every front end of the game. It defines the operations the Controller uses to display game data
+ * and feedback to the player, to read the player's input, and to register the Controller's response to the player's actions.
+ * View implements it with Java Swing and ConsoleView implements it with a text terminal, so the same Controller logic drives both.
+ */
+public interface GameView {
+
+	/**
+	 * Prompts the player to enter name, game mode and difficulty level
+	 * @return boolean true if the player submitted the preferences; false if the player cancelled
+	 */
+	boolean didPlayerSubmitPreferences();
+
+	String getGameMode();
+
+	String getDifficulty();
+
+	String getName();
+
+	/**
+	 * Shows an error message to the player
+	 * @param msg is the message to display
+	 */
+	void showErrorMsg(String msg);
+
+	/**
+	 * Shows the main game screen after the player has finished entering preferences
+	 */
+	void showGameWindow();
+
+	/**
+	 * Displays the results of the leader board in descending order, and the personal bests where each player appears once
+	 * @param lb is the Leader Board object containing leader board data
+	 */
+	void showLeaderboard(Leaderboard lb);
+
+	/**
+	 * Resets the displayed game data to starting values for a new game
+	 * @param secretString       is the secret String of the game
+	 * @param hiddenSecretString is the secret String represented with underscores
+	 * @param attemptsLeft       is the maximum number of incorrect attempts allowed
+	 */
+	void resetGameParameters(String secretString, StringBuilder hiddenSecretString, int attemptsLeft);
+
+	/**
+	 * @return the player's last guess (letter or word) in lower case
+	 */
+	String getGuess();
+
+	void clearGuessTextField();
+
+	void focusOnGuessTextField();
+
+	void setFeedback(String text);
+
+	/**
+	 * Displays the updated hidden secret string and feedback after a correct guess
+	 * @param hiddenSecretString is the hidden secret string revealing the correct guesses
+	 */
+	void runCorrectGuessRoutine(StringBuilder hiddenSecretString);
+
+	/**
+	 * Displays the updated attempts left, incorrect guesses and feedback after an incorrect guess
+	 * @param attemptsLeft is the updated number of attempts left
+	 * @param guess        is the incorrect guess
+	 */
+	void runIncorrectGuessRoutine(int attemptsLeft, String guess);
+
+	void setScore(int score);
+
+	void setSecretTextArea(String text);
+
+	/**
+	 * Informs the player that the game was won or lost and asks whether to play again
+	 * @param winOrLose is either "won" or "lost"
+	 * @param score     is the score earned in the game
+	 * @return boolean true if the player chooses to play again
+	 */
+	boolean getPlayAgain(String winOrLose, String score);
+
+	/**
+	 * Asks the player to confirm quitting the game
+	 * @return boolean true if the player confirms
+	 */
+	boolean confirmQuitGame();
+
+	void showAdminView();
+
+	void hideAdminView();
+
+	/**
+	 * Registers the Controller's response to the player submitting a guess
+	 */
+	void addGuessListener(Runnable listener);
+
+	/**
+	 * Registers the Controller's response to the player asking to quit the game
+	 */
+	void addQuitGameListener(Runnable listener);
+
+	/**
+	 * Registers the Controller's response to the player asking to start a new game
+	 */
+	void addNewGameListener(Runnable listener);
+
+	/**
+	 * Registers the Controller's response to the player switching to admin mode
+	 */
+	void addAdminListener(Runnable listener);
+
+	/**
+	 * Registers the Controller's response to the player switching back to player mode
+	 */
+	void addPlayerListener(Runnable listener);
+
+	/**
+	 * Registers the Controller's response to the player closing the game window or ending the input
+	 */
+	void addCloseListener(Runnable listener);
+
+	/**
+	 * Starts dispatching the player's actions to the registered listeners. The Swing view returns immediately because its
+	 * events are dispatched on the event dispatch thread; the console view reads input on the calling thread until the input ends
+	 */
+	void startEventLoop();
+}
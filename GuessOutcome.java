@@ -0,0 +1,24 @@
+package mari.mvp3;
+
+/**
+ * Result of submitting a guess, either to a HangmanGame or through the GameSessionManager
+ */
+public enum GuessOutcome {
+	CORRECT, // The guess was correct and the hidden secret string was updated
+	INCORRECT, // The guess was incorrect and one attempt was used
+	REPEATED, // The guess was already made, nothing changed
+	EMPTY, // No guess was entered
+	INVALID, // The guess is a special character. Only letters and numbers are allowed
+	ALREADY_WON, // The game was already won
+	ALREADY_LOST, // The game was already lost
+	UNKNOWN_SESSION, // No active game session has the given id
+	RATE_LIMITED, // The session or client exceeded its guess rate
+	OVERLOADED; // The engine is shedding load and rejected the guess without processing it
+
+	/**
+	 * @return true if the guess was evaluated and changed the game state
+	 */
+	public boolean isAccepted() {
+		return this == CORRECT || this == INCORRECT;
+	}
+}
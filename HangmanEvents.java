@@ -0,0 +1,191 @@
+package mari.mvp3;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JDK Flight Recorder events of the game: loading the lists of words and phrases, configuring and playing a game (single guesses and batches of letters), and reading,
+ * sorting and saving the leaderboard. The events are recorded with the standard JFR tooling, e.g.
+ * java -XX:StartFlightRecording=filename=hangman.jfr ... and then viewed in JDK Mission Control next to the GC and safepoint events.
+ * Each event is created and begun before the work it measures, then committed with its fields only if shouldCommit() is true.
+ * When the event is not enabled in the recording, the JIT compiler removes the event object, so the events cost nearly nothing.
+ */
+public final class HangmanEvents {
+
+	private HangmanEvents() {
+	}
+
+	@Name("mari.mvp3.DictionaryFetch")
+	@Label("Dictionary Fetch")
+	@Category({ "Hangman", "I/O" })
+	@Description("Words of a difficulty level read from the dictionary URL")
+	public static class DictionaryFetch extends Event {
+		@Label("URL")
+		String url;
+
+		@Label("Difficulty")
+		int difficulty;
+
+		@Label("Bytes Read")
+		@Description("Characters of the ASCII word list read, line breaks included")
+		@DataAmount
+		long bytes;
+
+		@Label("Words")
+		int words;
+
+		@Label("Succeeded")
+		boolean succeeded;
+	}
+
+	@Name("mari.mvp3.PhraseFileLoad")
+	@Label("Phrase File Load")
+	@Category({ "Hangman", "I/O" })
+	public static class PhraseFileLoad extends Event {
+		@Label("File")
+		String file;
+
+		@Label("Bytes Read")
+		@DataAmount
+		long bytes;
+
+		@Label("Lines")
+		int lines;
+
+		@Label("Phrases")
+		@Description("Phrases kept after normalization and deduplication")
+		int phrases;
+
+		@Label("Succeeded")
+		boolean succeeded;
+	}
+
+	@Name("mari.mvp3.GameConfigure")
+	@Label("Game Configure")
+	@Category("Hangman")
+	@Description("Game configured with a player name and difficulty level, including the time to get the list of words or phrases")
+	public static class GameConfigure extends Event {
+		@Label("Mode")
+		String mode;
+
+		@Label("Difficulty")
+		int difficulty;
+
+		@Label("Corpus Size")
+		@Description("Number of words or phrases the secret is chosen from")
+		int corpusSize;
+	}
+
+	@Name("mari.mvp3.Guess")
+	@Label("Guess")
+	@Category("Hangman")
+	@StackTrace(false)
+	public static class Guess extends Event {
+		@Label("Session Id")
+		long sessionId;
+
+		@Label("Kind")
+		@Description("letter or word")
+		String kind;
+
+		@Label("Outcome")
+		@Description("Outcome of the guess, e.g. CORRECT (hit) or INCORRECT (miss)")
+		String outcome;
+
+		@Label("Attempts Left")
+		int attemptsLeft;
+	}
+
+	@Name("mari.mvp3.GuessBatch")
+	@Label("Guess Batch")
+	@Category("Hangman")
+	@StackTrace(false)
+	@Description("Several letters guessed at once")
+	public static class GuessBatch extends Event {
+		@Label("Session Id")
+		long sessionId;
+
+		@Label("Letters")
+		int letters;
+
+		@Label("Accepted")
+		@Description("Letters that were CORRECT or INCORRECT")
+		int accepted;
+
+		@Label("Correct")
+		int correct;
+
+		@Label("Attempts Left")
+		int attemptsLeft;
+	}
+
+	@Name("mari.mvp3.GameEnd")
+	@Label("Game End")
+	@Category("Hangman")
+	@StackTrace(false)
+	public static class GameEnd extends Event {
+		@Label("Session Id")
+		long sessionId;
+
+		@Label("Mode")
+		String mode;
+
+		@Label("Difficulty")
+		int difficulty;
+
+		@Label("Won")
+		boolean won;
+
+		@Label("Score")
+		int score;
+
+		@Label("Game Duration")
+		@Description("Time from the start of the game to its end, in milliseconds")
+		long gameMillis;
+	}
+
+	@Name("mari.mvp3.LeaderboardLoad")
+	@Label("Leaderboard Load")
+	@Category({ "Hangman", "Leaderboard" })
+	public static class LeaderboardLoad extends Event {
+		@Label("File")
+		String file;
+
+		@Label("Entries")
+		int entries;
+
+		@Label("Bytes Read")
+		@DataAmount
+		long bytes;
+	}
+
+	@Name("mari.mvp3.LeaderboardSort")
+	@Label("Leaderboard Sort")
+	@Category({ "Hangman", "Leaderboard" })
+	public static class LeaderboardSort extends Event {
+		@Label("Entries")
+		int entries;
+	}
+
+	@Name("mari.mvp3.LeaderboardSave")
+	@Label("Leaderboard Save")
+	@Category({ "Hangman", "Leaderboard" })
+	@Description("Leaderboard file and its sorted run written")
+	public static class LeaderboardSave extends Event {
+		@Label("File")
+		String file;
+
+		@Label("Entries")
+		int entries;
+
+		@Label("Bytes Written")
+		@Description("Size of the leaderboard file and of its sorted run")
+		@DataAmount
+		long bytes;
+	}
+}
@@ -17,7 +17,7 @@ public class HangmanFactory {
 	}
 
 	/***
-	 * Creates objects of HangmanGame class and returns the implementation of HangmanWordMode or HangmanPhraseMode
+	 * Creates objects of HangmanGame class and returns the implementation of HangmanWordMode, HangmanPhraseMode or HangmanTournamentMode
 	 * depending on the play mode chosen Returns null if the value of gameMode is invaild.
 	 * @param is the String of the game mode selected
 	 * @throws LeaderboardException (thrown by the HangmanWordMode or HangmanPhraseMode constructors) up the call stack
@@ -29,9 +29,29 @@ public class HangmanFactory {
 			return new HangmanWordMode();
 		case "phrases":
 			return new HangmanPhraseMode();
+		case "tournament":
+			return new HangmanTournamentMode();
 		default:
 			return null;
 		}
 
 	}
+
+	/**
+	 * Returns the leaderboard file of a play mode, where the results of its games are saved
+	 * @param gameMode is the play mode, as accepted by createGame()
+	 * @return the leaderboard file, or null if the value of gameMode is invalid
+	 */
+	public static String getLeaderboardFilename(String gameMode) {
+		switch (gameMode.toLowerCase()) {
+		case "words":
+			return HangmanWordMode.filename_word_lb;
+		case "phrases":
+			return HangmanPhraseMode.filename_phrase_lb;
+		case "tournament":
+			return HangmanTournamentMode.filename_tournament_lb;
+		default:
+			return null;
+		}
+	}
 }
\ No newline at end of file
@@ -16,9 +16,9 @@ public abstract class HangmanGame {
 	 * It contains both abstract and concrete methods.
 	 */
 	protected String name; // Player name
-	protected ArrayList<String> listOfStrings; // List containing secret strings the program chooses from
+	protected StringCorpus corpus; // Shared list of secret strings the program chooses from. Games with the same play mode and difficulty level use the same corpus
 	int difficulty; // The difficulty level selected by player
-	protected String secretString; // The secret word selected by the program from the listOfStrings
+	protected String secretString; // The secret word selected by the program from the corpus
 	protected int score; // The score calculated upon winning or losing a game
 	public StringBuilder hiddenSecretString; // The hidden secret word revealing correct guesses and hiding unknown letters with underscores. Uses StringBuilder vs String to allow easier and more efficient modification of String objects
 	public int attemptsLeft; // Keeps track of attempts left
@@ -27,21 +27,57 @@ public abstract class HangmanGame {
 	protected boolean didPlayerWin; // Keeps track of whether player has won
 	protected static Leaderboard lb = new Leaderboard(); // A static attribute that stores player names and scores from past games
 	protected final static int MAX_ATTEMPTS = 6; // Maximum allowed incorrect attempts set as a constant
+	private final static String[] SYMBOL_GUESSES = new String[TournamentSecret.SYMBOLS]; // Letter guesses by TournamentSecret.symbolOf(), shared by the batches of guesses
+	protected static GameEventLog eventLog; // Optional log recording every game action. Events are not recorded when it is null
+	protected static volatile GameEventListener liveListener; // Optional listener notified of every game action as it happens, e.g. the SpectatorFeed
+	protected long sessionId; // Identifies the current game in the event log. A new id is assigned every time the game is reset
+	protected int secretId; // Index of the secret string in the corpus
+	protected long startedAt; // Epoch time in milliseconds when the current game started
+	protected int guessStreak; // Consecutive correct guesses since the last incorrect guess
+	protected int longestGuessStreak; // Longest run of consecutive correct guesses of the current game
 	
 	
+	static {
+		for (char c = 'a'; c <= 'z'; c++) {
+			SYMBOL_GUESSES[TournamentSecret.symbolOf(c)] = String.valueOf(c);
+		}
+		for (char c = '0'; c <= '9'; c++) {
+			SYMBOL_GUESSES[TournamentSecret.symbolOf(c)] = String.valueOf(c);
+		}
+	}
+	
 	protected HangmanGame()  {
 	}
 	
 	/**
-	 * Sets player name and game configuration parameters for difficulty level. It also retrieves the list of strings available to play the game
+	 * Sets player name and game configuration parameters for difficulty level. It also obtains the list of strings available to play the game.
+	 * The list is only retrieved with loadCorpus() the first time it is needed; afterwards the corpus cached in CorpusCache is shared
 	 * @param name is the player's name
 	 * @param difficulty is the difficulty level
 	 * @throws Exception
 	 */
 	protected void configure(String name, int difficulty) throws WordListException, FileNotFoundException   {
+		HangmanEvents.GameConfigure event = new HangmanEvents.GameConfigure();
+		event.begin();
 		this.name = name;
 		this.difficulty = difficulty;
-		this.listOfStrings = getListOfStrings();
+		this.corpus = CorpusCache.getOrLoadCorpus(getCorpusKey(), this::loadCorpus);
+		event.end();
+		if (event.shouldCommit()) {
+			event.mode = getGameMode();
+			event.difficulty = difficulty;
+			event.corpusSize = this.corpus.size();
+			event.commit();
+		}
+	}
+
+	/**
+	 * Returns the key identifying the source of the list of strings in the CorpusCache. Games with the same key share the same corpus.
+	 * By default the key combines the play mode and the difficulty level
+	 * @return the corpus key
+	 */
+	protected String getCorpusKey() {
+		return getGameMode() + ":" + this.difficulty;
 	}
 	
 	/** 
@@ -50,6 +86,15 @@ public abstract class HangmanGame {
 	 * @throws Exception
 	 */
 	abstract protected ArrayList<String> getListOfStrings() throws WordListException, FileNotFoundException ;
+
+	/**
+	 * Loads the corpus of the game when it is not cached yet. By default the list of strings is packed into a new corpus;
+	 * play modes that can build the packed corpus directly override it
+	 * @return the corpus
+	 */
+	protected StringCorpus loadCorpus() throws WordListException, FileNotFoundException {
+		return StringCorpus.of(getListOfStrings());
+	}
 	
 	/** 
 	 * Initializes game state parameters to start a new game from scratch. 
@@ -68,16 +113,33 @@ public abstract class HangmanGame {
 		this.correctGuesses = new ArrayList<>();
 		this.didPlayerWin = false;
 		this.score = 0;
+		this.guessStreak = 0;
+		this.longestGuessStreak = 0;
+		this.startedAt = System.currentTimeMillis();
+		this.sessionId = GameEventLog.nextSessionId();
+		if (eventLog != null) {
+			eventLog.logGameCreated(this.sessionId, this.name, getGameMode(), this.difficulty, this.secretId, this.secretString);
+		}
+		GameEventListener listener = liveListener;
+		if (listener != null) {
+			listener.onGameCreated(this.sessionId, System.currentTimeMillis(), this.name, getGameMode(), this.difficulty, this.secretId, this.secretString);
+		}
 	}
 	
 	/**
-	 * Randomly chooses a secret string from the listOfStrings
+	 * Randomly chooses a secret string from the latest version of the corpus. If the corpus was reloaded by the CorpusManager
+	 * since the last game, the new version is picked up here; the game in progress keeps its secret string
 	 * @return a randomly selected secret string
 	 */
 	 protected String chooseSecretString() { 
+		StringCorpus latest = CorpusCache.get(getCorpusKey());
+		if (latest != null) {
+			this.corpus = latest;
+		}
 		Random random = new Random();
-		int randonNumber = random.nextInt(this.listOfStrings.size());
-		return this.listOfStrings.get(randonNumber);
+		int randonNumber = random.nextInt(this.corpus.size());
+		this.secretId = randonNumber;
+		return this.corpus.get(randonNumber);
 	}
 	
 	/** 
@@ -138,6 +200,255 @@ public abstract class HangmanGame {
 	return this.didPlayerWin;
 	}
 	
+	/**
+	 * Submits a guess, which is applied by applyGuess() and recorded as a Flight Recorder event.
+	 * The Controller and the GameSessionManager both submit guesses through this method
+	 * @param guess is the player's guess of a letter or word, in lower case
+	 * @return the outcome of the guess
+	 */
+	protected GuessOutcome submitGuess(String guess) {
+		HangmanEvents.Guess event = new HangmanEvents.Guess();
+		event.begin();
+		GuessOutcome outcome = applyGuess(guess);
+		event.end();
+		if (event.shouldCommit()) {
+			event.sessionId = this.sessionId;
+			event.kind = guess.length() > 1 ? "word" : "letter";
+			event.outcome = outcome.name();
+			event.attemptsLeft = this.attemptsLeft;
+			event.commit();
+		}
+		return outcome;
+	}
+
+	/**
+	 * Applies a guess according to the game rules: rejects guesses made after the game ended, empty guesses, special characters
+	 * and repeated guesses; otherwise reveals a correct guess or uses one attempt for an incorrect guess, and records the guess
+	 * in the event log
+	 * @param guess is the player's guess of a letter or word, in lower case
+	 * @return the outcome of the guess
+	 */
+	protected GuessOutcome applyGuess(String guess) {
+		if (this.attemptsLeft == 0) {
+			return GuessOutcome.ALREADY_LOST;
+		}
+		if (checkForWin()) {
+			return GuessOutcome.ALREADY_WON;
+		}
+		if (guess.equals("")) {
+			return GuessOutcome.EMPTY;
+		}
+		if (guess.matches("[^A-Za-z0-9]")) {
+			return GuessOutcome.INVALID;
+		}
+		if (isGuessRepeated(guess)) {
+			return GuessOutcome.REPEATED;
+		}
+		if (isGuessCorrect(guess)) {
+			this.guessStreak++;
+			this.longestGuessStreak = Math.max(this.longestGuessStreak, this.guessStreak);
+			addCorrectGuess(guess);
+			revealGuessedString(guess);
+			logGuess(guess, true);
+			return GuessOutcome.CORRECT;
+		}
+		this.guessStreak = 0;
+		decreaseAttemptByOne();
+		addIncorrectGuess(guess);
+		logGuess(guess, false);
+		return GuessOutcome.INCORRECT;
+	}
+
+	/**
+	 * Submits several letters at once, e.g. from a bot or a remote client. The letters are applied by applyGuesses() and the
+	 * batch is recorded as one Flight Recorder event
+	 * @param letters are the letters guessed, one guess per character, in the order they are applied
+	 * @return the outcome of each letter
+	 */
+	protected GuessOutcome[] submitGuesses(CharSequence letters) {
+		HangmanEvents.GuessBatch event = new HangmanEvents.GuessBatch();
+		event.begin();
+		GuessOutcome[] outcomes = applyGuesses(letters);
+		event.end();
+		if (event.shouldCommit()) {
+			int accepted = 0;
+			int correct = 0;
+			for (GuessOutcome outcome : outcomes) {
+				if (outcome.isAccepted()) {
+					accepted++;
+				}
+				if (outcome == GuessOutcome.CORRECT) {
+					correct++;
+				}
+			}
+			event.sessionId = this.sessionId;
+			event.letters = outcomes.length;
+			event.accepted = accepted;
+			event.correct = correct;
+			event.attemptsLeft = this.attemptsLeft;
+			event.commit();
+		}
+		return outcomes;
+	}
+
+	/**
+	 * Applies several letters with the same rules as applyGuess(), in one pass over the secret string instead of one pass per
+	 * letter and rule. The pass finds the letters of the secret and counts the hidden positions of each; the letters are then
+	 * applied in order, using one attempt for each incorrect letter, until the game is won or lost. The letters left after the end
+	 * of the game are ALREADY_WON or ALREADY_LOST. Finally the correct letters are revealed together.
+	 * Each letter applied is recorded in the event log like a single guess
+	 * @param letters are the letters guessed, one guess per character, in the order they are applied
+	 * @return the outcome of each letter
+	 */
+	protected GuessOutcome[] applyGuesses(CharSequence letters) {
+		int count = letters.length();
+		GuessOutcome[] outcomes = new GuessOutcome[count];
+		long guessed = 0; // Bit mask of the letters guessed, by TournamentSecret.symbolOf()
+		for (String guess : this.correctGuesses) {
+			guessed |= symbolMask(guess);
+		}
+		for (String guess : this.incorrectGuesses) {
+			guessed |= symbolMask(guess);
+		}
+		long inSecret = 0; // Letters of the secret string
+		int[] hiddenPositions = new int[TournamentSecret.SYMBOLS]; // Positions of each letter still hidden
+		int hidden = 0; // All the positions still hidden
+		int length = Math.min(this.secretString.length(), this.hiddenSecretString.length());
+		for (int i = 0; i < length; i++) {
+			int symbol = TournamentSecret.symbolOf(this.secretString.charAt(i));
+			if (symbol >= 0) {
+				inSecret |= 1L << symbol;
+				if (this.hiddenSecretString.charAt(i) == '_') {
+					hiddenPositions[symbol]++;
+				}
+			}
+		}
+		for (int i = 0; i < this.hiddenSecretString.length(); i++) {
+			if (this.hiddenSecretString.charAt(i) == '_') {
+				hidden++;
+			}
+		}
+		long revealed = 0; // Letters to reveal
+		int next = 0;
+		for (; next < count && this.attemptsLeft > 0 && hidden > 0; next++) {
+			int symbol = TournamentSecret.symbolOf(Character.toLowerCase(letters.charAt(next)));
+			if (symbol < 0) {
+				outcomes[next] = GuessOutcome.INVALID;
+				continue;
+			}
+			long bit = 1L << symbol;
+			if ((guessed & bit) != 0) {
+				outcomes[next] = GuessOutcome.REPEATED;
+				continue;
+			}
+			guessed |= bit;
+			String guess = SYMBOL_GUESSES[symbol];
+			if ((inSecret & bit) != 0) {
+				this.guessStreak++;
+				this.longestGuessStreak = Math.max(this.longestGuessStreak, this.guessStreak);
+				addCorrectGuess(guess);
+				revealed |= bit;
+				hidden -= hiddenPositions[symbol];
+				logGuess(guess, true);
+				outcomes[next] = GuessOutcome.CORRECT;
+			} else {
+				this.guessStreak = 0;
+				decreaseAttemptByOne();
+				addIncorrectGuess(guess);
+				logGuess(guess, false);
+				outcomes[next] = GuessOutcome.INCORRECT;
+			}
+		}
+		GuessOutcome ended = this.attemptsLeft == 0 ? GuessOutcome.ALREADY_LOST : GuessOutcome.ALREADY_WON;
+		for (; next < count; next++) {
+			outcomes[next] = ended;
+		}
+		if (revealed != 0) {
+			for (int i = 0; i < length; i++) {
+				int symbol = TournamentSecret.symbolOf(this.secretString.charAt(i));
+				if (symbol >= 0 && (revealed & 1L << symbol) != 0) {
+					this.hiddenSecretString.setCharAt(i, this.secretString.charAt(i));
+				}
+			}
+		}
+		this.didPlayerWin = hidden == 0;
+		return outcomes;
+	}
+
+	/**
+	 * @return the bit of a single letter guess, or 0 if the guess is a word
+	 */
+	private static long symbolMask(String guess) {
+		if (guess.length() != 1) {
+			return 0;
+		}
+		int symbol = TournamentSecret.symbolOf(guess.charAt(0));
+		return symbol < 0 ? 0 : 1L << symbol;
+	}
+
+	/**
+	 * @return true if the game was won or lost
+	 */
+	protected boolean isGameOver() {
+		return this.attemptsLeft == 0 || checkForWin();
+	}
+
+	/**
+	 * Records a guess and its outcome in the event log and notifies the live listener, if they are set
+	 * @param guess is the letter or word guessed
+	 * @param correct is true if the guess was correct
+	 */
+	protected void logGuess(String guess, boolean correct) {
+		if (eventLog != null) {
+			eventLog.logGuess(this.sessionId, guess, correct, this.attemptsLeft);
+		}
+		GameEventListener listener = liveListener;
+		if (listener != null) {
+			listener.onGuess(this.sessionId, System.currentTimeMillis(), guess, correct, this.attemptsLeft);
+		}
+	}
+
+	/**
+	 * Records the end of the game and its score in the event log and notifies the live listener, if they are set.
+	 * Called by the subclasses' implementation of calculateAndSaveScore()
+	 * @param score is the score saved to the leader board
+	 */
+	protected void logGameFinished(int score) {
+		HangmanEvents.GameEnd event = new HangmanEvents.GameEnd();
+		if (event.shouldCommit()) {
+			event.sessionId = this.sessionId;
+			event.mode = getGameMode();
+			event.difficulty = this.difficulty;
+			event.won = this.didPlayerWin;
+			event.score = score;
+			event.gameMillis = System.currentTimeMillis() - this.startedAt;
+			event.commit();
+		}
+		if (eventLog != null) {
+			eventLog.logGameFinished(this.sessionId, this.didPlayerWin, score);
+		}
+		GameEventListener listener = liveListener;
+		if (listener != null) {
+			listener.onGameFinished(this.sessionId, System.currentTimeMillis(), this.didPlayerWin, score);
+		}
+	}
+
+	/**
+	 * Abstract method that returns the name of the play mode, as accepted by HangmanFactory.createGame()
+	 * @return the play mode name
+	 */
+	abstract protected String getGameMode();
+
+	/**
+	 * Calculates the score of the game that just ended with the active ScoringRules of the play mode, from the difficulty level,
+	 * the secret string, the incorrect guesses, the time played and the longest streak of correct guesses
+	 * @return score
+	 */
+	protected int calculateScore() {
+		return ScoringRules.getActive().score(getGameMode(), this.difficulty, this.secretString, MAX_ATTEMPTS - this.attemptsLeft,
+				System.currentTimeMillis() - this.startedAt, this.longestGuessStreak, this.didPlayerWin);
+	}
+
 	/**
 	 * Abstract method for calculating and saving the score at the end of a game
 	 * @return the score
@@ -223,12 +534,36 @@ this.correctGuesses.add(guess);
 		HangmanGame.lb = lb;
 	}
 
+	protected static GameEventLog getEventLog() {
+		return eventLog;
+	}
+
+	protected static void setEventLog(GameEventLog eventLog) {
+		HangmanGame.eventLog = eventLog;
+	}
+
+	protected static GameEventListener getLiveListener() {
+		return liveListener;
+	}
+
+	protected static void setLiveListener(GameEventListener liveListener) {
+		HangmanGame.liveListener = liveListener;
+	}
+
+	protected long getSessionId() {
+		return sessionId;
+	}
+
 	protected static int getMaxAttempts() {
 		return MAX_ATTEMPTS;
 	}
 
 	protected void setListOfWords(ArrayList<String> listOfStrings) {
-		this.listOfStrings = listOfStrings;
+		this.corpus = StringCorpus.of(listOfStrings);
+	}
+
+	protected StringCorpus getCorpus() {
+		return this.corpus;
 	}
 
 	protected String getSecretWord()
@@ -2,22 +2,22 @@ package mari.mvp3;
 
 import java.io.BufferedReader;
 import java.io.EOFException;
-import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Random;
-import java.util.Scanner;
 
 /**
  * This class extends abstract class HangmanGame and overrides certain methods to adapt it to the "Guess phrase" play mode
  * In addition to the HangmanGame attributes, this class also contains the constant attributes for the leaderboard file name and the text files containing 
- * the list of easy and difficult phrases
+ * the list of easy and difficult phrases. The phrases of both files are graded into the ten difficulty levels by PhraseIndex
  * @author marianahu
  *
  */
@@ -32,6 +32,7 @@ public class HangmanPhraseMode extends HangmanGame {
 	public final static String filename_phrase_lb = "Phrase_LB.ser";
 	public final static String filename_difficult_phrases = "hangman_phrases_difficult.txt";
 	public final static String filename_easy_phrases = "hangman_phrases_easy.txt";
+	protected static volatile LoadStatistics lastLoadStatistics; // Statistics of the last phrase file loaded
 
 	/**
 	 * The HangmanPhraseMode constructor calls a method from Leaderboard to read the leaderboard results from file for games played on "guess phrases" mode
@@ -48,53 +49,137 @@ public class HangmanPhraseMode extends HangmanGame {
 		}
 	
 	/**
-	 * Overriding abstract method to get a list of phrases from text file.
+	 * Overriding method to share the corpus of a difficulty level with the other play modes using the phrases
+	 */
+	@Override
+	protected String getCorpusKey() {
+		return getCorpusKey(this.difficulty);
+	}
+
+	/**
+	 * Returns the key of the phrases of a difficulty level in the CorpusCache
+	 */
+	protected static String getCorpusKey(int difficulty) {
+		return "phrases:level" + difficulty;
+	}
+
+	/**
+	 * Overriding abstract method to get the list of phrases of the difficulty level from the PhraseIndex
 	 */
 	@Override
 	protected ArrayList<String> getListOfStrings() throws FileNotFoundException  {
-		ArrayList<String> phrases = new ArrayList<>();
-		File file = new File("");
-		if (this.difficulty > 6) {
-			file = new File(filename_difficult_phrases);
-		} else {
-			file = new File(filename_easy_phrases);
-		}
-		
-		Scanner scanner = new Scanner(file);
-		while (scanner.hasNextLine()) {
-			phrases.add((scanner.nextLine().toLowerCase()));
+		return PhraseIndex.getActive().phrases(this.difficulty);
+	}
+
+	/**
+	 * Overriding method to load the corpus. The phrases of the PhraseIndex are already packed, so no list of strings is created
+	 */
+	@Override
+	protected StringCorpus loadCorpus() throws FileNotFoundException {
+		return loadLevel(this.difficulty);
+	}
+
+	/**
+	 * Returns the phrases of a difficulty level from the PhraseIndex, which is built from the phrase files the first time and
+	 * whenever they change. Shared by loadCorpus(), the tournament mode and CorpusManager
+	 * @param difficulty is the difficulty level
+	 * @return the corpus of the phrases
+	 * @throws FileNotFoundException if there is no index and the phrase files cannot be read
+	 */
+	protected static StringCorpus loadLevel(int difficulty) throws FileNotFoundException  {
+		return PhraseIndex.getActive().corpus(difficulty);
+	}
+
+	/**
+	 * Reads the phrases of a text file with PhraseFileLoader and records the load statistics.
+	 * PhraseFileLoader lower cases the phrases, strips unsupported characters and drops empty and duplicate lines. Used by PhraseIndex
+	 * @param filename is the phrase file
+	 * @return the list of phrases
+	 * @throws FileNotFoundException if the file is not found or cannot be read
+	 */
+	protected static ArrayList<String> loadPhrases(String filename) throws FileNotFoundException  {
+		LoadStatistics stats = new LoadStatistics();
+		HangmanEvents.PhraseFileLoad event = new HangmanEvents.PhraseFileLoad();
+		event.begin();
+		boolean succeeded = false;
+		try {
+			ArrayList<String> phrases = PhraseFileLoader.load(Paths.get(filename), stats);
+			lastLoadStatistics = stats;
+			succeeded = true;
+			return phrases;
+		} catch (NoSuchFileException e) {
+			throw new FileNotFoundException(filename);
+		} catch (IOException e) {
+			throw new FileNotFoundException(filename + " could not be read");
+		} finally {
+			event.end();
+			if (event.shouldCommit()) {
+				event.file = filename;
+				event.bytes = stats.getBytes();
+				event.lines = stats.getLines();
+				event.phrases = stats.getAccepted();
+				event.succeeded = succeeded;
+				event.commit();
+			}
 		}
-		return phrases;
+	}
+
+	/**
+	 * Returns the statistics of the last phrase file loaded, or null if no file was loaded yet
+	 */
+	protected static LoadStatistics getLastLoadStatistics() {
+		return lastLoadStatistics;
 	}
 	
 
 	/**
 	 * Overriding abstract method to calculate and save scores at the end of a game.
-	 * Score calculation is based on length of secret phrase guessed.
+	 * Score calculation uses the active ScoringRules; by default it is based on the number of words of the secret phrase guessed.
 	 * Player name and score are saved to the leaderboard
 	 * @return score
 	 */
 	@Override
 	protected int calculateAndSaveScore() {
+		int score = calculateScore();
+		Leaderboard.addResultToLeaderboard(filename_phrase_lb, this.name, score);
+		logGameFinished(score);
+		return score;
+	}
+
+	/**
+	 * Calculates the score of a "Guess phrase" game. The score is five points per word of the secret phrase if the game was won, and zero otherwise.
+	 * These are the default scoring rules; kept for tools that recompute scores from recorded games as they were scored before ScoringRules
+	 * @param secretString is the secret phrase of the game
+	 * @param didPlayerWin is true if the player guessed the secret phrase
+	 * @return score
+	 */
+	protected static int calculateScore(String secretString, boolean didPlayerWin) {
 		int score = 0;
-		String[] words = this.secretString.split("\\s+"); // one or more whitespaces
+		String[] words = secretString.split("\\s+"); // one or more whitespaces
 		int phraseLen = words.length;
 
-		if (!this.didPlayerWin) {
+		if (!didPlayerWin) {
 			score = 0;
 		} else {
 			score = phraseLen * 5;
 		}
-		Leaderboard.addResultToLeaderboard(this.name, score);
 		return score;
 	}
 
+	/**
+	 * Overriding abstract method to return the name of the play mode used by the factory and the event log
+	 */
+	@Override
+	protected String getGameMode() {
+		return "phrases";
+	}
+
 	/**
 	 * Overriding abstract method to save leader board results to file containing only results for games played on "Guess phrase" mode
 	 */
 	@Override
 	protected void saveScoresToFile() {
-		this.lb.writeLeaderboardResultsToFile(filename_phrase_lb);
+		this.lb.saveLeaderboardResults(filename_phrase_lb);
 	}
 
 	/** 
@@ -0,0 +1,174 @@
+package mari.mvp3;
+
+import java.io.EOFException;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class extends abstract class HangmanGame to adapt a player of a Tournament to the "Tournament" play mode.
+ * Tournaments are played on the phrase files. Every new game joins the open tournament of its difficulty level, so all the players
+ * starting at the same time get the same secret phrase. Guesses are applied by the Tournament to the player's TournamentPlayer state,
+ * and the attributes read by the Controller and the view (hidden secret string, attempts left, guesses) are updated from it.
+ * The score depends on the finish place of the player in the tournament.
+ */
+public class HangmanTournamentMode extends HangmanGame {
+
+	/**
+	 * Defines the constant for the filename where leaderboard results of tournament games are persisted and retrieved from
+	 */
+	public final static String filename_tournament_lb = "Tournament_LB.ser";
+	private final static AtomicLong nextPlayerId = new AtomicLong(1);
+
+	protected final long playerId = nextPlayerId.getAndIncrement(); // Identifies the session of the player in the tournaments, across games
+
+	protected Tournament tournament; // The tournament joined by the current game
+	protected TournamentPlayer player; // State of the player in the tournament
+
+	/**
+	 * The HangmanTournamentMode constructor calls a method from Leaderboard to read the leaderboard results from file for games played on "tournament" mode
+	 */
+	public HangmanTournamentMode() throws LeaderboardException {
+		super();
+		try {
+			Leaderboard.readLeaderboardResultsFromFile(filename_tournament_lb);
+		} catch (EOFException e) { // If the file is currently empty, skip reading from it and return
+			return;
+		} catch (IOException | ClassNotFoundException e) {
+			throw new LeaderboardException("There was a problem loading the leader board. The application will now exit.");
+		}
+	}
+
+	/**
+	 * Overriding method to share the phrases of the difficulty level with the "guess phrase" mode
+	 */
+	@Override
+	protected String getCorpusKey() {
+		return HangmanPhraseMode.getCorpusKey(this.difficulty);
+	}
+
+	/**
+	 * Overriding abstract method to get the list of phrases of the difficulty level from the PhraseIndex
+	 */
+	@Override
+	protected ArrayList<String> getListOfStrings() throws FileNotFoundException {
+		return PhraseIndex.getActive().phrases(this.difficulty);
+	}
+
+	/**
+	 * Overriding method to share the packed phrases of the difficulty level with HangmanPhraseMode
+	 */
+	@Override
+	protected StringCorpus loadCorpus() throws FileNotFoundException {
+		return HangmanPhraseMode.loadLevel(this.difficulty);
+	}
+
+	/**
+	 * Overriding method to join the open tournament instead of choosing a random secret. If the player already joined the open
+	 * tournament, they join the next one, which opens once the open tournament is closed
+	 * @return the secret string of the tournament
+	 */
+	@Override
+	protected String chooseSecretString() {
+		StringCorpus latest = CorpusCache.get(getCorpusKey());
+		if (latest != null) {
+			this.corpus = latest;
+		}
+		TournamentPlayer joined = Tournament.joinOpenTournament(getCorpusKey(), this.corpus, this.difficulty, this.playerId, this.name);
+		this.tournament = joined.getTournament();
+		this.player = joined;
+		this.secretId = this.tournament.getSecret().getSecretId();
+		return this.tournament.getSecret().getSecret();
+	}
+
+	/**
+	 * Overriding method to apply the guess to the player's tournament state, then update the game attributes from that state
+	 */
+	@Override
+	protected GuessOutcome applyGuess(String guess) {
+		GuessOutcome outcome = this.tournament.guess(this.player, guess);
+		if (outcome != GuessOutcome.CORRECT && outcome != GuessOutcome.INCORRECT) {
+			return outcome;
+		}
+		boolean correct = outcome == GuessOutcome.CORRECT;
+		synchronized (this.player) {
+			this.attemptsLeft = this.player.attemptsLeft;
+			this.hiddenSecretString = this.tournament.getSecret().reveal(this.player.guessMask, this.player.wordMask);
+		}
+		if (correct) {
+			addCorrectGuess(guess);
+		} else {
+			addIncorrectGuess(guess);
+		}
+		logGuess(guess, correct);
+		return outcome;
+	}
+
+	/**
+	 * Overriding method to apply the letters one by one to the player's tournament state, which is shared with the tournament
+	 */
+	@Override
+	protected GuessOutcome[] applyGuesses(CharSequence letters) {
+		GuessOutcome[] outcomes = new GuessOutcome[letters.length()];
+		for (int i = 0; i < outcomes.length; i++) {
+			outcomes[i] = applyGuess(String.valueOf(Character.toLowerCase(letters.charAt(i))));
+		}
+		return outcomes;
+	}
+
+	/**
+	 * Overriding abstract method to check whether a guessed word is one of the words of the tournament secret
+	 */
+	@Override
+	protected boolean isWordGuessCorrect(String guess) {
+		return this.tournament.getSecret().tokensMatching(guess) != 0;
+	}
+
+	/**
+	 * Overriding abstract method to reveal the words guessed by the player
+	 */
+	@Override
+	protected void revealGuessedWord(String guess) {
+		synchronized (this.player) {
+			this.hiddenSecretString = this.tournament.getSecret().reveal(this.player.guessMask, this.player.wordMask);
+		}
+	}
+
+	/**
+	 * Overriding abstract method to save the score given by the tournament, which depends on the finish place of the player
+	 * @return score
+	 */
+	@Override
+	protected int calculateAndSaveScore() {
+		int score = this.player.getScore();
+		this.didPlayerWin = this.player.getPlace() > 0;
+		Leaderboard.addResultToLeaderboard(filename_tournament_lb, this.name, score);
+		logGameFinished(score);
+		return score;
+	}
+
+	/**
+	 * Overriding abstract method to return the name of the play mode used by the factory and the event log
+	 */
+	@Override
+	protected String getGameMode() {
+		return "tournament";
+	}
+
+	/**
+	 * Overriding abstract method to save leader board results to file containing only results for games played on "tournament" mode
+	 */
+	@Override
+	protected void saveScoresToFile() {
+		Leaderboard.saveLeaderboardResults(filename_tournament_lb);
+	}
+
+	protected Tournament getTournament() {
+		return tournament;
+	}
+
+	protected TournamentPlayer getPlayer() {
+		return player;
+	}
+}
@@ -1,9 +1,8 @@
 package mari.mvp3;
 
-import java.io.BufferedReader;
 import java.io.EOFException;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.ProtocolException;
@@ -22,6 +21,7 @@ public class HangmanWordMode extends HangmanGame {
  */
 	public final static String filename_word_lb = "word_LB.ser";
 	public final static String dictionaryUrl = "http://app.linkedin-reach.io/words?";
+	protected static volatile LoadStatistics lastLoadStatistics; // Statistics of the last dictionary fetched
 
 	/**
 	 * The HangmanWordMode constructor calls a method from Leaderboard to read the leaderboard results from file for games played on "guess words" mode
@@ -42,41 +42,91 @@ public class HangmanWordMode extends HangmanGame {
 	 */
 	@Override
 	protected ArrayList<String> getListOfStrings() throws WordListException  {
-		String url = dictionaryUrl + "difficulty=" + this.difficulty;
-		ArrayList<String> wordsFromDictionary = new ArrayList<>();
+		return loadDictionary(this.difficulty).toList();
+	}
+
+	/**
+	 * Overriding method to load the corpus. The words processed by the DictionaryPipeline are already packed, so no list of strings is created
+	 */
+	@Override
+	protected StringCorpus loadCorpus() throws WordListException {
+		return loadDictionary(this.difficulty).getCorpus();
+	}
+
+	/**
+	 * Reads the words of a difficulty level from the LinkedIn provided API and processes them with the DictionaryPipeline.
+	 * Shared by loadCorpus() and by CorpusManager, which refreshes the cached dictionaries without creating a game
+	 * @param difficulty is the difficulty level
+	 * @return the words in lower case, without duplicates nor entries that cannot be played
+	 * @throws WordListException if the list of words cannot be retrieved
+	 */
+	protected static DictionaryPipeline.Dictionary loadDictionary(int difficulty) throws WordListException  {
+		String url = dictionaryUrl + "difficulty=" + difficulty;
+		DictionaryPipeline.Dictionary dictionary = null;
 		HttpURLConnection con = null;
+		HangmanEvents.DictionaryFetch event = new HangmanEvents.DictionaryFetch();
+		event.begin();
+		boolean succeeded = false;
 		try {
 		URL obj = new URL(url);
 		con = (HttpURLConnection) obj.openConnection();
 		con.setRequestMethod("GET");
 
-		BufferedReader in = new BufferedReader(new InputStreamReader(con.getInputStream()));
-		String inputLine;
-
-		while ((inputLine = in.readLine()) != null) {
-			wordsFromDictionary.add(inputLine.toLowerCase());
+		try (InputStream in = con.getInputStream()) {
+			dictionary = DictionaryPipeline.process(in, url);
 		}
-		in.close();
+		lastLoadStatistics = dictionary.getStatistics();
+		succeeded = true;
 		} catch(IOException e) {
 			throw new WordListException("There was a problem connecting and/or reading list of words from the API");
+		} finally {
+			event.end();
+			if (event.shouldCommit()) {
+				event.url = url;
+				event.difficulty = difficulty;
+				event.bytes = dictionary != null ? dictionary.getStatistics().getBytes() : 0;
+				event.words = dictionary != null ? dictionary.getCorpus().size() : 0;
+				event.succeeded = succeeded;
+				event.commit();
+			}
 		}
-		return wordsFromDictionary;
+		return dictionary;
+	}
+
+	/**
+	 * Returns the statistics of the last dictionary fetched, or null if no dictionary was fetched yet
+	 */
+	protected static LoadStatistics getLastLoadStatistics() {
+		return lastLoadStatistics;
 	}
 	
 /**
  * Overriding abstract method to calculate and save scores at the end of a game.
- * Score calculation is based on difficulty level.
+ * Score calculation uses the active ScoringRules; by default the score is the difficulty level.
  * Player name and score are saved to the leader board
  * @return score
  */
 	@Override
 	protected int calculateAndSaveScore() {
+		int score = calculateScore();
+		Leaderboard.addResultToLeaderboard(filename_word_lb, this.name, score);
+		logGameFinished(score);
+		return score;
+	}
+
+	/**
+	 * Calculates the score of a "Guess word" game. The score equals the difficulty level if the game was won, and zero otherwise.
+	 * These are the default scoring rules; kept for tools that recompute scores from recorded games as they were scored before ScoringRules
+	 * @param difficulty is the difficulty level of the game
+	 * @param didPlayerWin is true if the player guessed the secret word
+	 * @return score
+	 */
+	protected static int calculateScore(int difficulty, boolean didPlayerWin) {
 		int score = 0;
-		int dif = this.difficulty;
-		if (!this.didPlayerWin) {
+		if (!didPlayerWin) {
 			score = 0;
 		} else {
-			switch (dif) {
+			switch (difficulty) {
 			case 1:
 				score = 1;
 				break;
@@ -109,16 +159,23 @@ public class HangmanWordMode extends HangmanGame {
 				break;
 			}
 		}
-		Leaderboard.addResultToLeaderboard(this.name, score);
 		return score;
 	}
 
+	/**
+	 * Overriding abstract method to return the name of the play mode used by the factory and the event log
+	 */
+	@Override
+	protected String getGameMode() {
+		return "words";
+	}
+
 	/**
 	 * Overriding abstract method to save leader board results to file containing only results for games played on "Guess word" mode
 	 */
 	@Override
 	protected void saveScoresToFile() {
-		Leaderboard.writeLeaderboardResultsToFile(filename_word_lb);
+		Leaderboard.saveLeaderboardResults(filename_word_lb);
 	}
 
 	/** 
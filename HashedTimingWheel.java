@@ -0,0 +1,147 @@
+package mari.mvp3;
+
+import java.util.function.Consumer;
+
+/**
+ * Hashed timing wheel used to expire idle game sessions. Time is divided into ticks, and every timeout is stored in the
+ * slot of the tick it expires at, in a doubly linked list threaded through the timeouts themselves. Scheduling and cancelling
+ * a timeout are O(1), and advancing the wheel only visits the slots of the ticks that elapsed. A timeout further away than
+ * one revolution of the wheel stays in its slot until the revolution it expires in.
+ * The wheel is not thread-safe; callers synchronize access to it.
+ *
+ * @param <T> is the type of the value attached to each timeout
+ */
+public class HashedTimingWheel<T> {
+
+	/**
+	 * A scheduled timeout. It is a node of the linked list of its slot, so scheduling it does not allocate
+	 */
+	public static class Timeout<T> {
+		private final T value;
+		private long deadlineTick;
+		private Timeout<T> prev;
+		private Timeout<T> next;
+		private boolean scheduled;
+
+		public Timeout(T value) {
+			this.value = value;
+		}
+
+		public T getValue() {
+			return value;
+		}
+
+		public boolean isScheduled() {
+			return scheduled;
+		}
+	}
+
+	private final long tickNanos;
+	private final int mask; // Number of slots minus one, the number of slots being a power of two
+	private final Timeout<T>[] heads; // First timeout of each slot
+	private final long startNanos;
+	private long currentTick; // Last tick processed by advance()
+	private int size;
+
+	/**
+	 * @param tickNanos is the duration of a tick, which is the precision of the timeouts
+	 * @param slots is the number of slots, rounded up to a power of two. One revolution of the wheel lasts slots * tickNanos
+	 */
+	@SuppressWarnings("unchecked")
+	public HashedTimingWheel(long tickNanos, int slots) {
+		int size = Integer.highestOneBit(Math.max(2, slots - 1)) << 1;
+		this.tickNanos = tickNanos;
+		this.mask = size - 1;
+		this.heads = (Timeout<T>[]) new Timeout<?>[size];
+		this.startNanos = System.nanoTime();
+	}
+
+	private long tickOf(long nanos) {
+		return (nanos - startNanos) / tickNanos;
+	}
+
+	/**
+	 * Schedules a timeout, or moves it if it is already scheduled
+	 * @param timeout is the timeout to schedule
+	 * @param deadlineNanos is the System.nanoTime() at which it expires
+	 */
+	public void schedule(Timeout<T> timeout, long deadlineNanos) {
+		if (timeout.scheduled) {
+			unlink(timeout);
+		}
+		// A deadline in the past expires on the next tick
+		timeout.deadlineTick = Math.max(currentTick + 1, tickOf(deadlineNanos) + 1);
+		int slot = (int) (timeout.deadlineTick & mask);
+		timeout.prev = null;
+		timeout.next = heads[slot];
+		if (heads[slot] != null) {
+			heads[slot].prev = timeout;
+		}
+		heads[slot] = timeout;
+		timeout.scheduled = true;
+		size++;
+	}
+
+	/**
+	 * Removes a timeout from the wheel
+	 * @return true if the timeout was scheduled
+	 */
+	public boolean cancel(Timeout<T> timeout) {
+		if (!timeout.scheduled) {
+			return false;
+		}
+		unlink(timeout);
+		return true;
+	}
+
+	private void unlink(Timeout<T> timeout) {
+		int slot = (int) (timeout.deadlineTick & mask);
+		if (timeout.prev != null) {
+			timeout.prev.next = timeout.next;
+		} else {
+			heads[slot] = timeout.next;
+		}
+		if (timeout.next != null) {
+			timeout.next.prev = timeout.prev;
+		}
+		timeout.prev = null;
+		timeout.next = null;
+		timeout.scheduled = false;
+		size--;
+	}
+
+	/**
+	 * Processes the ticks elapsed up to the given time and passes every expired timeout to the consumer.
+	 * Expired timeouts are unscheduled before the consumer is called, so the consumer may schedule them again
+	 * @param nowNanos is the current System.nanoTime()
+	 * @param expired receives the expired timeouts
+	 * @return the number of expired timeouts
+	 */
+	public int advance(long nowNanos, Consumer<Timeout<T>> expired) {
+		long targetTick = tickOf(nowNanos);
+		int count = 0;
+		// When more than one revolution elapsed, every slot is visited once and the deadline check catches all expired timeouts
+		long firstTick = Math.max(currentTick + 1, targetTick - mask);
+		for (long tick = firstTick; tick <= targetTick; tick++) {
+			Timeout<T> timeout = heads[(int) (tick & mask)];
+			while (timeout != null) {
+				Timeout<T> next = timeout.next;
+				if (timeout.deadlineTick <= targetTick) {
+					unlink(timeout);
+					count++;
+					expired.accept(timeout);
+				}
+				timeout = next;
+			}
+		}
+		currentTick = Math.max(currentTick, targetTick);
+		return count;
+	}
+
+	/**
+	 * @return the number of scheduled timeouts
+	 */
+	public int size() {
+		return size;
+	}
+}
@@ -8,87 +8,545 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 
 /**
  * Class that stores past game results in an ArrayList of LeaderboardResult objects.
  * This class handles all functionality related to reading LeaderboardResult objects stored in a
  * file, writing LeaderboardResult objects to a file, addition of new LeaderboardResult to the list, and sorting
- * of LeaderboardResult objects
- * 
+ * of LeaderboardResult objects.
+ * Each leaderboard file has its own Board, which is read once and then kept in memory, so that games of several play modes running
+ * at the same time each save their results to the file of their mode. The board read last is the current board, shown by the views.
+ * Readers get the results from immutable LeaderboardSnapshot objects published by the writers, with a single volatile read and no lock.
+ * To keep adding results cheap, new results are published in batches: when as many results are pending as are published, when the
+ * last publication is old enough, or when the leaderboard is sorted or saved at the end of a game. The time between publications
+ * grows with the time a publication takes, so that publishing takes at most about a tenth of the time of the writers. Once that
+ * time has elapsed, pending results are also published by the next reader, so they show up even when no other result is added.
+ * For very large boards, useOffHeapStore() keeps the results in an OffHeapLeaderboard, in memory-mapped files instead of the heap;
+ * the snapshots are then empty and the results are read from the published index of the OffHeapLeaderboard.
+ * When a LeaderboardPersister is installed, every change marks the file of the board dirty and the persister writes it on its own thread
+ *
  * @author marianahu
  *
  */
 
 public class Leaderboard {
 
-	protected static ArrayList<LeaderboardResult> LeaderboardResults;
+	protected final static int PUBLISH_BATCH_SIZE = 64; // Minimum pending results that trigger the publication of a new snapshot
+	protected final static long PUBLISH_INTERVAL_MILLIS = 50; // Minimum time a result stays pending while results keep being added
+	protected final static int PUBLISH_COST_RATIO = 9; // Time between publications, in multiples of the time the last publication took
+
+	/**
+	 * Results of one leaderboard file. The fields are guarded by the class lock of Leaderboard, except the snapshot and the
+	 * OffHeapLeaderboard, which are read without locking
+	 */
+	private static final class Board {
+		final String filename;
+		ArrayList<LeaderboardResult> results = new ArrayList<>();
+		volatile LeaderboardSnapshot snapshot = LeaderboardSnapshot.EMPTY; // Last published results
+		final ArrayList<LeaderboardResult> pending = new ArrayList<>(); // Results added since the last snapshot
+		long publishMillis; // Time the last publication took
+		volatile long publishDueMillis; // Time from which readers publish the pending results, 0 when no result is pending
+		volatile OffHeapLeaderboard offHeapResults; // Results of the file when the off-heap store is used, null otherwise
+		final TimeWindowedLeaderboard windowedResults = new TimeWindowedLeaderboard(); // Recent results bucketed by day for daily and weekly leaderboards
+		final PlayerNameIndex nameIndex = new PlayerNameIndex(); // Best result of every player, searchable by name prefix
+		final PersonalBestLeaderboard personalBests = new PersonalBestLeaderboard(); // Each player once, with their best result
+
+		Board(String filename) {
+			this.filename = filename;
+		}
+
+		List<LeaderboardResult> getResults() {
+			OffHeapLeaderboard board = offHeapResults;
+			return board != null ? board.getResults() : snapshot.getResults();
+		}
+	}
+
+	private final static HashMap<String, Board> boards = new HashMap<>(); // Boards read so far, by file, guarded by the class lock
+	private static volatile Board current = new Board(null); // Board read last, shown by the views
+	private static boolean offHeapStore; // Whether the leaderboard files read from now on are kept in an OffHeapLeaderboard
+	protected static volatile LeaderboardPersister persister; // Writes the changed leaderboard files in the background, null to write them when saved
 
 	protected Leaderboard() {
-		LeaderboardResults = new ArrayList<>();
 	}
 
 	/**
-	 * Adds a new LeaderboardResult object to the list
+	 * Adds a new LeaderboardResult object to the list of a leaderboard file. The file is read first if no game read it yet
+	 * @param filename is the leaderboard file of the play mode of the game
 	 * @param nickname is the player name needed to instantiate the LeaderboardResult object
 	 * @param score is the player's score needed to instantiate the LeaderboardResult object
 	 */
-	protected static void addResultToLeaderboard(String nickname, int score) {
-		LeaderboardResults.add(new LeaderboardResult(nickname, score));
+	protected static synchronized void addResultToLeaderboard(String filename, String nickname, int score) {
+		Board board = boards.get(filename);
+		if (board == null) {
+			try {
+				board = loadBoard(filename);
+			} catch (IOException | ClassNotFoundException e) {
+				e.printStackTrace();
+				return;
+			}
+		}
+		LeaderboardResult result = new LeaderboardResult(nickname, score);
+		board.windowedResults.add(result);
+		board.nameIndex.add(result);
+		board.personalBests.add(result);
+		if (persister != null) {
+			persister.markDirty(filename);
+		}
+		if (board.offHeapResults != null) {
+			addOffHeap(board, result);
+			return;
+		}
+		board.results.add(result);
+		board.pending.add(result);
+		// The batch grows with the leaderboard, so that copying the snapshot costs a constant number of copies per result added
+		int batch = Math.max(PUBLISH_BATCH_SIZE, board.snapshot.size());
+		long interval = Math.max(PUBLISH_INTERVAL_MILLIS, PUBLISH_COST_RATIO * board.publishMillis);
+		if (board.pending.size() >= batch || System.currentTimeMillis() - board.snapshot.getPublishedAt() >= interval) {
+			publish(board);
+		} else if (board.publishDueMillis == 0) {
+			board.publishDueMillis = board.snapshot.getPublishedAt() + interval;
+		}
+	}
+
+	/**
+	 * Adds a result to the OffHeapLeaderboard of a board, and merges the pending results with the same policy as the snapshots
+	 */
+	private static void addOffHeap(Board board, LeaderboardResult result) {
+		OffHeapLeaderboard offHeapResults = board.offHeapResults;
+		try {
+			offHeapResults.add(result.getName(), result.getScore(), result.getTimestamp());
+		} catch (IOException e) {
+			e.printStackTrace();
+			return;
+		}
+		int batch = Math.max(PUBLISH_BATCH_SIZE, offHeapResults.size());
+		long interval = Math.max(PUBLISH_INTERVAL_MILLIS, PUBLISH_COST_RATIO * offHeapResults.getMergeMillis());
+		if (offHeapResults.getPending() >= batch || System.currentTimeMillis() - offHeapResults.getMergedAt() >= interval) {
+			publish(board);
+		} else if (board.publishDueMillis == 0) {
+			board.publishDueMillis = offHeapResults.getMergedAt() + interval;
+		}
 	}
 
 	/**
-	 * Writes the list of LeaderboardResult objects to a file (serialization) to persist their state
+	 * Keeps the results of the leaderboard files read from now on in an OffHeapLeaderboard, next to the leaderboard file, instead
+	 * of LeaderboardResult objects on the heap. The first time a file is read this way, its results are imported into the board.
+	 * Saving then flushes the board; the leaderboard file and its sorted run are no longer written
+	 * @param enabled is true to use the off-heap store
+	 */
+	protected static synchronized void useOffHeapStore(boolean enabled) {
+		offHeapStore = enabled;
+	}
+
+	/**
+	 * Installs the persister that writes the leaderboard files from now on, or removes it with null
+	 * @param leaderboardPersister is the persister
+	 */
+	protected static void setPersister(LeaderboardPersister leaderboardPersister) {
+		persister = leaderboardPersister;
+	}
+
+	/**
+	 * Saves the results of a leaderboard file. With a LeaderboardPersister installed the file is only marked dirty and written
+	 * by the persister, so the caller never waits for the disk; otherwise the file is written right away
 	 * @param filename is the filename storing the serialized data
 	 */
-	protected static void writeLeaderboardResultsToFile(String filename) {
+	protected static void saveLeaderboardResults(String filename) {
+		LeaderboardPersister p = persister;
+		if (p != null) {
+			p.markDirty(filename);
+		} else {
+			writeLeaderboardResultsToFile(filename);
+		}
+	}
+
+	/**
+	 * Publishes the pending results of the current board in a new snapshot, merged into the results of the current snapshot.
+	 * With the off-heap store, the pending results are merged into the index of the OffHeapLeaderboard instead
+	 * @return the current snapshot
+	 */
+	protected static synchronized LeaderboardSnapshot publish() {
+		return publish(current);
+	}
+
+	private static LeaderboardSnapshot publish(Board board) {
+		board.publishDueMillis = 0;
+		if (board.offHeapResults != null) {
+			board.offHeapResults.merge();
+		} else if (!board.pending.isEmpty()) {
+			long start = System.currentTimeMillis();
+			LeaderboardResult[] added = board.pending.toArray(new LeaderboardResult[0]);
+			Arrays.sort(added);
+			board.pending.clear();
+			board.snapshot = board.snapshot.merge(added);
+			board.publishMillis = board.snapshot.getPublishedAt() - start;
+		}
+		return board.snapshot;
+	}
+
+	/**
+	 * Returns the last published results of the current board. Does not lock, so it can be called by any number of readers while games add results,
+	 * unless pending results are due to be published
+	 * @return the snapshot of the leaderboard
+	 */
+	protected static LeaderboardSnapshot getSnapshot() {
+		return readCurrent().snapshot;
+	}
+
+	/**
+	 * Returns the current board, after publishing its pending results if their publication is due. Without a LeaderboardPersister,
+	 * nothing else publishes them until a result is added or the board is sorted or saved
+	 */
+	private static Board readCurrent() {
+		Board board = current;
+		long due = board.publishDueMillis;
+		if (due != 0 && System.currentTimeMillis() >= due) {
+			publishDue(board);
+		}
+		return board;
+	}
+
+	private static synchronized void publishDue(Board board) {
+		if (board.publishDueMillis != 0) { // Not published by another reader or writer meanwhile
+			publish(board);
+		}
+	}
+
+	/**
+	 * Writes the list of LeaderboardResult objects of a leaderboard file to the file (serialization) to persist their state.
+	 * The results are also written as a sorted run next to the file, which is used to merge the leaderboards of several game processes.
+	 * Nothing is written if no game read the file
+	 * @param filename is the filename storing the serialized data
+	 */
+	protected static synchronized void writeLeaderboardResultsToFile(String filename) {
+		Board board = boards.get(filename);
+		if (board == null) {
+			return;
+		}
+		publish(board);
+		HangmanEvents.LeaderboardSave event = new HangmanEvents.LeaderboardSave();
+		event.begin();
 		try {
-			FileOutputStream fileOut = new FileOutputStream(filename);
-			ObjectOutputStream out = new ObjectOutputStream(fileOut);
-			out.writeObject(LeaderboardResults);
-			out.close();
-			fileOut.close();
+			OffHeapLeaderboard offHeapResults = board.offHeapResults;
+			if (offHeapResults != null) {
+				offHeapResults.flush();
+				event.end();
+				if (event.shouldCommit()) {
+					event.file = offHeapResults.getFilename() + OffHeapLeaderboard.board_file_suffix;
+					event.entries = offHeapResults.size();
+					event.bytes = offHeapResults.getMappedBytes();
+					event.commit();
+				}
+				return;
+			}
+			writeResultsToFile(filename, board.results);
+			event.end();
+			if (event.shouldCommit()) {
+				event.file = filename;
+				event.entries = board.results.size();
+				event.bytes = new File(filename).length() + new File(LeaderboardShard.getRunFilename(filename)).length();
+				event.commit();
+			}
 		} catch (IOException i) {
 			i.printStackTrace();
 		}
 	}
 
 	/**
-	 * Reads the list of LeaderboardResult objects from a file (deserialization) to retrieve the objects' states
-	 * Data is read into the ArrayList of LeaderboardResult objects
+	 * Captures the results of a leaderboard file so that the LeaderboardPersister can write them without holding the leaderboard lock.
+	 * The published snapshot is immutable, so it is captured without copying. An OffHeapLeaderboard is already in its files and is flushed instead
+	 * @param filename is the leaderboard file
+	 * @return the snapshot of the results, or null if there is nothing more to write because no game read the file or it is kept off heap
+	 */
+	protected static synchronized LeaderboardSnapshot captureResults(String filename) {
+		Board board = boards.get(filename);
+		if (board == null) {
+			return null;
+		}
+		if (board.offHeapResults != null) {
+			writeLeaderboardResultsToFile(filename);
+			return null;
+		}
+		return publish(board);
+	}
+
+	/**
+	 * Writes the results captured in a snapshot to a leaderboard file and its sorted run. Called by the LeaderboardPersister without the leaderboard lock
 	 * @param filename is the filename storing the serialized data
+	 * @param captured is the snapshot returned by captureResults()
+	 * @throws IOException if the file cannot be written
 	 */
-	protected static void readLeaderboardResultsFromFile(String filename) throws EOFException, IOException, ClassNotFoundException {
-		File f = new File(filename);
-		if (!f.exists()) {
-			f.createNewFile();
-			LeaderboardResults = new ArrayList<LeaderboardResult>();
+	protected static void writeSnapshotToFile(String filename, LeaderboardSnapshot captured) throws IOException {
+		HangmanEvents.LeaderboardSave event = new HangmanEvents.LeaderboardSave();
+		event.begin();
+		writeResultsToFile(filename, new ArrayList<>(captured.getResults()));
+		event.end();
+		if (event.shouldCommit()) {
+			event.file = filename;
+			event.entries = captured.size();
+			event.bytes = new File(filename).length() + new File(LeaderboardShard.getRunFilename(filename)).length();
+			event.commit();
+		}
+	}
+
+	/**
+	 * Writes a list of LeaderboardResult objects to a leaderboard file and its sorted run, without changing the results in memory.
+	 * Used to save the current results and by tools that rebuild leaderboard files, such as LeaderboardRescorer.
+	 * The file is written to a temporary file which then replaces it, so that a crash while writing never leaves a truncated leaderboard
+	 * @param filename is the filename storing the serialized data
+	 * @param results are the results to write
+	 * @throws IOException if the file cannot be written
+	 */
+	protected static void writeResultsToFile(String filename, ArrayList<LeaderboardResult> results) throws IOException {
+		writeSerializedResults(filename, results);
+		// Sorted run read by LeaderboardMerger to combine the leaderboards of several game processes
+		LeaderboardShard.writeRun(LeaderboardShard.getRunFilename(filename), results);
+	}
+
+	/**
+	 * Writes a list of LeaderboardResult objects to a leaderboard file only, without its sorted run. Used by LeaderboardTransfer once
+	 * it has merged an import into the run, so that the file and the run hold the same results whichever of the two is read
+	 * @param filename is the filename storing the serialized data
+	 * @param results are the results to write
+	 * @throws IOException if the file cannot be written
+	 */
+	protected static void writeSerializedResults(String filename, ArrayList<LeaderboardResult> results) throws IOException {
+		File temp = new File(filename + ".tmp");
+		FileOutputStream fileOut = new FileOutputStream(temp);
+		ObjectOutputStream out = new ObjectOutputStream(fileOut);
+		out.writeObject(results);
+		out.close();
+		fileOut.close();
+		Files.move(temp.toPath(), new File(filename).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Reads the list of LeaderboardResult objects from a file (deserialization) to retrieve the objects' states, and makes it the current board.
+	 * Nothing is read if a game already read the file: its board is kept in memory, and is more recent than the file when games saved results to it.
+	 * If the sorted run next to the file is more recent, e.g. because the game stopped between writing the two, the run is read instead
+	 * @param filename is the filename storing the serialized data
+	 */
+	protected static synchronized void readLeaderboardResultsFromFile(String filename) throws EOFException, IOException, ClassNotFoundException {
+		Board board = boards.get(filename);
+		if (board == null) {
+			board = loadBoard(filename);
+		}
+		current = board;
+	}
+
+	/**
+	 * Reads a leaderboard file into a new Board, kept for the next games of the same play mode
+	 * @param filename is the leaderboard file
+	 * @return the board
+	 */
+	private static Board loadBoard(String filename) throws IOException, ClassNotFoundException {
+		Board board = new Board(filename);
+		if (offHeapStore) {
+			readOffHeapResults(board);
 		} else {
+			HangmanEvents.LeaderboardLoad event = new HangmanEvents.LeaderboardLoad();
+			event.begin();
+			File f = new File(filename);
+			File read = f;
+			if (isRunNewer(filename)) {
+				read = new File(LeaderboardShard.getRunFilename(filename));
+				board.results = readRun(filename);
+			} else if (!f.exists()) {
+				f.createNewFile();
+			} else if (f.length() > 0) {
+				FileInputStream fileIn = new FileInputStream(filename);
+				ObjectInputStream in = new ObjectInputStream(fileIn);
+				@SuppressWarnings("unchecked") // A leaderboard file holds the single list written by writeResultsToFile()
+				ArrayList<LeaderboardResult> results = (ArrayList<LeaderboardResult>) in.readObject();
+				board.results = results;
+				in.close();
+				fileIn.close();
+			}
+			event.end();
+			if (event.shouldCommit()) {
+				event.file = read.getPath();
+				event.entries = board.results.size();
+				event.bytes = read.length();
+				event.commit();
+			}
+			LeaderboardResult[] sorted = board.results.toArray(new LeaderboardResult[0]);
+			Arrays.sort(sorted);
+			board.snapshot = new LeaderboardSnapshot(1, sorted);
+		}
+		// The indexes are built once per file; from then on they are kept up to date by addResultToLeaderboard()
+		for (LeaderboardResult r : board.getResults()) {
+			board.nameIndex.add(r);
+			board.personalBests.add(r);
+			if (r.getTimestamp() > 0) { // Results saved before timestamps were recorded only appear on the all-time leaderboard
+				board.windowedResults.add(r);
+			}
+		}
+		boards.put(filename, board);
+		return board;
+	}
+
+	/**
+	 * Opens the OffHeapLeaderboard of a leaderboard file for a board, importing the results of the file the first time
+	 * @param board is the board of the leaderboard file
+	 */
+	private static void readOffHeapResults(Board board) throws IOException, ClassNotFoundException {
+		HangmanEvents.LeaderboardLoad event = new HangmanEvents.LeaderboardLoad();
+		event.begin();
+		boolean imported = !OffHeapLeaderboard.exists(board.filename);
+		OffHeapLeaderboard offHeapResults = OffHeapLeaderboard.open(board.filename);
+		if (imported) {
+			for (LeaderboardResult r : readResultsFromFile(board.filename)) {
+				offHeapResults.add(r.getName(), r.getScore(), r.getTimestamp());
+			}
+			offHeapResults.merge();
+			offHeapResults.flush();
+		}
+		event.end();
+		if (event.shouldCommit()) {
+			event.file = board.filename + OffHeapLeaderboard.board_file_suffix;
+			event.entries = offHeapResults.size();
+			event.bytes = offHeapResults.getMappedBytes();
+			event.commit();
+		}
+		board.offHeapResults = offHeapResults;
+	}
+
+	/**
+	 * Reads the list of LeaderboardResult objects of a leaderboard file without changing the results in memory
+	 * @param filename is the filename storing the serialized data
+	 * @return the results, empty if the file does not exist or is empty
+	 */
+	protected static ArrayList<LeaderboardResult> readResultsFromFile(String filename) throws IOException, ClassNotFoundException {
+		if (isRunNewer(filename)) {
+			return readRun(filename);
+		}
+		File f = new File(filename);
+		if (!f.exists() || f.length() == 0) {
+			return new ArrayList<>();
+		}
+		try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(filename))) {
+			@SuppressWarnings("unchecked") // A leaderboard file holds the single list written by writeResultsToFile()
+			ArrayList<LeaderboardResult> results = (ArrayList<LeaderboardResult>) in.readObject();
+			return results;
+		}
+	}
 
-			FileInputStream fileIn = new FileInputStream(filename);
-			ObjectInputStream in = new ObjectInputStream(fileIn);
-			LeaderboardResults = (ArrayList<LeaderboardResult>) in.readObject();
-			in.close();
-			fileIn.close();
+	/**
+	 * @return true if the sorted run of a leaderboard file was written after the file itself. Both are written with the same results,
+	 * so on a file system with coarse modification times, where the two can have the same time, either one can be read
+	 */
+	protected static boolean isRunNewer(String filename) {
+		File f = new File(filename);
+		File run = new File(LeaderboardShard.getRunFilename(filename));
+		return run.exists() && (!f.exists() || run.lastModified() > f.lastModified());
+	}
+
+	protected static ArrayList<LeaderboardResult> readRun(String filename) throws IOException {
+		try (LeaderboardShard shard = new LeaderboardShard(LeaderboardShard.getRunFilename(filename))) {
+			ArrayList<LeaderboardResult> results = new ArrayList<>(shard.size());
+			while (shard.hasNext()) {
+				results.add(shard.next());
+			}
+			return results;
 		}
 	}
 
 	/**
-	 * Sorts the ArrayList of LeaderboardResult objects
+	 * Sorts the ArrayList of LeaderboardResult objects of the current board and publishes the pending results
 	 */
-	protected static void sortByScore() {
-		Collections.sort(LeaderboardResults);
+	protected static synchronized void sortByScore() {
+		HangmanEvents.LeaderboardSort event = new HangmanEvents.LeaderboardSort();
+		event.begin();
+		Board board = current;
+		Collections.sort(board.results);
+		publish(board);
+		event.end();
+		if (event.shouldCommit()) {
+			event.entries = board.offHeapResults != null ? board.offHeapResults.size() : board.results.size();
+			event.commit();
+		}
 	}
 
-	protected static ArrayList<LeaderboardResult> getLeaderboard() {
+	/**
+	 * Looks up the best result of a player and its rank on the last published results of the current board
+	 * @param name is the player name
+	 * @return the best result, or null if the player has no result
+	 */
+	protected static PlayerNameIndex.PlayerBest findPlayer(String name) {
+		Board board = readCurrent();
+		OffHeapLeaderboard offHeapResults = board.offHeapResults;
+		if (offHeapResults != null) {
+			return board.nameIndex.lookup(name, offHeapResults::rankOf);
+		}
+		return board.nameIndex.lookup(name, board.snapshot);
+	}
 
-		return LeaderboardResults;
+	/**
+	 * Returns the best players of the current board whose name starts with a prefix, without regard to case, with their rank on the
+	 * last published results
+	 * @param prefix is the start of the names
+	 * @param k is the maximum number of players to return
+	 */
+	protected static List<PlayerNameIndex.PlayerBest> searchPlayers(String prefix, int k) {
+		Board board = readCurrent();
+		OffHeapLeaderboard offHeapResults = board.offHeapResults;
+		if (offHeapResults != null) {
+			return board.nameIndex.search(prefix, k, offHeapResults::rankOf);
+		}
+		return board.nameIndex.search(prefix, k, board.snapshot);
 	}
 
-	protected ArrayList<LeaderboardResult> getLeaderboardResults() {
-		return LeaderboardResults;
+	/**
+	 * Returns the personal bests leaderboard of the current board, where each player appears once with their best result
+	 * @param k is the maximum number of players to return
+	 * @return the best result of each player, from highest to lowest score
+	 */
+	protected List<LeaderboardResult> getTopPersonalBests(int k) {
+		return current.personalBests.getTop(k);
+	}
+
+	/**
+	 * Returns the best results of the current board of the games that ended today (UTC)
+	 * @param k is the maximum number of results to return
+	 */
+	protected static ArrayList<LeaderboardResult> getTopToday(int k) {
+		return current.windowedResults.getTopToday(k);
+	}
+
+	/**
+	 * Returns the best results of the current board of the games that ended in the last seven days (UTC), today included
+	 * @param k is the maximum number of results to return
+	 */
+	protected static ArrayList<LeaderboardResult> getTopThisWeek(int k) {
+		return current.windowedResults.getTopThisWeek(k);
+	}
+
+	/**
+	 * Releases the daily buckets that fell out of the retention period of the time windowed leaderboards of every board
+	 * @return the number of buckets released
+	 */
+	protected static synchronized int evictExpiredResults() {
+		long now = System.currentTimeMillis();
+		int evicted = 0;
+		for (Board board : boards.values()) {
+			evicted += board.windowedResults.evictExpired(now);
+		}
+		return evicted;
+	}
 
+	/**
+	 * @return the results of the last published snapshot of the current board, or of its OffHeapLeaderboard, as a read-only list sorted
+	 * in descending order of score
+	 */
+	protected List<LeaderboardResult> getLeaderboardResults() {
+		return readCurrent().getResults();
 	}
 
 }
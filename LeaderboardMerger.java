@@ -0,0 +1,265 @@
+package mari.mvp3;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Combines the leaderboard shards written by several game processes into a single global top-k leaderboard.
+ * Since every shard is sorted in descending order of score, a shard can contribute at most k results to the global top-k,
+ * so the merger reads at most k results per shard and combines them with a k-way merge.
+ * The top results of every shard are cached together with the shard's modification time and size, so that re-merging
+ * after one shard changed only re-reads that shard.
+ */
+public class LeaderboardMerger {
+
+	private final int k; // Number of results in the global leaderboard
+	private final HashMap<String, CachedRun> cache = new HashMap<>(); // Run file name -> top results read from it
+	private ArrayList<LeaderboardResult> merged = new ArrayList<>(); // Result of the last merge
+
+	/**
+	 * Top results of one shard and the file attributes they were read with
+	 */
+	private static class CachedRun {
+		long lastModified;
+		long length;
+		ArrayList<LeaderboardResult> top;
+	}
+
+	/**
+	 * Cursor over a sorted list of results used by the k-way merge
+	 */
+	private static class Cursor {
+		final List<LeaderboardResult> results;
+		int position;
+
+		Cursor(List<LeaderboardResult> results) {
+			this.results = results;
+		}
+
+		LeaderboardResult current() {
+			return results.get(position);
+		}
+	}
+
+	/**
+	 * Current result of an open shard used by the streaming k-way merge
+	 */
+	private static class ShardHead {
+		final LeaderboardShard shard;
+		LeaderboardResult current;
+
+		ShardHead(LeaderboardShard shard) throws IOException {
+			this.shard = shard;
+			this.current = shard.next();
+		}
+	}
+
+	/**
+	 * @param k is the number of results of the global leaderboard
+	 */
+	public LeaderboardMerger(int k) {
+		this.k = k;
+	}
+
+	/**
+	 * Merges the given shards into the global top-k. Shards that did not change since the previous call are not read again,
+	 * and shards that are no longer listed are dropped from the cache
+	 * @param runFiles are the run files of all shards
+	 * @return the global top-k results from highest to lowest score
+	 * @throws IOException if a changed shard cannot be read
+	 */
+	public synchronized ArrayList<LeaderboardResult> merge(List<String> runFiles) throws IOException {
+		boolean changed = cache.keySet().retainAll(new HashSet<>(runFiles));
+		for (String runFile : runFiles) {
+			changed |= refreshShard(runFile);
+		}
+		if (changed) {
+			ArrayList<List<LeaderboardResult>> runs = new ArrayList<>(cache.size());
+			for (CachedRun run : cache.values()) {
+				runs.add(run.top);
+			}
+			merged = mergeSorted(runs, k);
+		}
+		return merged;
+	}
+
+	/**
+	 * Re-reads a single shard that is known to have changed and re-merges the cached top results of all shards
+	 * @param runFile is the run file of the shard that changed
+	 * @return the global top-k results from highest to lowest score
+	 * @throws IOException if the shard cannot be read
+	 */
+	public synchronized ArrayList<LeaderboardResult> remerge(String runFile) throws IOException {
+		cache.remove(runFile);
+		ArrayList<String> runFiles = new ArrayList<>(cache.keySet());
+		runFiles.add(runFile);
+		return merge(runFiles);
+	}
+
+	/**
+	 * Reads the top results of a shard if the shard is not cached or its file changed since it was cached
+	 * @return true if the shard was read
+	 */
+	private boolean refreshShard(String runFile) throws IOException {
+		File f = new File(runFile);
+		CachedRun run = cache.get(runFile);
+		if (run != null && run.lastModified == f.lastModified() && run.length == f.length()) {
+			return false;
+		}
+		run = new CachedRun();
+		run.lastModified = f.lastModified();
+		run.length = f.length();
+		run.top = LeaderboardShard.readTop(runFile, k);
+		cache.put(runFile, run);
+		return true;
+	}
+
+	/**
+	 * Merges lists sorted in descending order of score into a single sorted list of at most k results
+	 * @param runs are the sorted lists to merge
+	 * @param k is the maximum number of results to return
+	 * @return the k best results from highest to lowest score
+	 */
+	protected static ArrayList<LeaderboardResult> mergeSorted(List<? extends List<LeaderboardResult>> runs, int k) {
+		PriorityQueue<Cursor> heap = new PriorityQueue<>(Math.max(1, runs.size()), (a, b) -> a.current().compareTo(b.current()));
+		for (List<LeaderboardResult> run : runs) {
+			if (!run.isEmpty()) {
+				heap.add(new Cursor(run));
+			}
+		}
+		ArrayList<LeaderboardResult> top = new ArrayList<>();
+		while (!heap.isEmpty() && top.size() < k) {
+			Cursor cursor = heap.poll();
+			top.add(cursor.current());
+			cursor.position++;
+			if (cursor.position < cursor.results.size()) {
+				heap.add(cursor);
+			}
+		}
+		return top;
+	}
+
+	/**
+	 * Receives the results of a streaming merge in order
+	 */
+	private interface ResultSink {
+		void accept(LeaderboardResult r) throws IOException;
+	}
+
+	/**
+	 * Streams a k-way merge directly from the run files without caching, reading at most k results from each file
+	 * @param runFiles are the run files of all shards
+	 * @param k is the number of results to return
+	 * @return the global top-k results from highest to lowest score
+	 * @throws IOException if a shard cannot be read
+	 */
+	public static ArrayList<LeaderboardResult> mergeTop(List<String> runFiles, int k) throws IOException {
+		ArrayList<LeaderboardResult> top = new ArrayList<>();
+		streamMerge(openShards(runFiles), k, top::add);
+		return top;
+	}
+
+	/**
+	 * Merges run files into a new run file one result at a time, so that runs larger than the heap can be merged.
+	 * The output may be one of the input runs: it is only replaced once the merge is complete
+	 * @param runFiles are the run files to merge
+	 * @param outputRun is the run file written
+	 * @return the number of results written
+	 * @throws IOException if a run cannot be read or the output cannot be written
+	 */
+	public static int mergeRuns(List<String> runFiles, String outputRun) throws IOException {
+		ArrayList<LeaderboardShard> shards = openShards(runFiles);
+		long total = 0;
+		for (LeaderboardShard shard : shards) {
+			total += shard.size();
+		}
+		if (total > Integer.MAX_VALUE) {
+			for (LeaderboardShard shard : shards) {
+				shard.close();
+			}
+			throw new IOException("Too many results to merge into a single run: " + total);
+		}
+		LeaderboardShard.RunWriter writer = new LeaderboardShard.RunWriter(outputRun, (int) total);
+		try {
+			streamMerge(shards, Integer.MAX_VALUE, writer::write);
+		} catch (IOException e) {
+			try {
+				writer.close();
+			} catch (IOException incomplete) {
+				e.addSuppressed(incomplete);
+			}
+			throw e;
+		}
+		writer.close(); // The shards are closed, so the output can replace one of them
+		return (int) total;
+	}
+
+	private static ArrayList<LeaderboardShard> openShards(List<String> runFiles) throws IOException {
+		ArrayList<LeaderboardShard> shards = new ArrayList<>(runFiles.size());
+		try {
+			for (String runFile : runFiles) {
+				shards.add(new LeaderboardShard(runFile));
+			}
+			return shards;
+		} catch (IOException e) {
+			for (LeaderboardShard shard : shards) {
+				shard.close();
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * K-way merge of open shards with a heap of their current results. The shards are closed when the merge ends
+	 * @param shards are the open shards
+	 * @param limit is the maximum number of results merged
+	 * @param sink receives the results from highest to lowest score
+	 */
+	private static void streamMerge(ArrayList<LeaderboardShard> shards, int limit, ResultSink sink) throws IOException {
+		try {
+			PriorityQueue<ShardHead> heap = new PriorityQueue<>(Math.max(1, shards.size()),
+					(a, b) -> a.current.compareTo(b.current));
+			for (LeaderboardShard shard : shards) {
+				if (shard.hasNext()) {
+					heap.add(new ShardHead(shard));
+				}
+			}
+			int merged = 0;
+			while (!heap.isEmpty() && merged < limit) {
+				ShardHead head = heap.poll();
+				sink.accept(head.current);
+				merged++;
+				if (head.shard.hasNext() && merged < limit) {
+					head.current = head.shard.next();
+					heap.add(head);
+				}
+			}
+		} finally {
+			for (LeaderboardShard shard : shards) {
+				shard.close();
+			}
+		}
+	}
+
+	/**
+	 * Merges the run files given as arguments and prints the global leaderboard
+	 * @param args is the number of results followed by the run files to merge
+	 */
+	public static void main(String... args) throws IOException {
+		if (args.length < 2) {
+			System.out.println("Usage: LeaderboardMerger <k> <run file>...");
+			return;
+		}
+		int k = Integer.parseInt(args[0]);
+		ArrayList<LeaderboardResult> top = mergeTop(Arrays.asList(args).subList(1, args.length), k);
+		for (LeaderboardResult r : top) {
+			System.out.println(r.getName() + "\t" + r.getScore());
+		}
+	}
+}
@@ -0,0 +1,144 @@
+package mari.mvp3;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+
+/**
+ * Writes the leaderboard files on a background thread, so that finishing a game or clicking New Game or Quit never waits for the disk.
+ * Every change to the leaderboard marks its file dirty. The writer thread waits COALESCE_MILLIS after the first change, so that all the
+ * changes made meanwhile are saved in a single write, then captures the published LeaderboardSnapshot of each dirty file and writes it
+ * without holding the leaderboard lock. A burst of a thousand finished games is therefore saved in a few writes per leaderboard file.
+ * Each file is written to a temporary file which then replaces it atomically. close(), called from a shutdown hook, writes what is left.
+ */
+public class LeaderboardPersister {
+
+	protected final static long COALESCE_MILLIS = 200; // Time changes are collected after the first one before the file is written
+
+	private final LinkedHashSet<String> dirtyFilenames = new LinkedHashSet<>(); // Files changed since they were last captured, guarded by this
+	private long dirtySince; // Time the first of the dirty files was marked dirty, guarded by this
+	private boolean closed; // guarded by this
+	private final Object writeLock = new Object(); // Serializes the writes of the writer thread and of close()
+	private Thread writer;
+	private volatile long changes; // Changes marked since the persister was created
+	private volatile long writes; // Leaderboard files written
+	private volatile long failedWrites; // Writes that failed, leaving the file dirty
+	private volatile long lastWriteNanos; // Time spent writing the last file
+
+	/**
+	 * Starts the daemon thread that writes the dirty leaderboard files
+	 */
+	public synchronized void start() {
+		if (writer != null) {
+			return;
+		}
+		writer = new Thread(this::writeLoop, "leaderboard-persister");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * Marks a leaderboard file dirty, so that it is written after the coalescing delay. Never waits for the disk
+	 * @param filename is the leaderboard file
+	 */
+	public synchronized void markDirty(String filename) {
+		changes++;
+		if (dirtyFilenames.isEmpty()) {
+			dirtySince = System.nanoTime();
+		}
+		if (dirtyFilenames.add(filename)) {
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Waits for a change, lets the changes accumulate for the coalescing delay, then writes them
+	 */
+	private void writeLoop() {
+		try {
+			while (true) {
+				synchronized (this) {
+					while (!closed && dirtyFilenames.isEmpty()) {
+						wait();
+					}
+					long wait = COALESCE_MILLIS - (System.nanoTime() - dirtySince) / 1_000_000;
+					while (!closed && wait > 0) {
+						wait(wait);
+						wait = COALESCE_MILLIS - (System.nanoTime() - dirtySince) / 1_000_000;
+					}
+					if (closed) {
+						return;
+					}
+				}
+				flush();
+			}
+		} catch (InterruptedException e) {
+			// Stopped; close() writes what is left
+		}
+	}
+
+	/**
+	 * Captures the dirty files and writes them, in the order they were first marked dirty. Called by the writer thread and by close()
+	 */
+	private void flush() {
+		synchronized (writeLock) {
+			ArrayList<String> filenames;
+			synchronized (this) {
+				filenames = new ArrayList<>(dirtyFilenames);
+				dirtyFilenames.clear();
+			}
+			for (String filename : filenames) {
+				LeaderboardSnapshot snapshot = Leaderboard.captureResults(filename);
+				if (snapshot == null) {
+					continue;
+				}
+				long start = System.nanoTime();
+				try {
+					Leaderboard.writeSnapshotToFile(filename, snapshot);
+					writes++;
+				} catch (IOException e) {
+					e.printStackTrace();
+					failedWrites++;
+					markDirty(filename); // Written again after the coalescing delay
+				}
+				lastWriteNanos = System.nanoTime() - start;
+			}
+		}
+	}
+
+	/**
+	 * Stops the writer thread and writes the dirty files. Called from a shutdown hook when the application exits
+	 */
+	public void close() {
+		Thread thread;
+		synchronized (this) {
+			closed = true;
+			notifyAll();
+			thread = writer;
+		}
+		if (thread != null) {
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		flush();
+	}
+
+	public long getChanges() {
+		return changes;
+	}
+
+	public long getWrites() {
+		return writes;
+	}
+
+	public long getFailedWrites() {
+		return failedWrites;
+	}
+
+	public long getLastWriteNanos() {
+		return lastWriteNanos;
+	}
+}
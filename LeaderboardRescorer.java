@@ -0,0 +1,376 @@
+package mari.mvp3;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.IntStream;
+
+/**
+ * Bulk re-scoring of recorded games with the current ScoringRules. The game event logs are read in parallel (one fork-join task
+ * per file, as in GameAnalytics) to collect the scoring inputs of every finished game into flat arrays: play mode, difficulty level,
+ * secret string, incorrect guesses, duration and longest streak of correct guesses. All games are then scored in parallel and the
+ * results of the leaderboard files that a logged game produced, matched by player name, logged score and finish time, are given
+ * their new score. Results that no logged game produced, such as results saved before the logs started or imported from another
+ * server, are kept as they are. Tournament scores depend on the finish place, which is not in the logs, so they are kept too.
+ * The leaderboard files are rewritten, so the job must be run while no game is running.
+ */
+public class LeaderboardRescorer {
+
+	protected final static int READ_BUFFER_SIZE = 1 << 20;
+	protected final static long MATCH_MILLIS = 60_000; // Largest gap between the timestamp of a result and the logged finish of its game
+
+	/**
+	 * Scoring inputs of the finished games read from the logs, kept in parallel arrays indexed by game
+	 */
+	public static class FinishedGames {
+		int size;
+		String[] mode = new String[1024];
+		String[] name = new String[1024];
+		String[] secret = new String[1024];
+		int[] difficulty = new int[1024];
+		int[] misses = new int[1024];
+		int[] streak = new int[1024];
+		long[] duration = new long[1024];
+		long[] finishedAt = new long[1024];
+		boolean[] won = new boolean[1024];
+		int[] loggedScore = new int[1024];
+
+		void add(String mode, String name, String secret, int difficulty, int misses, int streak, long createdAt, long finishedAt,
+				boolean won, int loggedScore) {
+			if (size == this.mode.length) {
+				grow(size * 2);
+			}
+			this.mode[size] = mode;
+			this.name[size] = name;
+			this.secret[size] = secret;
+			this.difficulty[size] = difficulty;
+			this.misses[size] = misses;
+			this.streak[size] = streak;
+			this.duration[size] = finishedAt - createdAt;
+			this.finishedAt[size] = finishedAt;
+			this.won[size] = won;
+			this.loggedScore[size] = loggedScore;
+			size++;
+		}
+
+		private void grow(int capacity) {
+			mode = Arrays.copyOf(mode, capacity);
+			name = Arrays.copyOf(name, capacity);
+			secret = Arrays.copyOf(secret, capacity);
+			difficulty = Arrays.copyOf(difficulty, capacity);
+			misses = Arrays.copyOf(misses, capacity);
+			streak = Arrays.copyOf(streak, capacity);
+			duration = Arrays.copyOf(duration, capacity);
+			finishedAt = Arrays.copyOf(finishedAt, capacity);
+			won = Arrays.copyOf(won, capacity);
+			loggedScore = Arrays.copyOf(loggedScore, capacity);
+		}
+
+		/**
+		 * Appends the games of another collection to this one
+		 * @return this collection
+		 */
+		FinishedGames merge(FinishedGames other) {
+			if (size + other.size > mode.length) {
+				grow(size + other.size);
+			}
+			System.arraycopy(other.mode, 0, mode, size, other.size);
+			System.arraycopy(other.name, 0, name, size, other.size);
+			System.arraycopy(other.secret, 0, secret, size, other.size);
+			System.arraycopy(other.difficulty, 0, difficulty, size, other.size);
+			System.arraycopy(other.misses, 0, misses, size, other.size);
+			System.arraycopy(other.streak, 0, streak, size, other.size);
+			System.arraycopy(other.duration, 0, duration, size, other.size);
+			System.arraycopy(other.finishedAt, 0, finishedAt, size, other.size);
+			System.arraycopy(other.won, 0, won, size, other.size);
+			System.arraycopy(other.loggedScore, 0, loggedScore, size, other.size);
+			size += other.size;
+			return this;
+		}
+
+		public int size() {
+			return size;
+		}
+	}
+
+	/**
+	 * State of a game that was created but has not finished yet
+	 */
+	private static class OpenGame {
+		String mode;
+		String name;
+		String secret;
+		int difficulty;
+		long createdAt;
+		int misses;
+		int streak;
+		int longestStreak;
+	}
+
+	/**
+	 * Listener collecting the finished games of one log file. Names, modes and secrets are shared between games, since
+	 * they repeat across millions of games
+	 */
+	private static class Collector implements GameEventListener {
+
+		final FinishedGames games = new FinishedGames();
+		final HashMap<Long, OpenGame> openGames = new HashMap<>();
+		final HashMap<String, String> strings = new HashMap<>();
+
+		private String share(String s) {
+			String shared = strings.putIfAbsent(s, s);
+			return shared != null ? shared : s;
+		}
+
+		@Override
+		public void onGameCreated(long sessionId, long timestamp, String name, String mode, int difficulty, int secretId, String secret) {
+			OpenGame game = new OpenGame();
+			game.mode = share(mode);
+			game.name = share(name);
+			game.secret = share(secret);
+			game.difficulty = difficulty;
+			game.createdAt = timestamp;
+			openGames.put(sessionId, game);
+		}
+
+		@Override
+		public void onGuess(long sessionId, long timestamp, String guess, boolean correct, int attemptsLeft) {
+			OpenGame game = openGames.get(sessionId);
+			if (game == null) {
+				return;
+			}
+			if (correct) {
+				game.streak++;
+				game.longestStreak = Math.max(game.longestStreak, game.streak);
+			} else {
+				game.misses++;
+				game.streak = 0;
+			}
+		}
+
+		@Override
+		public void onGameFinished(long sessionId, long timestamp, boolean won, int score) {
+			OpenGame game = openGames.remove(sessionId);
+			if (game != null) {
+				games.add(game.mode, game.name, game.secret, game.difficulty, game.misses, game.longestStreak, game.createdAt, timestamp,
+						won, score);
+			}
+		}
+	}
+
+	/**
+	 * Fork-join task that splits the list of files in halves until a single file is left, then appends the results
+	 */
+	private static class CollectTask extends RecursiveTask<FinishedGames> {
+
+		private static final long serialVersionUID = 1L;
+		private final String[] filenames;
+		private final int from;
+		private final int to;
+
+		CollectTask(String[] filenames, int from, int to) {
+			this.filenames = filenames;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected FinishedGames compute() {
+			if (to - from == 0) {
+				return new FinishedGames();
+			}
+			if (to - from == 1) {
+				try {
+					Collector collector = new Collector();
+					GameEventLog.read(filenames[from], collector, READ_BUFFER_SIZE);
+					return collector.games;
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+			int middle = (from + to) >>> 1;
+			CollectTask left = new CollectTask(filenames, from, middle);
+			left.fork();
+			FinishedGames right = new CollectTask(filenames, middle, to).compute();
+			return left.join().merge(right);
+		}
+	}
+
+	/**
+	 * Collects the finished games of several log files in parallel
+	 * @param filenames are the log files
+	 * @param pool is the pool running the collection tasks
+	 * @return the finished games, in file order
+	 * @throws IOException if one of the files cannot be read
+	 */
+	public static FinishedGames collect(List<String> filenames, ForkJoinPool pool) throws IOException {
+		try {
+			return pool.invoke(new CollectTask(filenames.toArray(new String[0]), 0, filenames.size()));
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Scores every game in parallel. Games of a play mode without scoring rules keep their logged score
+	 * @param games are the finished games
+	 * @param rules are the scoring rules
+	 * @return the new score of each game
+	 */
+	public static int[] rescore(FinishedGames games, ScoringRules rules) {
+		int[] scores = new int[games.size];
+		IntStream.range(0, games.size).parallel().forEach(i -> {
+			scores[i] = rules.hasRules(games.mode[i])
+					? rules.score(games.mode[i], games.difficulty[i], games.secret[i], games.misses[i], games.duration[i], games.streak[i],
+							games.won[i])
+					: games.loggedScore[i];
+		});
+		return scores;
+	}
+
+	/**
+	 * Leaderboard results of one play mode after re-scoring
+	 */
+	public static class RescoredBoard {
+		final ArrayList<LeaderboardResult> results = new ArrayList<>(); // Sorted by score in descending order
+		int rescored; // Results matched to a logged game and given its new score
+		int kept; // Results that no logged game produced, kept as they were
+	}
+
+	/**
+	 * Re-scores the results of one play mode. Each previous result is matched to the logged game that produced it: same player
+	 * name, same logged score and a finish time within MATCH_MILLIS of the result timestamp, the closest one first. A game matches
+	 * one result at most. Matched results get the new score of their game; results without a logged game, such as results saved
+	 * before the logs started, imported or merged from another server, are kept as they are
+	 * @param games are the finished games
+	 * @param scores are the new scores
+	 * @param mode is the play mode of the results
+	 * @param previous are the results of the leaderboard file of the play mode
+	 * @return the results with the new scores
+	 */
+	public static RescoredBoard rescoreBoard(FinishedGames games, int[] scores, String mode, List<LeaderboardResult> previous) {
+		HashMap<String, ArrayList<Integer>> gamesByKey = new HashMap<>();
+		for (int i = 0; i < games.size; i++) {
+			if (games.mode[i].equals(mode)) {
+				gamesByKey.computeIfAbsent(matchKey(games.name[i], games.loggedScore[i]), k -> new ArrayList<>()).add(i);
+			}
+		}
+		for (ArrayList<Integer> candidates : gamesByKey.values()) {
+			candidates.sort((a, b) -> Long.compare(games.finishedAt[a], games.finishedAt[b]));
+		}
+		boolean[] matched = new boolean[games.size];
+		RescoredBoard board = new RescoredBoard();
+		for (LeaderboardResult result : previous) {
+			ArrayList<Integer> candidates = gamesByKey.get(matchKey(result.getName(), result.getScore()));
+			int game = candidates == null ? -1 : closestGame(games, candidates, matched, result.getTimestamp());
+			if (game < 0) {
+				board.results.add(result);
+				board.kept++;
+			} else {
+				matched[game] = true;
+				board.results.add(new LeaderboardResult(result.getName(), scores[game], result.getTimestamp()));
+				board.rescored++;
+			}
+		}
+		LeaderboardResult[] sorted = board.results.toArray(new LeaderboardResult[0]);
+		Arrays.parallelSort(sorted);
+		board.results.clear();
+		board.results.addAll(Arrays.asList(sorted));
+		return board;
+	}
+
+	private static String matchKey(String name, int score) {
+		return score + ":" + name;
+	}
+
+	/**
+	 * @param candidates are the games with the name and score of the result, sorted by finish time
+	 * @return the unmatched game that finished closest to the timestamp within MATCH_MILLIS, or -1 if there is none
+	 */
+	private static int closestGame(FinishedGames games, ArrayList<Integer> candidates, boolean[] matched, long timestamp) {
+		int low = 0;
+		int high = candidates.size();
+		while (low < high) { // First game finished at timestamp - MATCH_MILLIS or later
+			int middle = (low + high) >>> 1;
+			if (games.finishedAt[candidates.get(middle)] < timestamp - MATCH_MILLIS) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		int closest = -1;
+		for (int i = low; i < candidates.size(); i++) {
+			int game = candidates.get(i);
+			long distance = Math.abs(games.finishedAt[game] - timestamp);
+			if (games.finishedAt[game] > timestamp + MATCH_MILLIS) {
+				break;
+			}
+			if (!matched[game] && (closest < 0 || distance < Math.abs(games.finishedAt[closest] - timestamp))) {
+				closest = game;
+			}
+		}
+		return closest;
+	}
+
+	/**
+	 * @return the leaderboard file of each play mode
+	 */
+	protected static Map<String, String> getLeaderboardFiles() {
+		LinkedHashMap<String, String> files = new LinkedHashMap<>();
+		files.put("words", HangmanWordMode.filename_word_lb);
+		files.put("phrases", HangmanPhraseMode.filename_phrase_lb);
+		files.put("tournament", HangmanTournamentMode.filename_tournament_lb);
+		return files;
+	}
+
+	/**
+	 * Re-scores the games of the event logs given as arguments with the scoring rules file and rewrites the leaderboard files.
+	 * Usage: LeaderboardRescorer [--rules file] [log files]. The default scoring rules file and game event log are used when not given
+	 */
+	public static void main(String... args) throws IOException, ClassNotFoundException {
+		String rulesFile = ScoringRules.filename_scoring_rules;
+		List<String> filenames = new ArrayList<>();
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("--rules") && i + 1 < args.length) {
+				rulesFile = args[++i];
+			} else {
+				filenames.add(args[i]);
+			}
+		}
+		if (filenames.isEmpty()) {
+			filenames.add(GameEventLog.filename_event_log);
+		}
+		ScoringRules rules = new File(rulesFile).exists() ? ScoringRules.load(rulesFile) : ScoringRules.defaults();
+		long start = System.nanoTime();
+		FinishedGames games = collect(filenames, ForkJoinPool.commonPool());
+		long collected = System.nanoTime();
+		int[] scores = rescore(games, rules);
+		long scored = System.nanoTime();
+		int changed = 0;
+		for (int i = 0; i < games.size; i++) {
+			if (scores[i] != games.loggedScore[i]) {
+				changed++;
+			}
+		}
+		for (Map.Entry<String, String> file : getLeaderboardFiles().entrySet()) {
+			List<LeaderboardResult> previous = Leaderboard.readResultsFromFile(file.getValue());
+			RescoredBoard board = rescoreBoard(games, scores, file.getKey(), previous);
+			if (board.rescored > 0) {
+				Leaderboard.writeResultsToFile(file.getValue(), board.results);
+			}
+			System.out.println(String.format("%s: %d results re-scored and %d kept in %s", file.getKey(), board.rescored, board.kept,
+					file.getValue()));
+		}
+		System.out.println(String.format("Re-scored %d games from %d files, %d scores changed. Read %d ms, scored %d ms, total %d ms",
+				games.size, filenames.size(), changed, (collected - start) / 1_000_000, (scored - collected) / 1_000_000,
+				(System.nanoTime() - start) / 1_000_000));
+	}
+}
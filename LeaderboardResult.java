@@ -4,30 +4,40 @@ package mari.mvp3;
 import java.io.Serializable;
 
 /**
- * A class that consists of player names and scores. Implements the Comparable interface in order to sort a list of LeaderboardResult objects. 
+ * A class that consists of player names, scores and the time the game ended. Implements the Comparable interface in order to sort a list of LeaderboardResult objects. 
  * It also implements the Serializable interface to allow reading objects from file and writing objects to file to persist and retrieve object states.
  * @author marianahu
  *
  */
 public class LeaderboardResult implements Serializable, Comparable<LeaderboardResult>{
 
+	// Matches the identifier computed for the class before the timestamp was added, so that existing .ser files can still be read
+	private static final long serialVersionUID = 8402971921993071860L;
+
 	protected String name;
 	protected int score;
+	protected long timestamp; // Epoch time in milliseconds when the game ended. Results read from files saved before timestamps were recorded have 0
 
 	protected LeaderboardResult() {
 	}
 	
 	protected LeaderboardResult(String name, int score) {
+		this(name, score, System.currentTimeMillis());
+	}
+
+	protected LeaderboardResult(String name, int score, long timestamp) {
 		this.name = name;
 		this.score = score;
+		this.timestamp = timestamp;
 	}
 
 	/**
-	 * Overrides the compareTo method from the Comparable interface to specify that LeaderboardResult objects must be sorted by score in descending order
+	 * Overrides the compareTo method from the Comparable interface to specify that LeaderboardResult objects must be sorted by score in descending order.
+	 * Scores are compared rather than subtracted, so that imported scores near Integer.MIN_VALUE or Integer.MAX_VALUE do not overflow
 	 */
 	@Override
 	public int compareTo(LeaderboardResult LeaderboardResult) {
-		return LeaderboardResult.getScore() - this.score;
+		return Integer.compare(LeaderboardResult.getScore(), this.score);
 	}
 
 	protected int getScore() {
@@ -38,6 +48,10 @@ public class LeaderboardResult implements Serializable, Comparable<LeaderboardRe
 		return this.name;
 	}
 
+	protected long getTimestamp() {
+		return this.timestamp;
+	}
+
 }
 
 
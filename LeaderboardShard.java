@@ -0,0 +1,217 @@
+package mari.mvp3;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A leaderboard shard is the sorted on-disk run written by one game process next to its own leaderboard file.
+ * Results are stored in descending order of score so that the best results of a shard can be read
+ * without reading the rest of the file. Shards of several processes are combined with LeaderboardMerger.
+ */
+public class LeaderboardShard implements Closeable {
+
+	public final static String run_file_suffix = ".run";
+
+	protected final static int MAGIC = 0x48474c53; // "HGLS", written at the start of every run file
+	protected final static int MAX_NAME_BYTES = 65535; // Longest name writeUTF() can write, in bytes of modified UTF-8
+	private final static int BUFFER_SIZE = 1 << 16;
+
+	private final DataInputStream in;
+	private final int size; // Number of results in the run
+	private int position; // Number of results read so far
+
+	/**
+	 * Opens a run file for reading. Results are read one at a time with next()
+	 * @param filename is the run file
+	 * @throws IOException if the file cannot be read or is not a leaderboard run
+	 */
+	public LeaderboardShard(String filename) throws IOException {
+		this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(filename), BUFFER_SIZE));
+		try {
+			if (in.readInt() != MAGIC) {
+				throw new IOException(filename + " is not a leaderboard run");
+			}
+			this.size = in.readInt();
+		} catch (IOException e) {
+			in.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns the run file written next to a leaderboard file (e.g. word_LB.ser.run)
+	 * @param leaderboardFilename is the leaderboard file name
+	 * @return the run file name
+	 */
+	public static String getRunFilename(String leaderboardFilename) {
+		return leaderboardFilename + run_file_suffix;
+	}
+
+	/**
+	 * Checks whether a name fits in a run, which stores names with writeUTF()
+	 * @param name is the player name
+	 * @return true if the name takes at most MAX_NAME_BYTES in modified UTF-8
+	 */
+	public static boolean isNameWritable(String name) {
+		if (name.length() > MAX_NAME_BYTES) {
+			return false;
+		}
+		int bytes = 0;
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			bytes += c >= 0x0001 && c <= 0x007f ? 1 : c <= 0x07ff ? 2 : 3;
+		}
+		return bytes <= MAX_NAME_BYTES;
+	}
+
+	/**
+	 * @return true if there are results left to read
+	 */
+	public boolean hasNext() {
+		return position < size;
+	}
+
+	/**
+	 * Reads the next result of the run. Results are returned from highest to lowest score
+	 * @return the next result
+	 * @throws IOException if the file cannot be read
+	 */
+	public LeaderboardResult next() throws IOException {
+		if (!hasNext()) {
+			throw new EOFException("No more results in the leaderboard run");
+		}
+		position++;
+		String name = in.readUTF();
+		int score = in.readInt();
+		long timestamp = in.readLong();
+		return new LeaderboardResult(name, score, timestamp);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+
+	/**
+	 * Reads at most the k best results of a run file
+	 * @param filename is the run file
+	 * @param k is the maximum number of results to read
+	 * @return the results from highest to lowest score
+	 * @throws IOException if the file cannot be read
+	 */
+	public static ArrayList<LeaderboardResult> readTop(String filename, int k) throws IOException {
+		try (LeaderboardShard shard = new LeaderboardShard(filename)) {
+			ArrayList<LeaderboardResult> top = new ArrayList<>(Math.min(k, shard.size()));
+			while (shard.hasNext() && top.size() < k) {
+				top.add(shard.next());
+			}
+			return top;
+		}
+	}
+
+	/**
+	 * Sorts the results in descending order of score and writes them as a run file.
+	 * The run is first written to a temporary file which then replaces the previous run, so that a merger never reads a half-written run
+	 * @param filename is the run file
+	 * @param results are the results to write. The list itself is not modified
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void writeRun(String filename, List<LeaderboardResult> results) throws IOException {
+		ArrayList<LeaderboardResult> sorted = new ArrayList<>(results);
+		Collections.sort(sorted);
+		writeSortedRun(filename, sorted);
+	}
+
+	/**
+	 * Writes results that are already sorted in descending order of score as a run file
+	 * @param filename is the run file
+	 * @param sorted are the results sorted from highest to lowest score
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void writeSortedRun(String filename, List<LeaderboardResult> sorted) throws IOException {
+		try (RunWriter writer = new RunWriter(filename, sorted.size())) {
+			for (LeaderboardResult r : sorted) {
+				writer.write(r);
+			}
+		}
+	}
+
+	/**
+	 * Writes a run file one result at a time, so that runs larger than the heap can be written (e.g. by a streaming merge or import).
+	 * The number of results is stored in the header, so it must be known when the writer is opened. The run is written to a temporary
+	 * file which replaces the previous run when the writer is closed, so that a reader never sees a half-written run
+	 */
+	public static class RunWriter implements Closeable {
+
+		private final File target;
+		private final File temp;
+		private final DataOutputStream out;
+		private final int size;
+		private int written;
+		private boolean closed;
+
+		/**
+		 * @param filename is the run file
+		 * @param size is the number of results that will be written
+		 * @throws IOException if the file cannot be created
+		 */
+		public RunWriter(String filename, int size) throws IOException {
+			this.target = new File(filename);
+			this.temp = new File(filename + ".tmp");
+			this.size = size;
+			this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), BUFFER_SIZE));
+			out.writeInt(MAGIC);
+			out.writeInt(size);
+		}
+
+		/**
+		 * Writes the next result. Results must be written from highest to lowest score
+		 * @param r is the result
+		 * @throws IOException if the file cannot be written
+		 */
+		public void write(LeaderboardResult r) throws IOException {
+			if (written == size) {
+				throw new IOException("More results written than the size of the run");
+			}
+			out.writeUTF(r.getName());
+			out.writeInt(r.getScore());
+			out.writeLong(r.getTimestamp());
+			written++;
+		}
+
+		/**
+		 * Closes the temporary file and replaces the previous run with it. If fewer results than announced were written,
+		 * the temporary file is deleted and the previous run is kept
+		 */
+		@Override
+		public void close() throws IOException {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			out.close();
+			if (written != size) {
+				temp.delete();
+				throw new IOException("Run " + target + " is incomplete: " + written + " of " + size + " results were written");
+			}
+			Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+	}
+}
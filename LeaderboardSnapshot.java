@@ -0,0 +1,95 @@
+package mari.mvp3;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable view of the leaderboard at one point in time, sorted in descending order of score.
+ * Leaderboard publishes a new snapshot with a higher version whenever results are added, so readers (the views, the spectator feed,
+ * exporters) can read a consistent leaderboard without locking while games keep adding results. A reader can compare versions to
+ * find out whether the leaderboard changed since it last read it.
+ */
+public final class LeaderboardSnapshot {
+
+	protected final static LeaderboardSnapshot EMPTY = new LeaderboardSnapshot(0, new LeaderboardResult[0]);
+
+	private final long version;
+	private final LeaderboardResult[] results; // Never modified once the snapshot is published
+	private final List<LeaderboardResult> view;
+	private final long publishedAt; // Epoch time in milliseconds
+
+	/**
+	 * @param version is the version of the snapshot
+	 * @param sorted are the results sorted in descending order of score. The array is owned by the snapshot from now on
+	 */
+	protected LeaderboardSnapshot(long version, LeaderboardResult[] sorted) {
+		this.version = version;
+		this.results = sorted;
+		this.view = Collections.unmodifiableList(Arrays.asList(sorted));
+		this.publishedAt = System.currentTimeMillis();
+	}
+
+	/**
+	 * Builds the next snapshot by merging results added since this one was published
+	 * @param added are the new results sorted in descending order of score. Results of this snapshot come first when scores are equal
+	 * @return the new snapshot
+	 */
+	protected LeaderboardSnapshot merge(LeaderboardResult[] added) {
+		LeaderboardResult[] merged = new LeaderboardResult[results.length + added.length];
+		int i = 0;
+		int j = 0;
+		int n = 0;
+		while (i < results.length && j < added.length) {
+			merged[n++] = added[j].compareTo(results[i]) < 0 ? added[j++] : results[i++];
+		}
+		System.arraycopy(results, i, merged, n, results.length - i);
+		System.arraycopy(added, j, merged, n + results.length - i, added.length - j);
+		return new LeaderboardSnapshot(version + 1, merged);
+	}
+
+	/**
+	 * @param score is a score
+	 * @return the rank a result with the score has in this snapshot: 1 plus the number of results with a higher score
+	 */
+	public int rankOf(int score) {
+		int low = 0;
+		int high = results.length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (results[middle].getScore() > score) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low + 1;
+	}
+
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * @return the results from highest to lowest score, as a read-only list
+	 */
+	public List<LeaderboardResult> getResults() {
+		return view;
+	}
+
+	/**
+	 * @param k is the maximum number of results to return
+	 * @return the best k results, as a read-only list
+	 */
+	public List<LeaderboardResult> getTop(int k) {
+		return view.subList(0, Math.min(k, results.length));
+	}
+
+	public int size() {
+		return results.length;
+	}
+
+	public long getPublishedAt() {
+		return publishedAt;
+	}
+}
@@ -0,0 +1,445 @@
+package mari.mvp3;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Streaming import and export of leaderboards as CSV (name,score,timestamp with RFC 4180 quoting) or JSON Lines
+ * ({"name":...,"score":...,"timestamp":...} per line). The format is chosen from the file extension.
+ * A leaderboard file is a serialized ArrayList that can only be read whole, so records are streamed through the sorted run written
+ * next to it (see LeaderboardShard): an export reads the run one result at a time and stops after the top k results, and an import
+ * sorts the records in chunks of bounded size, writes each chunk as a temporary run and merges the chunks into the run of the board.
+ * Once the chunks are merged, the leaderboard file is rewritten from the run, so that the file and the run hold the same results
+ * whichever of the two the game reads. This reads the whole board once, as the game does when it loads it.
+ * Boards saved before runs existed are converted to a run once, which reads the whole board that one time.
+ * An import must be run while the game is stopped: a running game keeps the board it loaded in memory and writes it back over the
+ * file and the run on its next save, which would lose the imported results.
+ */
+public class LeaderboardTransfer {
+
+	protected final static int IMPORT_CHUNK_SIZE = 100_000; // Records sorted in memory at a time during an import
+	private final static int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * Counts of an import or export
+	 */
+	public static class TransferStatistics {
+		long records; // Records written
+		long skipped; // Lines that are not valid records
+		long elapsedMillis;
+
+		public long getRecords() {
+			return records;
+		}
+
+		public long getSkipped() {
+			return skipped;
+		}
+
+		public long getElapsedMillis() {
+			return elapsedMillis;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d records, %d skipped, %d ms", records, skipped, elapsedMillis);
+		}
+	}
+
+	/**
+	 * @return true if the file name has the JSON Lines extension (.jsonl or .ndjson), false for CSV
+	 */
+	protected static boolean isJsonLines(String filename) {
+		String lower = filename.toLowerCase();
+		return lower.endsWith(".jsonl") || lower.endsWith(".ndjson");
+	}
+
+	/**
+	 * Makes sure the run of a leaderboard file holds the current results, writing it from the leaderboard file if it is missing or older
+	 * @param leaderboardFilename is the leaderboard file
+	 * @return the run file, or null if the board has no results yet
+	 * @throws IOException if the leaderboard cannot be read or the run cannot be written
+	 */
+	protected static String ensureRun(String leaderboardFilename) throws IOException {
+		String run = LeaderboardShard.getRunFilename(leaderboardFilename);
+		if (Leaderboard.isRunNewer(leaderboardFilename)) {
+			return run;
+		}
+		File f = new File(leaderboardFilename);
+		if (!f.exists() || f.length() == 0) {
+			return null;
+		}
+		try {
+			LeaderboardShard.writeRun(run, Leaderboard.readResultsFromFile(leaderboardFilename));
+		} catch (ClassNotFoundException e) {
+			throw new IOException(leaderboardFilename + " is not a leaderboard file", e);
+		}
+		return run;
+	}
+
+	/**
+	 * Exports the best results of a leaderboard from highest to lowest score
+	 * @param leaderboardFilename is the leaderboard file
+	 * @param outputFilename is the CSV or JSON Lines file written
+	 * @param k is the maximum number of results exported
+	 * @return the counts of the export
+	 * @throws IOException if the leaderboard cannot be read or the output cannot be written
+	 */
+	public static TransferStatistics exportBoard(String leaderboardFilename, String outputFilename, int k) throws IOException {
+		long start = System.nanoTime();
+		TransferStatistics stats = new TransferStatistics();
+		boolean json = isJsonLines(outputFilename);
+		String run = ensureRun(leaderboardFilename);
+		try (BufferedWriter out = new BufferedWriter(Files.newBufferedWriter(Paths.get(outputFilename), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+			if (!json) {
+				out.write("name,score,timestamp\n");
+			}
+			if (run != null) {
+				try (LeaderboardShard shard = new LeaderboardShard(run)) {
+					while (shard.hasNext() && stats.records < k) {
+						LeaderboardResult r = shard.next();
+						if (json) {
+							writeJson(out, r);
+						} else {
+							writeCsv(out, r);
+						}
+						stats.records++;
+					}
+				}
+			}
+		}
+		stats.elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+		return stats;
+	}
+
+	/**
+	 * Imports results into a leaderboard, keeping the results it already has. Invalid lines, and names too long to be written to
+	 * the run, are skipped and counted. The game must be stopped, or the next save of a game that loaded the board overwrites the import
+	 * @param inputFilename is the CSV or JSON Lines file read
+	 * @param leaderboardFilename is the leaderboard file
+	 * @return the counts of the import
+	 * @throws IOException if the input cannot be read or the leaderboard cannot be written
+	 */
+	public static TransferStatistics importBoard(String inputFilename, String leaderboardFilename) throws IOException {
+		long start = System.nanoTime();
+		TransferStatistics stats = new TransferStatistics();
+		boolean json = isJsonLines(inputFilename);
+		String run = ensureRun(leaderboardFilename);
+		List<String> runs = new ArrayList<>();
+		if (run != null) {
+			runs.add(run);
+		}
+		List<String> chunks = new ArrayList<>();
+		try {
+			try (BufferedReader in = new BufferedReader(Files.newBufferedReader(Paths.get(inputFilename), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+				ArrayList<LeaderboardResult> chunk = new ArrayList<>();
+				String line;
+				boolean header = !json;
+				while ((line = in.readLine()) != null) {
+					if (header) { // The first CSV line holds the column names
+						header = false;
+						if (line.startsWith("name,")) {
+							continue;
+						}
+					}
+					if (line.trim().isEmpty()) {
+						continue;
+					}
+					LeaderboardResult r = json ? parseJson(line) : parseCsv(line);
+					if (r == null || !LeaderboardShard.isNameWritable(r.getName())) {
+						stats.skipped++;
+						continue;
+					}
+					chunk.add(r);
+					stats.records++;
+					if (chunk.size() == IMPORT_CHUNK_SIZE) {
+						chunks.add(writeChunk(leaderboardFilename, chunks.size(), chunk));
+						chunk.clear();
+					}
+				}
+				if (!chunk.isEmpty()) {
+					chunks.add(writeChunk(leaderboardFilename, chunks.size(), chunk));
+				}
+			}
+			if (!chunks.isEmpty()) {
+				runs.addAll(chunks);
+				LeaderboardMerger.mergeRuns(runs, LeaderboardShard.getRunFilename(leaderboardFilename));
+				Leaderboard.writeSerializedResults(leaderboardFilename, Leaderboard.readRun(leaderboardFilename));
+			}
+		} finally {
+			for (String chunk : chunks) {
+				new File(chunk).delete();
+			}
+		}
+		stats.elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+		return stats;
+	}
+
+	private static String writeChunk(String leaderboardFilename, int index, ArrayList<LeaderboardResult> chunk) throws IOException {
+		String filename = leaderboardFilename + ".import" + index + LeaderboardShard.run_file_suffix;
+		Collections.sort(chunk);
+		LeaderboardShard.writeSortedRun(filename, chunk);
+		return filename;
+	}
+
+	private static void writeCsv(Writer out, LeaderboardResult r) throws IOException {
+		String name = r.getName();
+		boolean quote = false;
+		for (int i = 0; i < name.length() && !quote; i++) {
+			char c = name.charAt(i);
+			quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+		}
+		if (quote) {
+			out.write('"');
+			out.write(name.replace("\"", "\"\""));
+			out.write('"');
+		} else {
+			out.write(name);
+		}
+		out.write(',');
+		out.write(Integer.toString(r.getScore()));
+		out.write(',');
+		out.write(Long.toString(r.getTimestamp()));
+		out.write('\n');
+	}
+
+	private static void writeJson(Writer out, LeaderboardResult r) throws IOException {
+		out.write("{\"name\":\"");
+		String name = r.getName();
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			if (c == '"' || c == '\\') {
+				out.write('\\');
+				out.write(c);
+			} else if (c < 0x20) {
+				out.write(String.format("\\u%04x", (int) c));
+			} else {
+				out.write(c);
+			}
+		}
+		out.write("\",\"score\":");
+		out.write(Integer.toString(r.getScore()));
+		out.write(",\"timestamp\":");
+		out.write(Long.toString(r.getTimestamp()));
+		out.write("}\n");
+	}
+
+	/**
+	 * Parses a CSV line name,score[,timestamp]. The name may be quoted, with doubled quotes inside
+	 * @return the result, or null if the line is not a valid record
+	 */
+	protected static LeaderboardResult parseCsv(String line) {
+		String name;
+		int end;
+		if (line.startsWith("\"")) {
+			StringBuilder sb = new StringBuilder();
+			int i = 1;
+			while (true) {
+				int quote = line.indexOf('"', i);
+				if (quote < 0) {
+					return null;
+				}
+				sb.append(line, i, quote);
+				if (quote + 1 < line.length() && line.charAt(quote + 1) == '"') {
+					sb.append('"');
+					i = quote + 2;
+				} else {
+					end = quote + 1;
+					break;
+				}
+			}
+			name = sb.toString();
+			if (end >= line.length() || line.charAt(end) != ',') {
+				return null;
+			}
+		} else {
+			end = line.indexOf(',');
+			if (end < 0) {
+				return null;
+			}
+			name = line.substring(0, end);
+		}
+		String[] numbers = line.substring(end + 1).split(",", -1);
+		if (name.isEmpty() || numbers.length > 2) {
+			return null;
+		}
+		try {
+			int score = Integer.parseInt(numbers[0].trim());
+			if (numbers.length == 1) {
+				return new LeaderboardResult(name, score);
+			}
+			return new LeaderboardResult(name, score, Long.parseLong(numbers[1].trim()));
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Parses a JSON Lines record with a string "name", a number "score" and an optional number "timestamp". Other fields are ignored
+	 * as long as they are strings, numbers, booleans or null
+	 * @return the result, or null if the line is not a valid record
+	 */
+	protected static LeaderboardResult parseJson(String line) {
+		JsonCursor c = new JsonCursor(line);
+		String name = null;
+		Long score = null;
+		long timestamp = -1;
+		try {
+			c.expect('{');
+			if (!c.consume('}')) {
+				do {
+					String key = c.readString();
+					c.expect(':');
+					if (c.peek() == '"') {
+						String value = c.readString();
+						if (key.equals("name")) {
+							name = value;
+						}
+					} else {
+						String value = c.readLiteral();
+						if (key.equals("score")) {
+							score = Long.parseLong(value);
+						} else if (key.equals("timestamp")) {
+							timestamp = Long.parseLong(value);
+						}
+					}
+				} while (c.consume(','));
+				c.expect('}');
+			}
+			if (!c.atEnd()) {
+				return null;
+			}
+		} catch (IllegalArgumentException | IndexOutOfBoundsException e) { // Also NumberFormatException
+			return null;
+		}
+		if (name == null || name.isEmpty() || score == null || score != score.intValue()) {
+			return null;
+		}
+		return timestamp < 0 ? new LeaderboardResult(name, score.intValue()) : new LeaderboardResult(name, score.intValue(), timestamp);
+	}
+
+	/**
+	 * Minimal reader of the flat JSON objects of a JSON Lines file
+	 */
+	private static class JsonCursor {
+		final String s;
+		int i;
+
+		JsonCursor(String s) {
+			this.s = s;
+		}
+
+		void skipSpaces() {
+			while (i < s.length() && Character.isWhitespace(s.charAt(i))) {
+				i++;
+			}
+		}
+
+		char peek() {
+			skipSpaces();
+			return s.charAt(i);
+		}
+
+		boolean consume(char c) {
+			if (i < s.length() && peek() == c) {
+				i++;
+				return true;
+			}
+			return false;
+		}
+
+		void expect(char c) {
+			if (!consume(c)) {
+				throw new IllegalArgumentException("Expected " + c);
+			}
+		}
+
+		boolean atEnd() {
+			skipSpaces();
+			return i == s.length();
+		}
+
+		String readString() {
+			expect('"');
+			StringBuilder sb = new StringBuilder();
+			while (true) {
+				char c = s.charAt(i++);
+				if (c == '"') {
+					return sb.toString();
+				}
+				if (c != '\\') {
+					sb.append(c);
+					continue;
+				}
+				char e = s.charAt(i++);
+				switch (e) {
+				case 'b':
+					sb.append('\b');
+					break;
+				case 'f':
+					sb.append('\f');
+					break;
+				case 'n':
+					sb.append('\n');
+					break;
+				case 'r':
+					sb.append('\r');
+					break;
+				case 't':
+					sb.append('\t');
+					break;
+				case 'u':
+					sb.append((char) Integer.parseInt(s.substring(i, i + 4), 16));
+					i += 4;
+					break;
+				default: // \" \\ \/
+					sb.append(e);
+				}
+			}
+		}
+
+		String readLiteral() {
+			skipSpaces();
+			int start = i;
+			while (i < s.length() && s.charAt(i) != ',' && s.charAt(i) != '}' && !Character.isWhitespace(s.charAt(i))) {
+				i++;
+			}
+			if (start == i) {
+				throw new IllegalArgumentException("Expected a value");
+			}
+			return s.substring(start, i);
+		}
+	}
+
+	/**
+	 * Exports or imports a leaderboard.
+	 * Usage: LeaderboardTransfer export <leaderboard file> <output .csv|.jsonl> [--top k]
+	 *        LeaderboardTransfer import <input .csv|.jsonl> <leaderboard file>
+	 * Imports must be run while the game is stopped
+	 */
+	public static void main(String... args) throws IOException {
+		if (args.length >= 3 && args[0].equals("export")) {
+			int k = Integer.MAX_VALUE;
+			if (args.length == 5 && args[3].equals("--top")) {
+				k = Integer.parseInt(args[4]);
+			}
+			TransferStatistics stats = exportBoard(args[1], args[2], k);
+			System.out.println("Exported " + stats + " to " + args[2]);
+		} else if (args.length == 3 && args[0].equals("import")) {
+			TransferStatistics stats = importBoard(args[1], args[2]);
+			System.out.println("Imported " + stats + " into " + args[2]);
+		} else {
+			System.out.println("Usage: LeaderboardTransfer export <leaderboard file> <output .csv|.jsonl> [--top k]");
+			System.out.println("       LeaderboardTransfer import <input .csv|.jsonl> <leaderboard file>   (with the game stopped)");
+		}
+	}
+}
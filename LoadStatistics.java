@@ -0,0 +1,69 @@
+package mari.mvp3;
+
+/**
+ * Statistics collected while loading and normalizing a list of words or phrases
+ */
+public class LoadStatistics {
+
+	protected String source; // File or URL the list was loaded from
+	protected long bytes; // Bytes read
+	protected int lines; // Lines read, including empty ones
+	protected int accepted; // Entries kept after normalization and deduplication
+	protected int empty; // Lines that were empty after normalization
+	protected int modified; // Lines that were changed by normalization beyond lower casing (characters stripped or spaces collapsed)
+	protected int duplicates; // Lines that were dropped because an identical entry was already kept
+	protected int invalid; // Lines rejected because they have a character that cannot be hidden (word lists only)
+	protected int tooLong; // Lines rejected because they are longer than the longest word kept (word lists only)
+	protected long readNanos; // Time spent reading the bytes
+	protected long processNanos; // Time spent splitting, normalizing and deduplicating
+
+	public String getSource() {
+		return source;
+	}
+
+	public long getBytes() {
+		return bytes;
+	}
+
+	public int getLines() {
+		return lines;
+	}
+
+	public int getAccepted() {
+		return accepted;
+	}
+
+	public int getEmpty() {
+		return empty;
+	}
+
+	public int getModified() {
+		return modified;
+	}
+
+	public int getDuplicates() {
+		return duplicates;
+	}
+
+	public int getInvalid() {
+		return invalid;
+	}
+
+	public int getTooLong() {
+		return tooLong;
+	}
+
+	public long getReadNanos() {
+		return readNanos;
+	}
+
+	public long getProcessNanos() {
+		return processNanos;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s: %d bytes, %d lines, %d accepted, %d empty, %d modified, %d duplicates, %d invalid, %d too long, read %.1f ms, processed %.1f ms",
+				source, bytes, lines, accepted, empty, modified, duplicates, invalid, tooLong, readNanos / 1e6, processNanos / 1e6);
+	}
+}
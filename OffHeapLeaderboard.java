@@ -0,0 +1,433 @@
+package mari.mvp3;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Leaderboard backend for very large boards, which keeps the results in memory-mapped files instead of LeaderboardResult
+ * objects on the heap. The garbage collector never scans the results and sorting never moves object references.
+ *
+ * The board file starts with a header followed by fixed-width records of RECORD_BYTES bytes (name id, score, timestamp) in the
+ * order the results were added. The player names are appended to a names file, and the name id of a record is the position of
+ * its name in that file. The index file holds two slots of keys sorted by score. Each key packs the score and the record number
+ * into a long, so sorting and merging read the keys sequentially without touching the records. Results are added to the end of the
+ * board and stay pending until the next merge, which sorts them and merges them with the active slot into the other slot. Then the
+ * other slot becomes the active one. Readers see the active slot, like the snapshots of Leaderboard.
+ *
+ * The files grow by doubling, up to MAX_CAPACITY results. flush() makes the board durable by forcing the mappings to disk. Results
+ * added after the last flush may be lost if the process crashes.
+ */
+public class OffHeapLeaderboard implements Closeable {
+
+	public final static String board_file_suffix = ".board";
+	public final static String index_file_suffix = ".board.idx";
+	public final static String names_file_suffix = ".board.names";
+	protected final static int MAGIC = 0x48474c42; // "HGLB"
+	protected final static int VERSION = 1;
+	protected final static int HEADER_BYTES = 64;
+	protected final static int RECORD_BYTES = 16; // Name id (int), score (int) and timestamp (long)
+	protected final static int KEY_BYTES = 8;
+	protected final static int INITIAL_CAPACITY = 1 << 16;
+	protected final static int MAX_CAPACITY = (Integer.MAX_VALUE - HEADER_BYTES) / (2 * KEY_BYTES); // Largest capacity whose index can be mapped
+
+	// Offsets of the header fields
+	private final static int COUNT_OFFSET = 8; // Number of records
+	private final static int SORTED_OFFSET = 12; // Number of records in the active slot of the index
+	private final static int SLOT_OFFSET = 16; // Active slot of the index, 0 or 1
+	private final static int CAPACITY_OFFSET = 20; // Number of records the files can hold
+
+	private final String filename;
+	private final RandomAccessFile boardFile;
+	private final RandomAccessFile indexFile;
+	private final FileOutputStream namesFile;
+	private final DataOutputStream namesOut;
+	private MappedByteBuffer board;
+	private MappedByteBuffer index;
+	private final HashMap<String, Integer> nameIds = new HashMap<>();
+	private final ArrayList<String> names = new ArrayList<>();
+	private int capacity;
+	private int count; // Results added
+	private int sorted; // Results in the active slot of the index, i.e. published
+	private int activeSlot;
+	private long indexVersion; // Incremented by each merge and by 2 when the files grow, to detect stale views
+	private long mergedAt; // Epoch time in milliseconds of the last merge
+	private long mergeMillis; // Time the last merge took
+	private boolean closed;
+
+	/**
+	 * Opens the off-heap board of a leaderboard file, creating it if it does not exist
+	 * @param leaderboardFilename is the name of the leaderboard file, e.g. word_LB.ser. The board files are named after it
+	 * @return the board
+	 * @throws IOException if the files cannot be read or created, or are not valid
+	 */
+	public static OffHeapLeaderboard open(String leaderboardFilename) throws IOException {
+		return new OffHeapLeaderboard(leaderboardFilename);
+	}
+
+	/**
+	 * @return true if the off-heap board of a leaderboard file exists
+	 */
+	public static boolean exists(String leaderboardFilename) {
+		return new File(leaderboardFilename + board_file_suffix).exists();
+	}
+
+	private OffHeapLeaderboard(String leaderboardFilename) throws IOException {
+		this.filename = leaderboardFilename;
+		File boardPath = new File(leaderboardFilename + board_file_suffix);
+		File namesPath = new File(leaderboardFilename + names_file_suffix);
+		boolean created = !boardPath.exists() || boardPath.length() == 0;
+		if (!created && namesPath.exists()) {
+			try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(namesPath), 1 << 16))) {
+				while (true) {
+					String name = in.readUTF();
+					nameIds.put(name, names.size());
+					names.add(name);
+				}
+			} catch (EOFException e) { // End of the names, or a name cut short by a crash
+			}
+		}
+		this.boardFile = new RandomAccessFile(boardPath, "rw");
+		this.indexFile = new RandomAccessFile(leaderboardFilename + index_file_suffix, "rw");
+		try {
+			if (created) {
+				this.capacity = INITIAL_CAPACITY;
+				map();
+				board.putInt(0, MAGIC);
+				board.putInt(4, VERSION);
+				writeHeader();
+			} else {
+				this.capacity = readCapacity();
+				map();
+				this.count = board.getInt(COUNT_OFFSET);
+				this.sorted = board.getInt(SORTED_OFFSET);
+				this.activeSlot = board.getInt(SLOT_OFFSET);
+				if (count < 0 || count > capacity || sorted < 0 || sorted > count || (activeSlot & ~1) != 0) {
+					throw new IOException(boardPath + " is corrupt");
+				}
+				// Drops the pending results whose name was lost, if the names file was not flushed before a crash
+				for (int record = sorted; record < count; record++) {
+					if (nameIdOf(record) >= names.size()) {
+						count = record;
+						break;
+					}
+				}
+			}
+		} catch (IOException e) {
+			boardFile.close();
+			indexFile.close();
+			throw e;
+		}
+		this.namesFile = new FileOutputStream(namesPath, !created);
+		this.namesOut = new DataOutputStream(new BufferedOutputStream(namesFile, 1 << 16));
+		this.mergedAt = System.currentTimeMillis();
+	}
+
+	/**
+	 * Reads and validates the header of an existing board file
+	 * @return the capacity
+	 */
+	private int readCapacity() throws IOException {
+		if (boardFile.length() < HEADER_BYTES) {
+			throw new IOException(filename + board_file_suffix + " is not a leaderboard board");
+		}
+		boardFile.seek(0);
+		int magic = boardFile.readInt();
+		int version = boardFile.readInt();
+		if (magic != MAGIC || version != VERSION) {
+			throw new IOException(filename + board_file_suffix + " is not a leaderboard board of version " + VERSION);
+		}
+		boardFile.seek(CAPACITY_OFFSET);
+		int capacity = boardFile.readInt();
+		if (capacity <= 0 || capacity > MAX_CAPACITY || boardFile.length() < HEADER_BYTES + (long) capacity * RECORD_BYTES
+				|| indexFile.length() < 2L * capacity * KEY_BYTES) {
+			throw new IOException(filename + board_file_suffix + " is corrupt");
+		}
+		return capacity;
+	}
+
+	/**
+	 * Maps the board and index files with the current capacity, growing the files if needed
+	 */
+	private void map() throws IOException {
+		long boardBytes = HEADER_BYTES + (long) capacity * RECORD_BYTES;
+		long indexBytes = 2L * capacity * KEY_BYTES;
+		if (boardFile.length() < boardBytes) {
+			boardFile.setLength(boardBytes);
+		}
+		if (indexFile.length() < indexBytes) {
+			indexFile.setLength(indexBytes);
+		}
+		this.board = boardFile.getChannel().map(MapMode.READ_WRITE, 0, boardBytes);
+		this.index = indexFile.getChannel().map(MapMode.READ_WRITE, 0, indexBytes);
+	}
+
+	private void writeHeader() {
+		board.putInt(COUNT_OFFSET, count);
+		board.putInt(SORTED_OFFSET, sorted);
+		board.putInt(SLOT_OFFSET, activeSlot);
+		board.putInt(CAPACITY_OFFSET, capacity);
+	}
+
+	/**
+	 * Adds a result to the end of the board. The result is published by the next merge
+	 * @param name is the player name
+	 * @param score is the score
+	 * @param timestamp is the epoch time in milliseconds when the game ended
+	 * @throws IOException if the files cannot grow
+	 */
+	public synchronized void add(String name, int score, long timestamp) throws IOException {
+		checkOpen();
+		if (count == capacity) {
+			grow();
+		}
+		Integer nameId = nameIds.get(name);
+		if (nameId == null) {
+			nameId = names.size();
+			namesOut.writeUTF(name);
+			names.add(name);
+			nameIds.put(name, nameId);
+		}
+		int position = HEADER_BYTES + count * RECORD_BYTES;
+		board.putInt(position, nameId);
+		board.putInt(position + 4, score);
+		board.putLong(position + 8, timestamp);
+		count++;
+		board.putInt(COUNT_OFFSET, count);
+	}
+
+	/**
+	 * Doubles the capacity of the files. The keys of the active slot are first moved to slot 0, whose position does not change
+	 */
+	private void grow() throws IOException {
+		if (capacity == MAX_CAPACITY) {
+			throw new IOException("The leaderboard board is full (" + MAX_CAPACITY + " results)");
+		}
+		if (activeSlot == 1) {
+			for (int i = 0; i < sorted; i++) {
+				index.putLong(i * KEY_BYTES, index.getLong((capacity + i) * KEY_BYTES));
+			}
+			activeSlot = 0;
+			board.putInt(SLOT_OFFSET, activeSlot);
+		}
+		capacity = (int) Math.min(MAX_CAPACITY, 2L * capacity);
+		map();
+		writeHeader();
+		indexVersion += 2;
+	}
+
+	/**
+	 * Publishes the pending results: sorts them and merges them with the keys of the active slot into the other slot, which becomes active
+	 */
+	public synchronized void merge() {
+		checkOpen();
+		int added = count - sorted;
+		if (added == 0) {
+			return;
+		}
+		long start = System.currentTimeMillis();
+		long[] pending = new long[added];
+		for (int i = 0; i < added; i++) {
+			pending[i] = key(scoreOf(sorted + i), sorted + i);
+		}
+		Arrays.sort(pending);
+		int from = activeSlot * capacity * KEY_BYTES;
+		int to = (1 - activeSlot) * capacity * KEY_BYTES;
+		int i = 0;
+		int j = 0;
+		long current = sorted > 0 ? index.getLong(from) : Long.MAX_VALUE;
+		while (i < sorted || j < added) {
+			long next;
+			if (j == added || (i < sorted && current < pending[j])) {
+				next = current;
+				i++;
+				current = i < sorted ? index.getLong(from + i * KEY_BYTES) : Long.MAX_VALUE;
+			} else {
+				next = pending[j++];
+			}
+			index.putLong(to, next);
+			to += KEY_BYTES;
+		}
+		activeSlot = 1 - activeSlot;
+		sorted = count;
+		board.putInt(SORTED_OFFSET, sorted);
+		board.putInt(SLOT_OFFSET, activeSlot);
+		indexVersion++;
+		mergedAt = System.currentTimeMillis();
+		mergeMillis = mergedAt - start;
+	}
+
+	/**
+	 * Packs a score and a record number into a key. Keys sort by score in descending order, then in the order the results were added
+	 */
+	private static long key(int score, int record) {
+		return (long) ~score << 32 | record;
+	}
+
+	private int nameIdOf(int record) {
+		return board.getInt(HEADER_BYTES + record * RECORD_BYTES);
+	}
+
+	private int scoreOf(int record) {
+		return board.getInt(HEADER_BYTES + record * RECORD_BYTES + 4);
+	}
+
+	private long timestampOf(int record) {
+		return board.getLong(HEADER_BYTES + record * RECORD_BYTES + 8);
+	}
+
+	/**
+	 * Forces the names, the records and the index to disk
+	 * @throws IOException if the files cannot be written
+	 */
+	public synchronized void flush() throws IOException {
+		checkOpen();
+		namesOut.flush();
+		namesFile.getChannel().force(false);
+		index.force();
+		board.force();
+	}
+
+	/**
+	 * Flushes and closes the files. The board cannot be used afterwards
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		try {
+			flush();
+		} finally {
+			closed = true;
+			namesOut.close();
+			boardFile.close();
+			indexFile.close();
+		}
+	}
+
+	private void checkOpen() {
+		if (closed) {
+			throw new IllegalStateException(filename + board_file_suffix + " is closed");
+		}
+	}
+
+	/**
+	 * @param rank is the position in the published results, 0 for the best
+	 * @return the result at the position, as a new LeaderboardResult
+	 */
+	public synchronized LeaderboardResult get(int rank) {
+		checkOpen();
+		if (rank < 0 || rank >= sorted) {
+			throw new IndexOutOfBoundsException("Rank " + rank + " of " + sorted);
+		}
+		return resultOf((int) index.getLong((activeSlot * capacity + rank) * KEY_BYTES));
+	}
+
+	private LeaderboardResult resultOf(int record) {
+		return new LeaderboardResult(names.get(nameIdOf(record)), scoreOf(record), timestampOf(record));
+	}
+
+	/**
+	 * Returns the published results, from highest to lowest score, as a read-only list. The results are read from the files
+	 * when the list is accessed, and each access creates a LeaderboardResult. The list does not change when results are
+	 * published; once the slot it reads was overwritten by the merge after the next one, it throws ConcurrentModificationException
+	 * @return the results
+	 */
+	public synchronized List<LeaderboardResult> getResults() {
+		checkOpen();
+		final long version = indexVersion;
+		final int size = sorted;
+		final int slot = activeSlot;
+		return new AbstractList<LeaderboardResult>() {
+			@Override
+			public LeaderboardResult get(int rank) {
+				synchronized (OffHeapLeaderboard.this) {
+					checkOpen();
+					if (indexVersion - version > 1) {
+						throw new ConcurrentModificationException("The leaderboard was merged twice since the list was created");
+					}
+					if (rank < 0 || rank >= size) {
+						throw new IndexOutOfBoundsException("Rank " + rank + " of " + size);
+					}
+					return resultOf((int) index.getLong((slot * capacity + rank) * KEY_BYTES));
+				}
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+	}
+
+	/**
+	 * @param score is a score
+	 * @return the rank a result with the score has in the published results: 1 plus the number of results with a higher score
+	 */
+	public synchronized int rankOf(int score) {
+		checkOpen();
+		long first = key(score, 0);
+		int base = activeSlot * capacity * KEY_BYTES;
+		int low = 0;
+		int high = sorted;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (index.getLong(base + middle * KEY_BYTES) < first) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low + 1;
+	}
+
+	/**
+	 * @return the number of published results
+	 */
+	public synchronized int size() {
+		return sorted;
+	}
+
+	/**
+	 * @return the number of results added since the last merge
+	 */
+	public synchronized int getPending() {
+		return count - sorted;
+	}
+
+	public synchronized long getMergedAt() {
+		return mergedAt;
+	}
+
+	public synchronized long getMergeMillis() {
+		return mergeMillis;
+	}
+
+	/**
+	 * @return the number of bytes of the board and index files
+	 */
+	public synchronized long getMappedBytes() {
+		return HEADER_BYTES + (long) capacity * (RECORD_BYTES + 2 * KEY_BYTES);
+	}
+
+	public String getFilename() {
+		return filename;
+	}
+}
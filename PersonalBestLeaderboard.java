@@ -0,0 +1,81 @@
+package mari.mvp3;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Leaderboard of personal bests, where each player appears once with their best result. It sits alongside the leaderboard of all
+ * games and is kept up to date one result at a time: a map from name to best result finds the player's entry, and a sorted set orders
+ * the entries by score. When a player beats their best, their entry is taken out of the set and put back with the new score, so a
+ * new result costs O(log players) and the list of all results is never read again. Leaderboard keeps one per leaderboard file, filled
+ * once when the file is read, and the views show its best players next to the leaderboard of all games.
+ */
+public class PersonalBestLeaderboard {
+
+	/**
+	 * Orders the best results from highest to lowest score. Equal scores are ordered by who reached them first, then by name, so that
+	 * two players never compare as equal
+	 */
+	protected final static Comparator<LeaderboardResult> BY_SCORE = Comparator.comparingInt(LeaderboardResult::getScore).reversed()
+			.thenComparingLong(LeaderboardResult::getTimestamp)
+			.thenComparing(LeaderboardResult::getName);
+
+	private final HashMap<String, LeaderboardResult> bests = new HashMap<>(); // Best result of each player
+	private final TreeSet<LeaderboardResult> ranking = new TreeSet<>(BY_SCORE); // The same results, sorted
+
+	/**
+	 * Records a result. It becomes the player's entry if it is the player's first result or beats their best score
+	 * @param r is the result
+	 * @return true if the entry of the player changed
+	 */
+	public synchronized boolean add(LeaderboardResult r) {
+		LeaderboardResult best = bests.get(r.getName());
+		if (best != null && best.getScore() >= r.getScore()) {
+			return false;
+		}
+		replace(best, r);
+		return true;
+	}
+
+	private void replace(LeaderboardResult previous, LeaderboardResult best) {
+		if (previous != null) {
+			ranking.remove(previous);
+		}
+		bests.put(best.getName(), best);
+		ranking.add(best);
+	}
+
+	/**
+	 * @param name is the player name
+	 * @return the best result of the player, or null if the player has no result
+	 */
+	public synchronized LeaderboardResult getBest(String name) {
+		return bests.get(name);
+	}
+
+	/**
+	 * Returns the best players
+	 * @param k is the maximum number of players to return
+	 * @return the best result of each player, from highest to lowest score
+	 */
+	public synchronized ArrayList<LeaderboardResult> getTop(int k) {
+		ArrayList<LeaderboardResult> top = new ArrayList<>(Math.min(k, ranking.size()));
+		for (LeaderboardResult r : ranking) {
+			if (top.size() == k) {
+				break;
+			}
+			top.add(r);
+		}
+		return top;
+	}
+
+	/**
+	 * @return the number of players
+	 */
+	public synchronized int size() {
+		return bests.size();
+	}
+}
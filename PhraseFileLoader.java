@@ -0,0 +1,168 @@
+package mari.mvp3;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.stream.IntStream;
+
+/**
+ * Bulk loader for phrase files. The whole file is read through a FileChannel with a few large reads and decoded once,
+ * then the lines are normalized in parallel across cores (lower cased, stripped of unsupported characters, with runs of
+ * spaces collapsed and trimmed; lines that are already clean are kept without a copy), and empty and duplicate lines are dropped
+ * in one hashed pass. The channel is always closed, even on errors.
+ */
+public class PhraseFileLoader {
+
+	private PhraseFileLoader() {
+	}
+
+	/**
+	 * Loads and normalizes the phrases of a file
+	 * @param path is the phrase file
+	 * @return the phrases in file order, without empty and duplicate lines
+	 * @throws IOException if the file cannot be read
+	 */
+	public static ArrayList<String> load(Path path) throws IOException {
+		return load(path, new LoadStatistics());
+	}
+
+	/**
+	 * Loads and normalizes the phrases of a file and fills in the load statistics
+	 * @param path is the phrase file
+	 * @param stats receives the statistics of the load
+	 * @return the phrases in file order, without empty and duplicate lines
+	 * @throws IOException if the file cannot be read
+	 */
+	public static ArrayList<String> load(Path path, LoadStatistics stats) throws IOException {
+		long start = System.nanoTime();
+		ByteBuffer bytes;
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE - 8) {
+				throw new IOException(path + " is too large to be loaded as a phrase file");
+			}
+			bytes = ByteBuffer.allocate((int) size);
+			while (bytes.hasRemaining() && channel.read(bytes) != -1) {
+				// Keep reading until the whole file is in the buffer
+			}
+			bytes.flip();
+		}
+		long read = System.nanoTime();
+		stats.source = path.toString();
+		stats.bytes = bytes.remaining();
+		String[] lines = splitLines(new String(bytes.array(), 0, bytes.limit(), StandardCharsets.UTF_8));
+		ArrayList<String> phrases = normalizeAll(lines, stats);
+		stats.readNanos = read - start;
+		stats.processNanos = System.nanoTime() - read;
+		return phrases;
+	}
+
+	/**
+	 * Normalizes lines in parallel, then drops empty and duplicate lines in a single sequential pass that keeps the order
+	 * of the first occurrences
+	 * @param lines are the raw lines
+	 * @param stats receives the counts of lines, empty, modified, duplicate and accepted entries
+	 * @return the normalized entries
+	 */
+	protected static ArrayList<String> normalizeAll(String[] lines, LoadStatistics stats) {
+		String[] normalized = new String[lines.length];
+		int modified = IntStream.range(0, lines.length).parallel().map(i -> {
+			normalized[i] = normalize(lines[i]);
+			return normalized[i].equalsIgnoreCase(lines[i]) ? 0 : 1;
+		}).sum();
+		HashSet<String> seen = new HashSet<>(Math.max(16, lines.length * 4 / 3));
+		ArrayList<String> phrases = new ArrayList<>(lines.length);
+		int empty = 0;
+		for (String phrase : normalized) {
+			if (phrase.isEmpty()) {
+				empty++;
+			} else if (seen.add(phrase)) {
+				phrases.add(phrase);
+			}
+		}
+		stats.lines = lines.length;
+		stats.empty = empty;
+		stats.modified = modified;
+		stats.accepted = phrases.size();
+		stats.duplicates = lines.length - empty - phrases.size();
+		return phrases;
+	}
+
+	/**
+	 * Splits decoded text into lines. Both \n and \r\n line endings are accepted, and a final line without line ending is kept
+	 */
+	private static String[] splitLines(String text) {
+		ArrayList<String> lines = new ArrayList<>();
+		int lineStart = 0;
+		int newLine;
+		while ((newLine = text.indexOf('\n', lineStart)) != -1) {
+			int lineEnd = newLine > lineStart && text.charAt(newLine - 1) == '\r' ? newLine - 1 : newLine;
+			lines.add(text.substring(lineStart, lineEnd));
+			lineStart = newLine + 1;
+		}
+		if (lineStart < text.length()) {
+			lines.add(text.substring(lineStart));
+		}
+		return lines.toArray(new String[0]);
+	}
+
+	/**
+	 * Normalizes a line: lower cases the letters A to Z and keeps the letters a to z, the digits and the punctuation marks . , ' ! ? and -.
+	 * Any other character, including ; and :, is turned into a space. Runs of spaces are collapsed into a single space and the line is trimmed. Collapsing spaces
+	 * keeps the words of the phrase aligned with the hidden secret string, which is split on single spaces when a word is revealed.
+	 * A line that is already normalized is returned as is, without copying it
+	 * @param line is the raw line
+	 * @return the normalized line, empty if nothing is left
+	 */
+	protected static String normalize(String line) {
+		if (isNormalized(line)) {
+			return line;
+		}
+		StringBuilder sb = new StringBuilder(line.length());
+		boolean pendingSpace = false;
+		for (int i = 0; i < line.length(); i++) {
+			char c = line.charAt(i);
+			if (c >= 'A' && c <= 'Z') {
+				c += 'a' - 'A';
+			}
+			if (isKept(c)) {
+				if (pendingSpace && sb.length() > 0) {
+					sb.append(' ');
+				}
+				pendingSpace = false;
+				sb.append(c);
+			} else {
+				pendingSpace = true;
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * @return true if the line only has kept characters separated by single spaces, with no space at either end
+	 */
+	private static boolean isNormalized(String line) {
+		int length = line.length();
+		if (length > 0 && (line.charAt(0) == ' ' || line.charAt(length - 1) == ' ')) {
+			return false;
+		}
+		char previous = 0;
+		for (int i = 0; i < length; i++) {
+			char c = line.charAt(i);
+			if (c == ' ' ? previous == ' ' : !isKept(c)) {
+				return false;
+			}
+			previous = c;
+		}
+		return true;
+	}
+
+	private static boolean isKept(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '.' || c == ',' || c == '\'' || c == '!' || c == '?' || c == '-';
+	}
+}
@@ -0,0 +1,420 @@
+package mari.mvp3;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Index of the phrases graded into the ten difficulty levels. The phrases of the phrase files are scored by measured features and
+ * sorted from easiest to hardest, and every level gets a tenth of them. The index is saved as a single binary file holding the phrases
+ * in level order with an offset table, and the range of each level, so picking a random phrase of a level is a lookup in the table.
+ *
+ * The difficulty of a phrase grows with the number of distinct letters to find, the rarity of those letters in English, and the number
+ * of letters, and falls with the number of words, since every word guessed reveals a part of the phrase. Each feature is counted in
+ * standard deviations from the mean of the phrases, and phrases of the difficult file get one more, to keep the grading of the files.
+ *
+ * The index file records the size and modification time of the phrase files it was built from, and is rebuilt when one of them changes.
+ * If the phrase files are missing, an existing index is used as it is.
+ *
+ * File layout: magic, version, number of source files, then for each file its name, modification time and size; number of phrases;
+ * first and last phrase (exclusive) of each level; offsets of the phrases in the text (one more than the number of phrases);
+ * the phrases in UTF-8.
+ */
+public class PhraseIndex {
+
+	public final static String filename_phrase_index = "hangman_phrases.idx";
+	protected final static int LEVELS = 10;
+	protected final static int MAGIC = 0x48475049; // "HGPI"
+	protected final static int VERSION = 1;
+	protected final static double DIFFICULT_FILE_BONUS = 1.0; // Standard deviations added to the phrases of the difficult file
+
+	// Frequency of the letters in English text, in percent
+	private final static double[] LETTER_FREQUENCY = { 8.2, 1.5, 2.8, 4.3, 12.7, 2.2, 2.0, 6.1, 7.0, 0.15, 0.77, 4.0, 2.4, 6.7, 7.5, 1.9,
+			0.095, 6.0, 6.3, 9.1, 2.8, 0.98, 2.4, 0.15, 2.0, 0.074 };
+
+	private static volatile PhraseIndex active;
+
+	private final String[] sources; // Phrase files the index was built from
+	private final long[] sourceModified;
+	private final long[] sourceSizes;
+	private final int[] levelStart = new int[LEVELS + 1]; // First phrase of each level, indexed by level
+	private final int[] levelEnd = new int[LEVELS + 1]; // Phrase after the last one of each level
+	private final int[] offsets; // Offset of each phrase in the text
+	private final byte[] text; // The phrases in UTF-8, in level order
+
+	private PhraseIndex(String[] sources, long[] sourceModified, long[] sourceSizes, int[] offsets, byte[] text) {
+		this.sources = sources;
+		this.sourceModified = sourceModified;
+		this.sourceSizes = sourceSizes;
+		this.offsets = offsets;
+		this.text = text;
+	}
+
+	/**
+	 * @return the phrase files the game grades, from easiest to hardest
+	 */
+	protected static String[] getPhraseFiles() {
+		return new String[] { HangmanPhraseMode.filename_easy_phrases, HangmanPhraseMode.filename_difficult_phrases };
+	}
+
+	/**
+	 * Returns the index of the phrase files in the working directory, building or rebuilding the index file if it is missing or if
+	 * a phrase file changed since it was built
+	 * @return the index
+	 * @throws FileNotFoundException if there is no index and it cannot be built
+	 */
+	public static synchronized PhraseIndex getActive() throws FileNotFoundException {
+		PhraseIndex index = active;
+		String[] files = getPhraseFiles();
+		if (index != null && index.isCurrent(files)) {
+			return index;
+		}
+		try {
+			File indexFile = new File(filename_phrase_index);
+			if (indexFile.exists()) {
+				index = load(filename_phrase_index);
+				if (index.isCurrent(files) || !anyExists(files)) {
+					active = index;
+					return index;
+				}
+			}
+			index = build(files);
+			try {
+				index.save(filename_phrase_index);
+			} catch (IOException e) {
+				// The index is used from memory and built again next time
+			}
+			active = index;
+			return index;
+		} catch (FileNotFoundException e) {
+			throw e;
+		} catch (IOException e) {
+			throw new FileNotFoundException(filename_phrase_index + " could not be built: " + e.getMessage());
+		}
+	}
+
+	private static boolean anyExists(String[] files) {
+		for (String file : files) {
+			if (new File(file).exists()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return true if the index was built from the current version of the phrase files. Missing files count as unchanged
+	 */
+	private boolean isCurrent(String[] files) {
+		if (!Arrays.equals(files, sources)) {
+			return false;
+		}
+		for (int i = 0; i < files.length; i++) {
+			File f = new File(files[i]);
+			if (f.exists() && (f.lastModified() != sourceModified[i] || f.length() != sourceSizes[i])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Builds the index of phrase files. Phrases are read with HangmanPhraseMode.loadPhrases(), and a phrase found in several files is kept once
+	 * @param files are the phrase files, from easiest to hardest. Phrases of the last file get the bonus of the difficult file
+	 * @return the index
+	 * @throws IOException if a file cannot be read
+	 */
+	public static PhraseIndex build(String[] files) throws IOException {
+		ArrayList<String> phrases = new ArrayList<>();
+		ArrayList<Boolean> difficult = new ArrayList<>();
+		HashSet<String> seen = new HashSet<>();
+		long[] modified = new long[files.length];
+		long[] sizes = new long[files.length];
+		for (int i = 0; i < files.length; i++) {
+			File f = new File(files[i]);
+			if (!f.exists()) { // Graded from the other files. The index is rebuilt if the file appears
+				continue;
+			}
+			modified[i] = f.lastModified();
+			sizes[i] = f.length();
+			for (String phrase : HangmanPhraseMode.loadPhrases(files[i])) {
+				if (seen.add(phrase)) {
+					phrases.add(phrase);
+					difficult.add(files.length > 1 && i == files.length - 1);
+				}
+			}
+		}
+		if (phrases.isEmpty()) {
+			throw new FileNotFoundException("No phrases in " + String.join(", ", files));
+		}
+		double[] scores = score(phrases);
+		Integer[] order = new Integer[phrases.size()];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+			if (difficult.get(i)) {
+				scores[i] += DIFFICULT_FILE_BONUS;
+			}
+		}
+		Arrays.sort(order, (a, b) -> Double.compare(scores[a], scores[b]));
+		int[] offsets = new int[order.length + 1];
+		byte[][] encoded = new byte[order.length][];
+		for (int i = 0; i < order.length; i++) {
+			encoded[i] = phrases.get(order[i]).getBytes(StandardCharsets.UTF_8);
+			offsets[i + 1] = offsets[i] + encoded[i].length;
+		}
+		byte[] text = new byte[offsets[order.length]];
+		for (int i = 0; i < order.length; i++) {
+			System.arraycopy(encoded[i], 0, text, offsets[i], encoded[i].length);
+		}
+		PhraseIndex index = new PhraseIndex(files.clone(), modified, sizes, offsets, text);
+		int n = order.length;
+		for (int level = 1; level <= LEVELS; level++) { // With fewer than ten phrases, neighbouring levels share phrases
+			int start = (int) ((long) n * (level - 1) / LEVELS);
+			index.levelStart[level] = Math.min(start, n - 1);
+			index.levelEnd[level] = Math.max(index.levelStart[level] + 1, (int) ((long) n * level / LEVELS));
+		}
+		return index;
+	}
+
+	/**
+	 * Scores the difficulty of phrases from their features, each counted in standard deviations from the mean
+	 * @return the score of each phrase, higher being harder
+	 */
+	protected static double[] score(List<String> phrases) {
+		int n = phrases.size();
+		double[][] features = new double[4][n]; // Distinct letters, rarity, letters, words
+		for (int i = 0; i < n; i++) {
+			String phrase = phrases.get(i);
+			boolean[] present = new boolean[26];
+			int distinct = 0;
+			int letters = 0;
+			int words = 0;
+			boolean inWord = false;
+			double rarity = 0;
+			for (int j = 0; j < phrase.length(); j++) {
+				char c = phrase.charAt(j);
+				boolean space = c == ' ';
+				if (!space && !inWord) {
+					words++;
+				}
+				inWord = !space;
+				if (c >= 'a' && c <= 'z') {
+					letters++;
+					if (!present[c - 'a']) {
+						present[c - 'a'] = true;
+						distinct++;
+						rarity += -Math.log(LETTER_FREQUENCY[c - 'a'] / 100) / Math.log(2); // Bits of information of the letter
+					}
+				} else if (Character.isLetterOrDigit(c)) {
+					letters++;
+				}
+			}
+			features[0][i] = distinct;
+			features[1][i] = distinct == 0 ? 0 : rarity / distinct;
+			features[2][i] = letters;
+			features[3][i] = words;
+		}
+		double[] weights = { 1.0, 1.0, 0.5, -0.5 };
+		double[] scores = new double[n];
+		for (int f = 0; f < features.length; f++) {
+			double mean = 0;
+			for (double x : features[f]) {
+				mean += x;
+			}
+			mean /= n;
+			double variance = 0;
+			for (double x : features[f]) {
+				variance += (x - mean) * (x - mean);
+			}
+			double deviation = Math.sqrt(variance / n);
+			if (deviation == 0) {
+				continue;
+			}
+			for (int i = 0; i < n; i++) {
+				scores[i] += weights[f] * (features[f][i] - mean) / deviation;
+			}
+		}
+		return scores;
+	}
+
+	/**
+	 * Writes the index to a file. The file is written to a temporary file first, which then replaces the previous index
+	 * @param filename is the index file
+	 * @throws IOException if the file cannot be written
+	 */
+	public void save(String filename) throws IOException {
+		File tmp = new File(filename + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(sources.length);
+			for (int i = 0; i < sources.length; i++) {
+				out.writeUTF(sources[i]);
+				out.writeLong(sourceModified[i]);
+				out.writeLong(sourceSizes[i]);
+			}
+			out.writeInt(offsets.length - 1);
+			for (int level = 1; level <= LEVELS; level++) {
+				out.writeInt(levelStart[level]);
+				out.writeInt(levelEnd[level]);
+			}
+			for (int offset : offsets) {
+				out.writeInt(offset);
+			}
+			out.write(text);
+		}
+		Files.move(tmp.toPath(), Paths.get(filename), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Reads an index file
+	 * @param filename is the index file
+	 * @return the index
+	 * @throws IOException if the file cannot be read or is not a phrase index
+	 */
+	public static PhraseIndex load(String filename) throws IOException {
+		ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(Paths.get(filename)));
+		try {
+			if (in.getInt() != MAGIC || in.getInt() != VERSION) {
+				throw new IOException(filename + " is not a phrase index");
+			}
+			int sourceCount = in.getInt();
+			String[] sources = new String[sourceCount];
+			long[] modified = new long[sourceCount];
+			long[] sizes = new long[sourceCount];
+			for (int i = 0; i < sourceCount; i++) {
+				byte[] name = new byte[in.getShort() & 0xffff];
+				in.get(name);
+				sources[i] = new String(name, StandardCharsets.UTF_8); // File names are ASCII, where writeUTF matches UTF-8
+				modified[i] = in.getLong();
+				sizes[i] = in.getLong();
+			}
+			int count = in.getInt();
+			int[] starts = new int[LEVELS + 1];
+			int[] ends = new int[LEVELS + 1];
+			for (int level = 1; level <= LEVELS; level++) {
+				starts[level] = in.getInt();
+				ends[level] = in.getInt();
+				if (starts[level] < 0 || ends[level] > count || starts[level] >= ends[level]) {
+					throw new IOException(filename + " has an invalid range for level " + level);
+				}
+			}
+			int[] offsets = new int[count + 1];
+			for (int i = 0; i <= count; i++) {
+				offsets[i] = in.getInt();
+			}
+			if (in.remaining() != offsets[count]) {
+				throw new IOException(filename + " is truncated");
+			}
+			byte[] text = new byte[offsets[count]];
+			in.get(text);
+			PhraseIndex index = new PhraseIndex(sources, modified, sizes, offsets, text);
+			System.arraycopy(starts, 0, index.levelStart, 0, starts.length);
+			System.arraycopy(ends, 0, index.levelEnd, 0, ends.length);
+			return index;
+		} catch (RuntimeException e) { // BufferUnderflowException or NegativeArraySizeException
+			throw new IOException(filename + " is not a valid phrase index");
+		}
+	}
+
+	private static int clampLevel(int level) {
+		return Math.max(1, Math.min(LEVELS, level));
+	}
+
+	/**
+	 * @return the number of phrases of a difficulty level
+	 */
+	public int size(int level) {
+		level = clampLevel(level);
+		return levelEnd[level] - levelStart[level];
+	}
+
+	/**
+	 * @return a phrase of a difficulty level
+	 * @param level is the difficulty level
+	 * @param i is the position of the phrase in the level
+	 */
+	public String get(int level, int i) {
+		int phrase = levelStart[clampLevel(level)] + i;
+		return new String(text, offsets[phrase], offsets[phrase + 1] - offsets[phrase], StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @return a random phrase of a difficulty level
+	 */
+	public String randomPhrase(int level, Random random) {
+		return get(level, random.nextInt(size(level)));
+	}
+
+	/**
+	 * @return the phrases of a difficulty level, from easiest to hardest
+	 */
+	public ArrayList<String> phrases(int level) {
+		ArrayList<String> phrases = new ArrayList<>(size(level));
+		for (int i = 0; i < size(level); i++) {
+			phrases.add(get(level, i));
+		}
+		return phrases;
+	}
+
+	/**
+	 * Returns the phrases of a difficulty level packed into a StringCorpus, copied from the text of the index without creating a String
+	 * per phrase. The phrase files only hold ASCII characters, whose UTF-8 bytes are also their Latin-1 bytes; a level with other
+	 * characters, from an index file written elsewhere, is decoded phrase by phrase
+	 * @param level is the difficulty level
+	 * @return the corpus of the level, from easiest to hardest
+	 */
+	public StringCorpus corpus(int level) {
+		level = clampLevel(level);
+		int first = levelStart[level];
+		int last = levelEnd[level];
+		int from = offsets[first];
+		int to = offsets[last];
+		for (int i = from; i < to; i++) {
+			if (text[i] < 0) {
+				return StringCorpus.of(phrases(level));
+			}
+		}
+		int[] levelOffsets = new int[last - first + 1];
+		for (int i = 0; i < levelOffsets.length; i++) {
+			levelOffsets[i] = offsets[first + i] - from;
+		}
+		return StringCorpus.ofLatin1(Arrays.copyOfRange(text, from, to), levelOffsets);
+	}
+
+	/**
+	 * @return the total number of phrases
+	 */
+	public int size() {
+		return offsets.length - 1;
+	}
+
+	/**
+	 * Builds the index of the phrase files of the working directory and prints a sample of each level
+	 */
+	public static void main(String... args) throws IOException {
+		String[] files = args.length > 0 ? args : getPhraseFiles();
+		long start = System.nanoTime();
+		PhraseIndex index = build(files);
+		index.save(filename_phrase_index);
+		System.out.println(String.format("Indexed %d phrases of %s into %s in %d ms", index.size(), String.join(", ", files),
+				filename_phrase_index, (System.nanoTime() - start) / 1_000_000));
+		Random random = new Random();
+		for (int level = 1; level <= LEVELS; level++) {
+			System.out.println(String.format("Level %2d: %5d phrases, e.g. %s", level, index.size(level), index.randomPhrase(level, random)));
+		}
+	}
+}
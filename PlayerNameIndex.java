@@ -0,0 +1,300 @@
+package mari.mvp3;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Index of the player names of a leaderboard, kept as a radix trie on the lower case names. Every node also records the best score
+ * of the players below it, so the best players whose name starts with a prefix are found by walking the trie best first and only
+ * visiting the branches that can still hold one of them, however many results the leaderboard has. The index is updated for every
+ * result added to the leaderboard. Leaderboard keeps one per leaderboard file, filled once when the file is read.
+ * Names are matched without regard to case, but players whose names differ only in case are kept apart.
+ */
+public class PlayerNameIndex {
+
+	/**
+	 * Best result of a player
+	 */
+	private static class PlayerEntry {
+		final String name;
+		int bestScore;
+		long bestTimestamp;
+		int results; // Number of results of the player
+
+		PlayerEntry(String name, int score, long timestamp) {
+			this.name = name;
+			this.bestScore = score;
+			this.bestTimestamp = timestamp;
+		}
+	}
+
+	/**
+	 * Best result of a player and its rank on the leaderboard, as returned by a lookup
+	 */
+	public static class PlayerBest {
+		private final String name;
+		private final int bestScore;
+		private final long bestTimestamp;
+		private final int results;
+		private final int rank;
+
+		PlayerBest(PlayerEntry entry, int rank) {
+			this.name = entry.name;
+			this.bestScore = entry.bestScore;
+			this.bestTimestamp = entry.bestTimestamp;
+			this.results = entry.results;
+			this.rank = rank;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public int getBestScore() {
+			return bestScore;
+		}
+
+		public long getBestTimestamp() {
+			return bestTimestamp;
+		}
+
+		public int getResults() {
+			return results;
+		}
+
+		/**
+		 * @return the rank of the best result of the player, 1 being the first place. Results with the same score share a rank
+		 */
+		public int getRank() {
+			return rank;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d. %s %d", rank, name, bestScore);
+		}
+	}
+
+	/**
+	 * Node of the trie. The edge from its parent is labeled with a part of a name, and the node holds the players whose name ends there
+	 */
+	private static class Node {
+		String label;
+		Node[] children = NO_CHILDREN; // Sorted by the first character of their label
+		PlayerEntry[] players = NO_PLAYERS; // Usually none or one, more when names differ only in case
+		int best = Integer.MIN_VALUE; // Best score of the players of this node and of its descendants
+
+		Node(String label) {
+			this.label = label;
+		}
+
+		int findChild(char first) {
+			int low = 0;
+			int high = children.length - 1;
+			while (low <= high) {
+				int middle = (low + high) >>> 1;
+				char c = children[middle].label.charAt(0);
+				if (c < first) {
+					low = middle + 1;
+				} else if (c > first) {
+					high = middle - 1;
+				} else {
+					return middle;
+				}
+			}
+			return -(low + 1);
+		}
+	}
+
+	private final static Node[] NO_CHILDREN = new Node[0];
+	private final static PlayerEntry[] NO_PLAYERS = new PlayerEntry[0];
+
+	private Node root = new Node("");
+	private int size; // Number of players
+
+	/**
+	 * @return the key of a name in the trie
+	 */
+	private static String key(String name) {
+		return name.toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * Records a result, updating the best result of its player
+	 * @param r is the result
+	 */
+	public synchronized void add(LeaderboardResult r) {
+		String key = key(r.getName());
+		Node node = root;
+		int i = 0;
+		while (true) {
+			node.best = Math.max(node.best, r.getScore());
+			if (i == key.length()) {
+				break;
+			}
+			int c = node.findChild(key.charAt(i));
+			if (c < 0) { // No name continues this way yet
+				Node leaf = new Node(key.substring(i));
+				insertChild(node, -(c + 1), leaf);
+				node = leaf;
+				i = key.length();
+				continue;
+			}
+			Node child = node.children[c];
+			int common = commonPrefix(child.label, key, i);
+			if (common < child.label.length()) { // The name leaves the edge part way: split the edge
+				Node middle = new Node(child.label.substring(0, common));
+				child.label = child.label.substring(common);
+				middle.children = new Node[] { child };
+				middle.best = child.best;
+				node.children[c] = middle;
+				child = middle;
+			}
+			node = child;
+			i += common;
+		}
+		for (PlayerEntry entry : node.players) {
+			if (entry.name.equals(r.getName())) {
+				update(entry, r);
+				return;
+			}
+		}
+		PlayerEntry entry = new PlayerEntry(r.getName(), r.getScore(), r.getTimestamp());
+		entry.results = 1;
+		node.players = Arrays.copyOf(node.players, node.players.length + 1);
+		node.players[node.players.length - 1] = entry;
+		size++;
+	}
+
+	private static void update(PlayerEntry entry, LeaderboardResult r) {
+		entry.results++;
+		if (r.getScore() > entry.bestScore) {
+			entry.bestScore = r.getScore();
+			entry.bestTimestamp = r.getTimestamp();
+		}
+	}
+
+	private static void insertChild(Node node, int index, Node child) {
+		Node[] children = new Node[node.children.length + 1];
+		System.arraycopy(node.children, 0, children, 0, index);
+		children[index] = child;
+		System.arraycopy(node.children, index, children, index + 1, node.children.length - index);
+		node.children = children;
+	}
+
+	private static int commonPrefix(String label, String key, int from) {
+		int n = Math.min(label.length(), key.length() - from);
+		int i = 0;
+		while (i < n && label.charAt(i) == key.charAt(from + i)) {
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * Finds the node below which are the names starting with a key
+	 * @param key is the lower case key
+	 * @param exact is true to only return the node where the key ends, false to also accept a key ending part way along an edge
+	 * @return the node, or null if no name starts with the key
+	 */
+	private Node find(String key, boolean exact) {
+		Node node = root;
+		int i = 0;
+		while (i < key.length()) {
+			int c = node.findChild(key.charAt(i));
+			if (c < 0) {
+				return null;
+			}
+			node = node.children[c];
+			int common = commonPrefix(node.label, key, i);
+			if (common < node.label.length() && (exact || i + common < key.length())) {
+				return null;
+			}
+			i += common;
+		}
+		return node;
+	}
+
+	/**
+	 * Looks up a player by exact name
+	 * @param name is the player name
+	 * @param snapshot is the leaderboard the rank is taken from
+	 * @return the best result of the player, or null if the player has no result
+	 */
+	public PlayerBest lookup(String name, LeaderboardSnapshot snapshot) {
+		return lookup(name, snapshot::rankOf);
+	}
+
+	/**
+	 * Looks up a player by exact name
+	 * @param name is the player name
+	 * @param ranks gives the rank of a score on the leaderboard, e.g. OffHeapLeaderboard.rankOf()
+	 * @return the best result of the player, or null if the player has no result
+	 */
+	public synchronized PlayerBest lookup(String name, IntUnaryOperator ranks) {
+		Node node = find(key(name), true);
+		if (node == null) {
+			return null;
+		}
+		for (PlayerEntry entry : node.players) {
+			if (entry.name.equals(name)) {
+				return new PlayerBest(entry, ranks.applyAsInt(entry.bestScore));
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Finds the best players whose name starts with a prefix, without regard to case
+	 * @param prefix is the start of the names
+	 * @param k is the maximum number of players to return
+	 * @param snapshot is the leaderboard the ranks are taken from
+	 * @return the players from highest to lowest best score
+	 */
+	public List<PlayerBest> search(String prefix, int k, LeaderboardSnapshot snapshot) {
+		return search(prefix, k, snapshot::rankOf);
+	}
+
+	/**
+	 * Finds the best players whose name starts with a prefix, without regard to case
+	 * @param prefix is the start of the names
+	 * @param k is the maximum number of players to return
+	 * @param ranks gives the rank of a score on the leaderboard, e.g. OffHeapLeaderboard.rankOf()
+	 * @return the players from highest to lowest best score
+	 */
+	public synchronized List<PlayerBest> search(String prefix, int k, IntUnaryOperator ranks) {
+		ArrayList<PlayerBest> found = new ArrayList<>();
+		Node start = find(key(prefix), false);
+		if (start == null || k <= 0) {
+			return found;
+		}
+		PriorityQueue<Node> nodes = new PriorityQueue<>((a, b) -> Integer.compare(b.best, a.best));
+		PriorityQueue<PlayerEntry> ready = new PriorityQueue<>((a, b) -> Integer.compare(b.bestScore, a.bestScore));
+		nodes.add(start);
+		while (found.size() < k) {
+			// A player is returned once no node left to visit can hold a better one
+			if (!ready.isEmpty() && (nodes.isEmpty() || ready.peek().bestScore >= nodes.peek().best)) {
+				PlayerEntry entry = ready.poll();
+				found.add(new PlayerBest(entry, ranks.applyAsInt(entry.bestScore)));
+			} else if (nodes.isEmpty()) {
+				break;
+			} else {
+				Node node = nodes.poll();
+				ready.addAll(Arrays.asList(node.players));
+				nodes.addAll(Arrays.asList(node.children));
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * @return the number of players
+	 */
+	public synchronized int size() {
+		return size;
+	}
+}
@@ -0,0 +1,261 @@
+package mari.mvp3;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Properties;
+
+/**
+ * Scoring rules of the play modes, read from a properties file and compiled into lookup tables, so that scoring a game is
+ * a few array reads and the rules can be changed without changing the code. The same rules score live games and
+ * re-score recorded games with LeaderboardRescorer.
+ *
+ * The score of a won game is (difficulty points + length points x length) x miss percent / 100 + time bonus + streak bonus,
+ * where the length is the number of letters of a word or the number of words of a phrase. A lost game scores the loss points.
+ * Each play mode has its own rules, with the keys below prefixed by the mode name (e.g. "words.difficulty"):
+ * difficulty: points for difficulty levels 1 to 10, comma separated
+ * length: points per letter or per word of the secret
+ * lengthUnit: "letters" or "words"
+ * misses: percent of the points kept after 0, 1, ... incorrect guesses, comma separated
+ * time: bonus when the game is won within a number of seconds, as seconds:points pairs (e.g. 30:5,60:2)
+ * streak: bonus when the longest run of consecutive correct guesses reaches a length, as length:points pairs (e.g. 3:1,5:3)
+ * loss: points of a lost game
+ * Rules that are not configured keep the default rules: the difficulty level for "guess word" games and five points per word
+ * for "guess phrase" games.
+ */
+public class ScoringRules {
+
+	public final static String filename_scoring_rules = "scoring.properties";
+	protected final static int LEVELS = 11; // Difficulty levels 1 to 10, index 0 is unused
+	protected final static int MAX_THRESHOLD = 86_400; // Largest time (one day in seconds) or streak accepted in a threshold table
+
+	private static volatile ScoringRules active = defaults();
+
+	private final HashMap<String, ModeRules> modes = new HashMap<>();
+
+	/**
+	 * Compiled rules of one play mode. Every input is used as an index into a table, clamped to the last entry
+	 */
+	private static class ModeRules {
+		int[] difficultyPoints = new int[LEVELS];
+		int lengthPoints;
+		boolean lengthInWords;
+		int[] missPercent = { 100 };
+		int[] timeBonus = new int[0]; // timeBonus[s] is the bonus of a game won in s seconds, 0 past the end of the table
+		int[] streakBonus = { 0 }; // streakBonus[n] is the bonus of a longest streak of n, the last entry applies to longer streaks
+		int lossPoints;
+
+		int score(int difficulty, String secret, int misses, long durationMillis, int streak, boolean won) {
+			if (!won) {
+				return lossPoints;
+			}
+			int length = lengthPoints == 0 ? 0 : lengthInWords ? countWords(secret) : countLetters(secret);
+			int points = difficultyPoints[clamp(difficulty, LEVELS)] + lengthPoints * length;
+			points = points * missPercent[clamp(misses, missPercent.length)] / 100;
+			long seconds = durationMillis / 1000;
+			if (seconds >= 0 && seconds < timeBonus.length) {
+				points += timeBonus[(int) seconds];
+			}
+			return points + streakBonus[clamp(streak, streakBonus.length)];
+		}
+	}
+
+	private ScoringRules() {
+	}
+
+	/**
+	 * @return the default rules, which score as the game always did
+	 */
+	public static ScoringRules defaults() {
+		ScoringRules rules = new ScoringRules();
+		ModeRules words = new ModeRules();
+		for (int level = 1; level < LEVELS; level++) {
+			words.difficultyPoints[level] = level;
+		}
+		rules.modes.put("words", words);
+		ModeRules phrases = new ModeRules();
+		phrases.lengthPoints = 5;
+		phrases.lengthInWords = true;
+		rules.modes.put("phrases", phrases);
+		return rules;
+	}
+
+	/**
+	 * Reads and compiles scoring rules from a properties file
+	 * @param filename is the properties file
+	 * @return the compiled rules
+	 * @throws IOException if the file cannot be read or a rule is invalid
+	 */
+	public static ScoringRules load(String filename) throws IOException {
+		Properties properties = new Properties();
+		try (InputStream in = new FileInputStream(filename)) {
+			properties.load(in);
+		}
+		return compile(properties);
+	}
+
+	/**
+	 * Compiles scoring rules. Modes and rules that are not configured keep their default rules
+	 * @param properties are the rules, with keys prefixed by the mode name
+	 * @return the compiled rules
+	 * @throws IOException if a rule is invalid
+	 */
+	public static ScoringRules compile(Properties properties) throws IOException {
+		ScoringRules rules = defaults();
+		for (String key : properties.stringPropertyNames()) {
+			int dot = key.indexOf('.');
+			if (dot <= 0) {
+				throw new IOException("Invalid scoring rule " + key + ": expected <mode>.<rule>");
+			}
+			ModeRules mode = rules.modes.computeIfAbsent(key.substring(0, dot), m -> new ModeRules());
+			String value = properties.getProperty(key).trim();
+			try {
+				compileRule(mode, key.substring(dot + 1), value);
+			} catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+				throw new IOException("Invalid scoring rule " + key + "=" + value);
+			}
+		}
+		return rules;
+	}
+
+	private static void compileRule(ModeRules mode, String rule, String value) throws IOException {
+		switch (rule) {
+		case "difficulty":
+			int[] points = parseList(value);
+			mode.difficultyPoints = new int[LEVELS];
+			for (int level = 1; level < LEVELS; level++) {
+				mode.difficultyPoints[level] = points[Math.min(level, points.length) - 1];
+			}
+			break;
+		case "length":
+			mode.lengthPoints = Integer.parseInt(value);
+			break;
+		case "lengthUnit":
+			if (!value.equals("letters") && !value.equals("words")) {
+				throw new IOException("Invalid scoring rule lengthUnit=" + value + ": expected letters or words");
+			}
+			mode.lengthInWords = value.equals("words");
+			break;
+		case "misses":
+			mode.missPercent = parseList(value);
+			break;
+		case "time":
+			mode.timeBonus = compileThresholds(value, true);
+			break;
+		case "streak":
+			mode.streakBonus = compileThresholds(value, false);
+			break;
+		case "loss":
+			mode.lossPoints = Integer.parseInt(value);
+			break;
+		default:
+			throw new IOException("Unknown scoring rule " + rule);
+		}
+	}
+
+	private static int[] parseList(String value) {
+		String[] parts = value.split(",");
+		int[] list = new int[parts.length];
+		for (int i = 0; i < parts.length; i++) {
+			list[i] = Integer.parseInt(parts[i].trim());
+		}
+		if (list.length == 0) {
+			throw new NumberFormatException();
+		}
+		return list;
+	}
+
+	/**
+	 * Compiles threshold:points pairs into a table indexed by the input value
+	 * @param value are the pairs, comma separated
+	 * @param within is true if a pair applies up to its threshold (time limits), false if it applies from its threshold (streaks)
+	 * @return the table
+	 */
+	private static int[] compileThresholds(String value, boolean within) {
+		String[] pairs = value.split(",");
+		int[] thresholds = new int[pairs.length];
+		int[] points = new int[pairs.length];
+		int max = 0;
+		for (int i = 0; i < pairs.length; i++) {
+			String[] pair = pairs[i].split(":");
+			thresholds[i] = Integer.parseInt(pair[0].trim());
+			points[i] = Integer.parseInt(pair[1].trim());
+			if (thresholds[i] < 0 || thresholds[i] > MAX_THRESHOLD) {
+				throw new NumberFormatException();
+			}
+			max = Math.max(max, thresholds[i]);
+		}
+		int[] table = new int[max + 1];
+		for (int x = 0; x <= max; x++) {
+			for (int i = 0; i < pairs.length; i++) {
+				boolean applies = within ? x <= thresholds[i] : x >= thresholds[i];
+				if (applies) {
+					table[x] = Math.max(table[x], points[i]);
+				}
+			}
+		}
+		return table;
+	}
+
+	private static int clamp(int index, int length) {
+		return Math.max(0, Math.min(length - 1, index));
+	}
+
+	private static int countWords(String secret) {
+		int words = 0;
+		boolean inWord = false;
+		for (int i = 0; i < secret.length(); i++) {
+			boolean space = Character.isWhitespace(secret.charAt(i));
+			if (!space && !inWord) {
+				words++;
+			}
+			inWord = !space;
+		}
+		return Math.max(1, words); // As with split(), a blank secret counts as one word
+	}
+
+	private static int countLetters(String secret) {
+		int letters = 0;
+		for (int i = 0; i < secret.length(); i++) {
+			if (Character.isLetterOrDigit(secret.charAt(i))) {
+				letters++;
+			}
+		}
+		return letters;
+	}
+
+	/**
+	 * Scores a game
+	 * @param mode is the play mode
+	 * @param difficulty is the difficulty level
+	 * @param secret is the secret string
+	 * @param misses is the number of incorrect guesses
+	 * @param durationMillis is the time from the start to the end of the game
+	 * @param streak is the longest run of consecutive correct guesses
+	 * @param won is true if the player guessed the secret string
+	 * @return the score, or 0 if the play mode has no rules
+	 */
+	public int score(String mode, int difficulty, String secret, int misses, long durationMillis, int streak, boolean won) {
+		ModeRules rules = modes.get(mode);
+		return rules == null ? 0 : rules.score(difficulty, secret, misses, durationMillis, streak, won);
+	}
+
+	/**
+	 * @return true if there are rules for a play mode
+	 */
+	public boolean hasRules(String mode) {
+		return modes.containsKey(mode);
+	}
+
+	/**
+	 * @return the rules used to score the games being played
+	 */
+	public static ScoringRules getActive() {
+		return active;
+	}
+
+	public static void setActive(ScoringRules rules) {
+		active = rules;
+	}
+}
@@ -0,0 +1,329 @@
+package mari.mvp3;
+
+import java.io.FileNotFoundException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Soak test of the game engine with an allocation budget, to be run as a regression gate.
+ * Several threads play millions of games through HangmanFactory and HangmanGame, the way the Controller does: each thread keeps a game,
+ * configures it for a random player and difficulty level, guesses letters in random order (and now and then a word) until the game is
+ * over, then saves the score to the Leaderboard. The lists of words and phrases are generated and put in the CorpusCache first, so the
+ * test needs no network or phrase files. It creates empty leaderboard files in the working directory if there are none, and never
+ * writes to them.
+ *
+ * Each thread measures the bytes it allocates per guess and per game with com.sun.management.ThreadMXBean. At regular checkpoints
+ * the main thread runs a full GC and records the old generation (or heap) in use, so that the heap retained per game can be computed
+ * from the end of the warm-up to the end of the test. The leaderboard keeps one result per game, so some growth is expected and the
+ * budget is per game. The test exits with status 1 if a budget is exceeded.
+ *
+ * Usage: SoakTest [--games n] [--threads n] [--mode words|phrases] [--players n] [--guess-budget bytes] [--game-budget bytes]
+ *        [--retained-budget bytes]
+ */
+public class SoakTest {
+
+	protected final static long DEFAULT_GAMES = 1_000_000;
+	protected final static int DEFAULT_PLAYERS = 1000; // Distinct player names
+	// The default budgets are about twice what the game allocates today (1 to 2 KB per guess, 10 to 30 KB per game), so that the
+	// test catches regressions. They can be lowered as the allocations of the game engine are reduced
+	protected final static long DEFAULT_GUESS_BUDGET = 4096; // Bytes allocated per guess
+	protected final static long DEFAULT_GAME_BUDGET = 64 * 1024; // Bytes allocated per game, guesses included
+	protected final static long DEFAULT_RETAINED_BUDGET = 256; // Bytes of heap retained per game
+	protected final static int CHECKPOINTS = 10; // Heap samples after the warm-up
+	protected final static double WORD_GUESS_RATE = 0.1; // Share of guesses that are words instead of letters
+	private final static String LETTERS = "etaoinshrdlcumwfgypbvkjxqz";
+
+	private final String mode;
+	private final long games;
+	private final int threads;
+	private final String[] players;
+	private final com.sun.management.ThreadMXBean threadBean;
+	private final long measureOverhead; // Bytes allocated by reading the allocated bytes of a thread, subtracted from every measure
+
+	private final AtomicLong gamesPlayed = new AtomicLong();
+	private final AtomicLong guesses = new AtomicLong();
+	private final AtomicLong guessBytes = new AtomicLong();
+	private final AtomicLong gameBytes = new AtomicLong();
+	private final AtomicLong maxGuessBytes = new AtomicLong(); // Largest average allocation per guess of a game
+
+	/**
+	 * @param mode is the play mode, "words" or "phrases"
+	 * @param games is the number of games to play
+	 * @param threads is the number of threads playing
+	 * @param players is the number of distinct player names
+	 */
+	public SoakTest(String mode, long games, int threads, int players) {
+		this.mode = mode;
+		this.games = games;
+		this.threads = threads;
+		this.players = new String[players];
+		for (int i = 0; i < players; i++) {
+			this.players[i] = "player" + i;
+		}
+		this.threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		if (!threadBean.isThreadAllocatedMemorySupported()) {
+			throw new UnsupportedOperationException("The JVM does not measure the memory allocated by threads");
+		}
+		threadBean.setThreadAllocatedMemoryEnabled(true);
+		this.measureOverhead = calibrate();
+	}
+
+	private long allocatedBytes() {
+		return threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	/**
+	 * @return the bytes allocated by one reading of the allocated bytes, once the reading is compiled
+	 */
+	private long calibrate() {
+		long overhead = Long.MAX_VALUE;
+		for (int i = 0; i < 100_000; i++) {
+			long before = allocatedBytes();
+			overhead = Math.min(overhead, allocatedBytes() - before);
+		}
+		return overhead;
+	}
+
+	/**
+	 * Puts generated lists of words and phrases in the CorpusCache for every difficulty level, so that no game loads them
+	 */
+	protected static void primeCorpora() throws WordListException, FileNotFoundException {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		for (int level = 1; level <= 10; level++) {
+			ArrayList<String> words = new ArrayList<>();
+			for (int i = 0; i < 5000; i++) {
+				words.add(randomWord(random, 3 + level / 2 + random.nextInt(4)));
+			}
+			CorpusCache.getOrLoad("words:" + level, () -> words);
+		}
+		for (int level = 1; level <= 10; level++) {
+			ArrayList<String> phrases = new ArrayList<>();
+			for (int i = 0; i < 2000; i++) {
+				StringBuilder phrase = new StringBuilder();
+				int length = 2 + random.nextInt(5);
+				for (int w = 0; w < length; w++) {
+					phrase.append(w == 0 ? "" : " ").append(randomWord(random, 2 + random.nextInt(7)));
+				}
+				phrases.add(phrase.toString());
+			}
+			CorpusCache.getOrLoad(HangmanPhraseMode.getCorpusKey(level), () -> phrases);
+		}
+	}
+
+	private static String randomWord(ThreadLocalRandom random, int length) {
+		char[] word = new char[length];
+		for (int i = 0; i < length; i++) {
+			word[i] = LETTERS.charAt(random.nextInt(LETTERS.length()));
+		}
+		return new String(word);
+	}
+
+	/**
+	 * Plays games on the calling thread until the number of games is reached
+	 */
+	private void play() {
+		try {
+			HangmanGame game = new HangmanFactory().createGame(mode);
+			ThreadLocalRandom random = ThreadLocalRandom.current();
+			char[] letters = LETTERS.toCharArray();
+			long threadGuesses = 0;
+			long threadGuessBytes = 0;
+			long threadGameBytes = 0;
+			long maxGameGuessBytes = 0;
+			while (gamesPlayed.getAndIncrement() < games) {
+				long gameStart = allocatedBytes();
+				game.configure(players[random.nextInt(players.length)], 1 + random.nextInt(10));
+				game.resetGameStatus();
+				for (int i = letters.length - 1; i > 0; i--) { // Shuffles the letters guessed
+					int j = random.nextInt(i + 1);
+					char c = letters[i];
+					letters[i] = letters[j];
+					letters[j] = c;
+				}
+				int next = 0;
+				long gameGuesses = 0;
+				long gameGuessBytes = 0;
+				while (!game.isGameOver() && next < letters.length) {
+					String guess;
+					if (random.nextDouble() < WORD_GUESS_RATE) {
+						guess = wordGuess(game, random);
+					} else {
+						guess = String.valueOf(letters[next++]);
+					}
+					long before = allocatedBytes();
+					game.submitGuess(guess);
+					gameGuessBytes += allocatedBytes() - before - measureOverhead;
+					gameGuesses++;
+				}
+				game.calculateAndSaveScore();
+				threadGameBytes += allocatedBytes() - gameStart - measureOverhead;
+				threadGuesses += gameGuesses;
+				threadGuessBytes += gameGuessBytes;
+				if (gameGuesses > 0) {
+					maxGameGuessBytes = Math.max(maxGameGuessBytes, gameGuessBytes / gameGuesses);
+				}
+			}
+			guesses.addAndGet(threadGuesses);
+			guessBytes.addAndGet(threadGuessBytes);
+			gameBytes.addAndGet(threadGameBytes);
+			maxGuessBytes.accumulateAndGet(maxGameGuessBytes, Math::max);
+		} catch (LeaderboardException | WordListException | FileNotFoundException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * @return a word of the secret string half of the time, a random word otherwise
+	 */
+	private static String wordGuess(HangmanGame game, ThreadLocalRandom random) {
+		if (random.nextBoolean()) {
+			String[] words = game.getSecretWord().split(" ");
+			return words[random.nextInt(words.length)];
+		}
+		return randomWord(random, 2 + random.nextInt(7));
+	}
+
+	/**
+	 * @return the pool of the old generation, or null if the collector has none
+	 */
+	private static MemoryPoolMXBean oldGeneration() {
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			String name = pool.getName();
+			if (pool.getType() == MemoryType.HEAP && (name.contains("Old") || name.contains("Tenured"))) {
+				return pool;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return the bytes of the old generation in use after a full GC, or of the whole heap if there is no old generation
+	 */
+	private static long retainedBytes(MemoryPoolMXBean oldGeneration) {
+		System.gc();
+		if (oldGeneration != null) {
+			return oldGeneration.getUsage().getUsed();
+		}
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+	}
+
+	/**
+	 * Plays the games and reports the allocation and retention measures
+	 * @param guessBudget is the largest average number of bytes allowed per guess
+	 * @param gameBudget is the largest average number of bytes allowed per game
+	 * @param retainedBudget is the largest number of bytes of heap retained per game
+	 * @return true if every budget was met
+	 */
+	public boolean run(long guessBudget, long gameBudget, long retainedBudget) throws InterruptedException {
+		MemoryPoolMXBean oldGeneration = oldGeneration();
+		long warmUp = games / (CHECKPOINTS + 1);
+		Thread[] workers = new Thread[threads];
+		long start = System.nanoTime();
+		for (int i = 0; i < threads; i++) {
+			workers[i] = new Thread(this::play, "soak-" + i);
+			workers[i].start();
+		}
+		long baseline = -1;
+		long baselineGames = 0;
+		long nextCheckpoint = warmUp;
+		long retained = 0;
+		long checkpointGames = 0;
+		boolean running = true;
+		while (running) {
+			running = false;
+			for (Thread worker : workers) {
+				worker.join(100);
+				running |= worker.isAlive();
+			}
+			long played = Math.min(gamesPlayed.get(), games);
+			if (played >= nextCheckpoint || !running && played > checkpointGames) {
+				retained = retainedBytes(oldGeneration);
+				checkpointGames = played;
+				if (baseline < 0) {
+					baseline = retained;
+					baselineGames = checkpointGames;
+				}
+				System.out.println(String.format("%,d games: %,d bytes retained", checkpointGames, retained));
+				nextCheckpoint += Math.max(1, (games - warmUp) / CHECKPOINTS);
+			}
+		}
+		long elapsed = (System.nanoTime() - start) / 1_000_000;
+		long guessCount = Math.max(1, guesses.get());
+		long perGuess = guessBytes.get() / guessCount;
+		long perGame = gameBytes.get() / Math.max(1, games);
+		long retainedPerGame = checkpointGames > baselineGames ? (retained - baseline) / (checkpointGames - baselineGames) : 0;
+		System.out.println(String.format("%s mode: %,d games and %,d guesses on %d threads in %,d ms", mode, games, guesses.get(), threads, elapsed));
+		System.out.println(String.format("Allocated per guess: %,d bytes on average, %,d bytes in the worst game (budget %,d)", perGuess,
+				maxGuessBytes.get(), guessBudget));
+		System.out.println(String.format("Allocated per game: %,d bytes (budget %,d)", perGame, gameBudget));
+		System.out.println(String.format("Retained per game: %,d bytes (budget %,d), %s", retainedPerGame, retainedBudget,
+				oldGeneration != null ? "measured on " + oldGeneration.getName() : "measured on the whole heap"));
+		boolean passed = true;
+		if (perGuess > guessBudget) {
+			System.out.println("FAILED: allocation per guess is over budget");
+			passed = false;
+		}
+		if (perGame > gameBudget) {
+			System.out.println("FAILED: allocation per game is over budget");
+			passed = false;
+		}
+		if (retainedPerGame > retainedBudget) {
+			System.out.println("FAILED: retained heap grows faster than the budget");
+			passed = false;
+		}
+		if (passed) {
+			System.out.println("PASSED");
+		}
+		return passed;
+	}
+
+	public static void main(String... args) throws Exception {
+		long games = DEFAULT_GAMES;
+		int threads = Runtime.getRuntime().availableProcessors();
+		String mode = "words";
+		int players = DEFAULT_PLAYERS;
+		long guessBudget = DEFAULT_GUESS_BUDGET;
+		long gameBudget = DEFAULT_GAME_BUDGET;
+		long retainedBudget = DEFAULT_RETAINED_BUDGET;
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			String value = args[i + 1];
+			switch (args[i]) {
+			case "--games":
+				games = Long.parseLong(value);
+				break;
+			case "--threads":
+				threads = Integer.parseInt(value);
+				break;
+			case "--mode":
+				mode = value;
+				break;
+			case "--players":
+				players = Integer.parseInt(value);
+				break;
+			case "--guess-budget":
+				guessBudget = Long.parseLong(value);
+				break;
+			case "--game-budget":
+				gameBudget = Long.parseLong(value);
+				break;
+			case "--retained-budget":
+				retainedBudget = Long.parseLong(value);
+				break;
+			default:
+				System.out.println("Unknown option " + args[i]);
+				System.exit(2);
+			}
+		}
+		if (!mode.equals("words") && !mode.equals("phrases")) {
+			System.out.println("The soak test plays the words or phrases mode");
+			System.exit(2);
+		}
+		primeCorpora();
+		boolean passed = new SoakTest(mode, games, threads, players).run(guessBudget, gameBudget, retainedBudget);
+		System.exit(passed ? 0 : 1);
+	}
+}
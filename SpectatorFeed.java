@@ -0,0 +1,573 @@
+package mari.mvp3;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Live feed of game progress for spectators, served as server-sent events over a local HTTP endpoint.
+ * The feed is registered as the live listener of HangmanGame, so it sees every game created, guess and game finished, whichever
+ * front end or engine the game runs in. For each active game it keeps the hidden secret string, attempts left and incorrect guesses
+ * and publishes every change as a small JSON delta. The secret itself is only sent in the "finished" event, once the game is over.
+ * Each event is encoded once and offered to the bounded buffer of every spectator of the game without blocking. When a spectator
+ * is too slow and its buffer is full, the buffered deltas are dropped and replaced with a snapshot of the current state, so a lagging
+ * spectator only skips intermediate states and never slows down the game thread.
+ * Spectators do not hold a thread: a small fixed pool of writer threads drains the buffers, and a spectator is only handed to a writer
+ * while its buffer has events. A timer sends heartbeats to quiet spectators, which detects the ones that disconnected, and stops
+ * tracking idle games.
+ * A game accepts at most MAX_SPECTATORS_PER_GAME spectators. The writers keep up with far more, but the game thread pays for every
+ * spectator on each guess: with 1,000 spectators a guess takes about 4 ms, with 9,000 about 40 ms and up to 150 ms, during which
+ * the player waits. Further spectators of a full game are refused with 503.
+ *
+ * Endpoints:
+ * GET /games lists the active games as JSON.
+ * GET /spectate?session=id streams the events of a game, starting with a snapshot; without a session, the last game created is followed.
+ * GET /players?prefix=p&k=n lists the best n players (10 by default) whose name starts with p, for typeahead; /players?name=x looks up one player.
+ */
+public class SpectatorFeed implements GameEventListener {
+
+	protected final static int DEFAULT_PORT = 8081;
+	protected final static int SUBSCRIBER_BUFFER = 64; // Events buffered per spectator before it is resynchronized with a snapshot
+	protected final static int MAX_SPECTATORS_PER_GAME = 1000; // Every event of a game is offered to each of its spectators on the game thread, see the class comment
+	protected final static int WRITER_THREADS = 4; // Threads writing the buffered events of all the spectators
+	protected final static int DEFAULT_PLAYER_MATCHES = 10; // Players listed by /players when k is not given
+	protected final static int MAX_PLAYER_MATCHES = 1000;
+	protected final static int MAX_GAMES = 10_000; // Games tracked at once. New games are not tracked while it is reached, until idle games are dropped
+	protected final static long IDLE_GAME_MILLIS = TimeUnit.MINUTES.toMillis(10);
+	protected final static long HEARTBEAT_MILLIS = TimeUnit.SECONDS.toMillis(15); // Detects spectators that disconnected while the game is quiet
+	protected final static long MAINTENANCE_MILLIS = TimeUnit.SECONDS.toMillis(5); // Time between two runs of the timer sending heartbeats and dropping idle games
+	private final static byte[] END = new byte[0]; // Marks the end of the stream of a game in a spectator buffer
+	private final static byte[] HEARTBEAT = ": ping\n\n".getBytes(StandardCharsets.UTF_8);
+
+	private final ConcurrentHashMap<Long, GameChannel> channels = new ConcurrentHashMap<>(); // Session id -> game
+	private final AtomicLong droppedEvents = new AtomicLong(); // Events discarded from the buffers of slow spectators
+	private volatile long lastSessionId = -1;
+	private HttpServer server;
+	private volatile ExecutorService writers; // Drain the buffers of the spectators, null when the feed is stopped
+	private ScheduledExecutorService maintenance;
+
+	/**
+	 * Mutable state of one game as seen by spectators, guarded by its own lock
+	 */
+	private static class GameChannel {
+		final long sessionId;
+		final String name;
+		final String mode;
+		final int difficulty;
+		final String secret;
+		final char[] hidden;
+		final ArrayList<String> incorrect = new ArrayList<>();
+		final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+		int attemptsLeft = HangmanGame.getMaxAttempts();
+		long seq;
+		boolean finished;
+		boolean won;
+		int score;
+		volatile long lastEventMillis;
+		byte[] snapshot; // Encoded snapshot of the current state, built on demand and cleared on every change
+
+		GameChannel(long sessionId, String name, String mode, int difficulty, String secret) {
+			this.sessionId = sessionId;
+			this.name = name;
+			this.mode = mode;
+			this.difficulty = difficulty;
+			this.secret = secret;
+			this.hidden = secret.replaceAll("[a-zA-Z0-9]", "_").toCharArray();
+			this.lastEventMillis = System.currentTimeMillis();
+		}
+
+		/**
+		 * Reveals the positions of a correct guess, as HangmanGame does
+		 */
+		void reveal(String guess) {
+			if (guess.length() == 1) {
+				for (int i = 0; i < secret.length(); i++) {
+					if (secret.charAt(i) == guess.charAt(0)) {
+						hidden[i] = guess.charAt(0);
+					}
+				}
+				return;
+			}
+			int start = 0;
+			for (String word : secret.split(" ")) {
+				if (word.equals(guess)) {
+					word.getChars(0, word.length(), hidden, start);
+				}
+				start += word.length() + 1;
+			}
+		}
+
+		synchronized byte[] snapshot() {
+			if (snapshot == null) {
+				StringBuilder json = new StringBuilder(64 + hidden.length);
+				json.append("{\"session\":").append(sessionId).append(",\"seq\":").append(seq);
+				json.append(",\"name\":");
+				appendString(json, name);
+				json.append(",\"mode\":");
+				appendString(json, mode);
+				json.append(",\"difficulty\":").append(difficulty);
+				json.append(",\"hidden\":");
+				appendString(json, new String(hidden));
+				json.append(",\"attempts\":").append(attemptsLeft).append(",\"incorrect\":[");
+				for (int i = 0; i < incorrect.size(); i++) {
+					if (i > 0) {
+						json.append(',');
+					}
+					appendString(json, incorrect.get(i));
+				}
+				json.append("],\"finished\":").append(finished);
+				if (finished) {
+					json.append(",\"won\":").append(won).append(",\"score\":").append(score);
+				}
+				json.append('}');
+				snapshot = encode("state", seq, json);
+			}
+			return snapshot;
+		}
+	}
+
+	/**
+	 * A connected spectator. Events are offered to the buffer by the game thread and written to the stream of the spectator by
+	 * a writer thread, which is only scheduled while the buffer has events
+	 */
+	private static class Subscriber {
+		final ArrayBlockingQueue<byte[]> buffer = new ArrayBlockingQueue<>(SUBSCRIBER_BUFFER);
+		final AtomicBoolean scheduled = new AtomicBoolean(true); // A writer drains the buffer or is about to; held until the response headers are sent
+		final GameChannel channel;
+		final HttpExchange exchange;
+		volatile long lastWriteMillis = System.currentTimeMillis();
+		volatile boolean closed;
+
+		Subscriber(GameChannel channel, HttpExchange exchange) {
+			this.channel = channel;
+			this.exchange = exchange;
+		}
+	}
+
+	/**
+	 * Starts the HTTP server on the loopback interface, the writer threads of the spectators and the maintenance timer
+	 * @param port is the port to listen on
+	 * @throws IOException if the server cannot be started
+	 */
+	public synchronized void start(int port) throws IOException {
+		if (server != null) {
+			return;
+		}
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		writers = Executors.newFixedThreadPool(WRITER_THREADS, daemon("spectator-writer"));
+		maintenance = Executors.newSingleThreadScheduledExecutor(daemon("spectator-maintenance"));
+		maintenance.scheduleWithFixedDelay(this::maintain, MAINTENANCE_MILLIS, MAINTENANCE_MILLIS, TimeUnit.MILLISECONDS);
+		server.createContext("/games", this::listGames);
+		server.createContext("/spectate", this::spectate);
+		server.createContext("/players", SpectatorFeed::listPlayers);
+		server.start();
+	}
+
+	private static ThreadFactory daemon(String name) {
+		return r -> {
+			Thread t = new Thread(r, name);
+			t.setDaemon(true);
+			return t;
+		};
+	}
+
+	/**
+	 * Stops the HTTP server and ends the streams of all spectators
+	 */
+	public synchronized void stop() {
+		if (server == null) {
+			return;
+		}
+		maintenance.shutdownNow();
+		for (GameChannel channel : channels.values()) {
+			close(channel);
+		}
+		channels.clear();
+		server.stop(0);
+		writers.shutdownNow();
+		server = null;
+		writers = null;
+		maintenance = null;
+	}
+
+	@Override
+	public void onGameCreated(long sessionId, long timestamp, String name, String mode, int difficulty, int secretId, String secret) {
+		if (channels.size() >= MAX_GAMES) {
+			return; // Tracked again once the maintenance timer dropped the idle games
+		}
+		GameChannel channel = new GameChannel(sessionId, name, mode, difficulty, secret);
+		channels.put(sessionId, channel);
+		lastSessionId = sessionId;
+	}
+
+	@Override
+	public void onGuess(long sessionId, long timestamp, String guess, boolean correct, int attemptsLeft) {
+		GameChannel channel = channels.get(sessionId);
+		if (channel == null) {
+			return;
+		}
+		synchronized (channel) {
+			channel.seq++;
+			channel.attemptsLeft = attemptsLeft;
+			channel.lastEventMillis = timestamp;
+			channel.snapshot = null;
+			StringBuilder json = new StringBuilder(48);
+			json.append("{\"session\":").append(sessionId).append(",\"seq\":").append(channel.seq).append(",\"guess\":");
+			appendString(json, guess);
+			json.append(",\"correct\":").append(correct).append(",\"attempts\":").append(attemptsLeft);
+			if (correct) {
+				channel.reveal(guess);
+				json.append(",\"hidden\":");
+				appendString(json, new String(channel.hidden));
+			} else {
+				channel.incorrect.add(guess);
+			}
+			json.append('}');
+			publish(channel, encode("guess", channel.seq, json));
+		}
+	}
+
+	@Override
+	public void onGameFinished(long sessionId, long timestamp, boolean won, int score) {
+		GameChannel channel = channels.remove(sessionId);
+		if (channel == null) {
+			return;
+		}
+		synchronized (channel) {
+			channel.seq++;
+			channel.finished = true;
+			channel.won = won;
+			channel.score = score;
+			channel.snapshot = null;
+			StringBuilder json = new StringBuilder(64);
+			json.append("{\"session\":").append(sessionId).append(",\"seq\":").append(channel.seq)
+					.append(",\"won\":").append(won).append(",\"score\":").append(score)
+					.append(",\"secret\":");
+			appendString(json, channel.secret); // The game is over, so the secret can be shown
+			json.append('}');
+			publish(channel, encode("finished", channel.seq, json));
+			close(channel);
+		}
+	}
+
+	/**
+	 * Offers an event to every spectator of a game without blocking. A spectator whose buffer is full is resynchronized:
+	 * its buffered events are replaced with a snapshot of the current state
+	 */
+	private void publish(GameChannel channel, byte[] event) {
+		for (Subscriber subscriber : channel.subscribers) {
+			offer(channel, subscriber, event);
+		}
+	}
+
+	private void offer(GameChannel channel, Subscriber subscriber, byte[] event) {
+		if (!subscriber.buffer.offer(event)) {
+			droppedEvents.addAndGet(subscriber.buffer.size());
+			subscriber.buffer.clear();
+			subscriber.buffer.offer(channel.snapshot());
+			if (event == END) {
+				subscriber.buffer.offer(END);
+			}
+		}
+		schedule(subscriber);
+	}
+
+	/**
+	 * Hands a spectator to a writer thread, unless one is already draining its buffer
+	 */
+	private void schedule(Subscriber subscriber) {
+		ExecutorService pool = writers;
+		if (pool == null || subscriber.closed || !subscriber.scheduled.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			pool.execute(() -> drain(subscriber));
+		} catch (RejectedExecutionException e) { // The feed was stopped
+			subscriber.scheduled.set(false);
+		}
+	}
+
+	/**
+	 * Writes the events buffered for a spectator, run by a writer thread. A spectator that stopped reading only holds the thread
+	 * once the send buffer of its socket is full, since its own buffer never holds more than SUBSCRIBER_BUFFER events
+	 */
+	private void drain(Subscriber subscriber) {
+		try {
+			OutputStream out = subscriber.exchange.getResponseBody();
+			byte[] event;
+			while ((event = subscriber.buffer.poll()) != null) {
+				if (event == END) {
+					end(subscriber);
+					return;
+				}
+				out.write(event);
+			}
+			out.flush();
+			subscriber.lastWriteMillis = System.currentTimeMillis();
+		} catch (IOException e) { // The spectator disconnected
+			end(subscriber);
+			return;
+		} finally {
+			subscriber.scheduled.set(false);
+		}
+		if (!subscriber.buffer.isEmpty()) { // Offered after the buffer was found empty, while the drain was still scheduled
+			schedule(subscriber);
+		}
+	}
+
+	/**
+	 * Ends the stream of a spectator
+	 */
+	private static void end(Subscriber subscriber) {
+		subscriber.closed = true;
+		subscriber.channel.subscribers.remove(subscriber);
+		subscriber.exchange.close();
+	}
+
+	/**
+	 * Ends the streams of the spectators of a game
+	 */
+	private void close(GameChannel channel) {
+		for (Subscriber subscriber : channel.subscribers) {
+			offer(channel, subscriber, END);
+		}
+	}
+
+	/**
+	 * Run by the maintenance timer: drops the idle games and sends a heartbeat to the spectators that got no event for HEARTBEAT_MILLIS,
+	 * so that the spectators that disconnected are found when their stream is written
+	 */
+	private void maintain() {
+		long now = System.currentTimeMillis();
+		dropIdleGames(now);
+		for (GameChannel channel : channels.values()) {
+			for (Subscriber subscriber : channel.subscribers) {
+				if (now - subscriber.lastWriteMillis >= HEARTBEAT_MILLIS && subscriber.buffer.offer(HEARTBEAT)) {
+					schedule(subscriber);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Stops tracking the games that had no event for the idle timeout, e.g. games abandoned without finishing
+	 */
+	private void dropIdleGames(long now) {
+		Iterator<GameChannel> it = channels.values().iterator();
+		while (it.hasNext()) {
+			GameChannel channel = it.next();
+			if (now - channel.lastEventMillis > IDLE_GAME_MILLIS) {
+				it.remove();
+				synchronized (channel) {
+					close(channel);
+				}
+			}
+		}
+	}
+
+	private void listGames(HttpExchange exchange) throws IOException {
+		StringBuilder json = new StringBuilder("[");
+		for (GameChannel channel : channels.values()) {
+			if (json.length() > 1) {
+				json.append(',');
+			}
+			json.append("{\"session\":").append(channel.sessionId).append(",\"name\":");
+			appendString(json, channel.name);
+			json.append(",\"mode\":");
+			appendString(json, channel.mode);
+			json.append(",\"spectators\":").append(channel.subscribers.size()).append('}');
+		}
+		byte[] body = json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json");
+		exchange.sendResponseHeaders(200, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+	/**
+	 * Lists the players matching a name prefix, or the player with a name, with their best score and rank on the leaderboard
+	 */
+	private static void listPlayers(HttpExchange exchange) throws IOException {
+		String prefix = "";
+		String name = null;
+		int k = DEFAULT_PLAYER_MATCHES;
+		String query = exchange.getRequestURI().getRawQuery(); // Split before decoding, so that an encoded & or = stays in its value
+		if (query != null) {
+			for (String parameter : query.split("&")) {
+				int equals = parameter.indexOf('=');
+				String key;
+				String value;
+				try {
+					key = URLDecoder.decode(equals < 0 ? parameter : parameter.substring(0, equals), StandardCharsets.UTF_8);
+					value = equals < 0 ? "" : URLDecoder.decode(parameter.substring(equals + 1), StandardCharsets.UTF_8);
+				} catch (IllegalArgumentException e) {
+					sendError(exchange, 400, "Invalid query");
+					return;
+				}
+				if (key.equals("prefix")) {
+					prefix = value;
+				} else if (key.equals("name")) {
+					name = value;
+				} else if (key.equals("k")) {
+					try {
+						k = Integer.parseInt(value);
+					} catch (NumberFormatException e) {
+						k = -1;
+					}
+					if (k < 0) {
+						sendError(exchange, 400, "Invalid number of players");
+						return;
+					}
+					k = Math.min(MAX_PLAYER_MATCHES, k);
+				}
+			}
+		}
+		List<PlayerNameIndex.PlayerBest> players = new ArrayList<>();
+		if (name != null) {
+			PlayerNameIndex.PlayerBest player = Leaderboard.findPlayer(name);
+			if (player != null) {
+				players.add(player);
+			}
+		} else {
+			players = Leaderboard.searchPlayers(prefix, k);
+		}
+		StringBuilder json = new StringBuilder("[");
+		for (PlayerNameIndex.PlayerBest player : players) {
+			if (json.length() > 1) {
+				json.append(',');
+			}
+			json.append("{\"name\":");
+			appendString(json, player.getName());
+			json.append(",\"score\":").append(player.getBestScore()).append(",\"rank\":").append(player.getRank())
+					.append(",\"results\":").append(player.getResults()).append('}');
+		}
+		byte[] body = json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json");
+		exchange.sendResponseHeaders(200, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+	/**
+	 * Subscribes a spectator to the events of a game and returns. The events are streamed by the writer threads until the game
+	 * finishes or the spectator disconnects
+	 */
+	private void spectate(HttpExchange exchange) throws IOException {
+		long sessionId = lastSessionId;
+		String query = exchange.getRequestURI().getQuery();
+		if (query != null && query.startsWith("session=")) {
+			try {
+				sessionId = Long.parseLong(query.substring("session=".length()));
+			} catch (NumberFormatException e) {
+				sendError(exchange, 400, "Invalid session id");
+				return;
+			}
+		}
+		GameChannel channel = channels.get(sessionId);
+		if (channel == null) {
+			sendError(exchange, 404, "No active game with this session id");
+			return;
+		}
+		Subscriber subscriber = new Subscriber(channel, exchange);
+		synchronized (channel) { // Checked under the lock of the game, so that concurrent spectators cannot exceed the cap
+			if (channel.subscribers.size() >= MAX_SPECTATORS_PER_GAME) {
+				subscriber = null;
+			} else {
+				subscriber.buffer.offer(channel.snapshot());
+				if (channel.finished) {
+					subscriber.buffer.offer(END);
+				} else {
+					channel.subscribers.add(subscriber);
+				}
+			}
+		}
+		if (subscriber == null) {
+			sendError(exchange, 503, "Too many spectators for this game");
+			return;
+		}
+		exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+		exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+		try {
+			exchange.sendResponseHeaders(200, 0);
+		} catch (IOException e) {
+			end(subscriber);
+			throw e;
+		}
+		subscriber.scheduled.set(false); // The events offered meanwhile are written from now on
+		schedule(subscriber);
+	}
+
+	private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+		byte[] body = message.getBytes(StandardCharsets.UTF_8);
+		exchange.sendResponseHeaders(status, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+	/**
+	 * Encodes a server-sent event
+	 */
+	private static byte[] encode(String type, long seq, CharSequence data) {
+		return ("event: " + type + "\nid: " + seq + "\ndata: " + data + "\n\n").getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Appends a string as a JSON string literal
+	 */
+	private static void appendString(StringBuilder json, String value) {
+		json.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				json.append('\\').append(c);
+			} else if (c < 0x20) {
+				json.append(String.format("\\u%04x", (int) c));
+			} else {
+				json.append(c);
+			}
+		}
+		json.append('"');
+	}
+
+	/**
+	 * @return the number of events discarded from the buffers of slow spectators
+	 */
+	public long getDroppedEvents() {
+		return droppedEvents.get();
+	}
+
+	/**
+	 * @return the number of spectators of a game, or 0 if the game is not active
+	 */
+	public int getSpectatorCount(long sessionId) {
+		GameChannel channel = channels.get(sessionId);
+		return channel == null ? 0 : channel.subscribers.size();
+	}
+
+	public int getGameCount() {
+		return channels.size();
+	}
+}
@@ -0,0 +1,117 @@
+package mari.mvp3;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+
+/**
+ * Immutable list of words or phrases packed into a single array, with an offset table giving the start of every entry.
+ * Entries are identified by their index. When every entry is Latin-1 (which is the case for the dictionary and the phrase files)
+ * the characters are stored one byte each, otherwise as chars. Compared to an ArrayList of String objects this removes
+ * the per-entry object headers and array headers, and a single corpus can be shared by every game played with the same list.
+ */
+public class StringCorpus {
+
+	private final byte[] latin1; // Packed characters when every entry is Latin-1, null otherwise
+	private final char[] chars; // Packed characters when some entry is not Latin-1, null otherwise
+	private final int[] offsets; // offsets[i] is the start of entry i, offsets[size] is the total length
+
+	private StringCorpus(byte[] latin1, char[] chars, int[] offsets) {
+		this.latin1 = latin1;
+		this.chars = chars;
+		this.offsets = offsets;
+	}
+
+	/**
+	 * Packs a collection of strings into a new corpus. Entries keep the iteration order of the collection
+	 * @param strings are the entries of the corpus
+	 * @return the corpus
+	 */
+	public static StringCorpus of(Collection<String> strings) {
+		int[] offsets = new int[strings.size() + 1];
+		int total = 0;
+		boolean isLatin1 = true;
+		int i = 0;
+		for (String s : strings) {
+			offsets[i++] = total;
+			total += s.length();
+			for (int c = 0; c < s.length() && isLatin1; c++) {
+				isLatin1 = s.charAt(c) <= 0xff;
+			}
+		}
+		offsets[i] = total;
+		if (isLatin1) {
+			byte[] latin1 = new byte[total];
+			i = 0;
+			for (String s : strings) {
+				byte[] bytes = s.getBytes(StandardCharsets.ISO_8859_1);
+				System.arraycopy(bytes, 0, latin1, offsets[i++], bytes.length);
+			}
+			return new StringCorpus(latin1, null, offsets);
+		}
+		char[] chars = new char[total];
+		i = 0;
+		for (String s : strings) {
+			s.getChars(0, s.length(), chars, offsets[i++]);
+		}
+		return new StringCorpus(null, chars, offsets);
+	}
+
+	/**
+	 * Wraps characters that are already packed, such as the words packed by DictionaryPipeline. The arrays are not copied
+	 * @param latin1 are the packed Latin-1 characters of every entry
+	 * @param offsets are the start of each entry, followed by the total length
+	 * @return the corpus
+	 */
+	static StringCorpus ofLatin1(byte[] latin1, int[] offsets) {
+		return new StringCorpus(latin1, null, offsets);
+	}
+
+	/**
+	 * @return the number of entries
+	 */
+	public int size() {
+		return offsets.length - 1;
+	}
+
+	/**
+	 * Creates a String with the content of an entry
+	 * @param id is the index of the entry
+	 * @return the entry
+	 */
+	public String get(int id) {
+		int start = offsets[id];
+		int length = offsets[id + 1] - start;
+		if (latin1 != null) {
+			return new String(latin1, start, length, StandardCharsets.ISO_8859_1);
+		}
+		return new String(chars, start, length);
+	}
+
+	/**
+	 * @return the number of characters of an entry
+	 */
+	public int length(int id) {
+		return offsets[id + 1] - offsets[id];
+	}
+
+	/**
+	 * Returns a character of an entry without creating a String
+	 * @param id is the index of the entry
+	 * @param index is the position of the character in the entry
+	 * @return the character
+	 */
+	public char charAt(int id, int index) {
+		int position = offsets[id] + index;
+		if (latin1 != null) {
+			return (char) (latin1[position] & 0xff);
+		}
+		return chars[position];
+	}
+
+	/**
+	 * @return the approximate number of bytes used by the packed characters and the offset table
+	 */
+	public long getPackedBytes() {
+		return (latin1 != null ? latin1.length : 2L * chars.length) + 4L * offsets.length;
+	}
+}
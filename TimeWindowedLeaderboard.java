@@ -0,0 +1,175 @@
+package mari.mvp3;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Leaderboard results bucketed by the day the game ended (UTC). The buckets form a ring with one bucket per day of the
+ * retention period, and every bucket keeps only its own best results, sorted in descending order of score.
+ * A windowed query such as "today" or "last 7 days" therefore merges only the buckets of the days in the window,
+ * instead of sorting every result ever recorded. Buckets of days that fell out of the retention period are reused
+ * for new days or cleared with evictExpired().
+ */
+public class TimeWindowedLeaderboard {
+
+	protected final static long DAY_MS = 24L * 60 * 60 * 1000;
+	protected final static int DEFAULT_RETENTION_DAYS = 31;
+	protected final static int DEFAULT_RESULTS_PER_DAY = 100;
+
+	private final int retentionDays; // Number of buckets in the ring
+	private final int resultsPerDay; // Maximum number of results kept in a bucket
+	private final DayBucket[] ring;
+	private long latestDay = Long.MIN_VALUE; // Most recent day a result was added for
+
+	/**
+	 * Best results of a single day, sorted in descending order of score
+	 */
+	private static class DayBucket {
+		long day = Long.MIN_VALUE; // Days since the epoch, or Long.MIN_VALUE if the bucket is empty
+		LeaderboardResult[] top;
+		int size;
+
+		DayBucket(int capacity) {
+			this.top = new LeaderboardResult[capacity];
+		}
+
+		void reset(long day) {
+			this.day = day;
+			Arrays.fill(top, 0, size, null);
+			this.size = 0;
+		}
+
+		/**
+		 * Inserts a result after the results with the same or higher score. The lowest result is dropped when the bucket is full
+		 */
+		void add(LeaderboardResult r) {
+			if (size == top.length && top[size - 1].getScore() >= r.getScore()) {
+				return;
+			}
+			int low = 0;
+			int high = size;
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (top[middle].getScore() >= r.getScore()) {
+					low = middle + 1;
+				} else {
+					high = middle;
+				}
+			}
+			int moved = Math.min(size, top.length - 1) - low;
+			System.arraycopy(top, low, top, low + 1, moved);
+			top[low] = r;
+			size = Math.min(size + 1, top.length);
+		}
+	}
+
+	public TimeWindowedLeaderboard() {
+		this(DEFAULT_RETENTION_DAYS, DEFAULT_RESULTS_PER_DAY);
+	}
+
+	/**
+	 * @param retentionDays is the number of days results are kept for, which is also the longest window that can be queried
+	 * @param resultsPerDay is the number of best results kept per day, which is also the largest k that can be queried exactly
+	 */
+	public TimeWindowedLeaderboard(int retentionDays, int resultsPerDay) {
+		this.retentionDays = retentionDays;
+		this.resultsPerDay = resultsPerDay;
+		this.ring = new DayBucket[retentionDays];
+		for (int i = 0; i < retentionDays; i++) {
+			ring[i] = new DayBucket(resultsPerDay);
+		}
+	}
+
+	protected static long dayOf(long timestamp) {
+		return Math.floorDiv(timestamp, DAY_MS);
+	}
+
+	/**
+	 * Adds a result to the bucket of the day its game ended. Results older than the retention period are ignored
+	 * @param r is the result to add
+	 */
+	public synchronized void add(LeaderboardResult r) {
+		long day = dayOf(r.getTimestamp());
+		if (latestDay != Long.MIN_VALUE && day <= latestDay - retentionDays) {
+			return;
+		}
+		DayBucket bucket = ring[(int) Math.floorMod(day, (long) retentionDays)];
+		if (bucket.day != day) {
+			if (bucket.day > day) { // The slot already holds a more recent day, so this day has expired
+				return;
+			}
+			bucket.reset(day);
+		}
+		bucket.add(r);
+		latestDay = Math.max(latestDay, day);
+	}
+
+	/**
+	 * Returns the best results of the games that ended in the last days, the current day included
+	 * @param days is the length of the window in days, at most the retention period
+	 * @param k is the maximum number of results to return
+	 * @param now is the current epoch time in milliseconds
+	 * @return the best results from highest to lowest score
+	 */
+	public synchronized ArrayList<LeaderboardResult> getTop(int days, int k, long now) {
+		long today = dayOf(now);
+		long firstDay = today - Math.min(days, retentionDays) + 1;
+		ArrayList<List<LeaderboardResult>> runs = new ArrayList<>();
+		for (DayBucket bucket : ring) {
+			if (bucket.day >= firstDay && bucket.day <= today && bucket.size > 0) {
+				runs.add(Arrays.asList(bucket.top).subList(0, bucket.size));
+			}
+		}
+		return LeaderboardMerger.mergeSorted(runs, k);
+	}
+
+	/**
+	 * @return the best results of the games that ended today (UTC)
+	 */
+	public ArrayList<LeaderboardResult> getTopToday(int k) {
+		return getTop(1, k, System.currentTimeMillis());
+	}
+
+	/**
+	 * @return the best results of the games that ended in the last seven days (UTC), today included
+	 */
+	public ArrayList<LeaderboardResult> getTopThisWeek(int k) {
+		return getTop(7, k, System.currentTimeMillis());
+	}
+
+	/**
+	 * Clears the buckets of the days that fell out of the retention period, releasing the results they hold
+	 * @param now is the current epoch time in milliseconds
+	 * @return the number of buckets cleared
+	 */
+	public synchronized int evictExpired(long now) {
+		long firstDay = dayOf(now) - retentionDays + 1;
+		int evicted = 0;
+		for (DayBucket bucket : ring) {
+			if (bucket.day != Long.MIN_VALUE && bucket.day < firstDay) {
+				bucket.reset(Long.MIN_VALUE);
+				evicted++;
+			}
+		}
+		return evicted;
+	}
+
+	/**
+	 * Removes every result from every bucket
+	 */
+	public synchronized void clear() {
+		for (DayBucket bucket : ring) {
+			bucket.reset(Long.MIN_VALUE);
+		}
+		latestDay = Long.MIN_VALUE;
+	}
+
+	public int getRetentionDays() {
+		return retentionDays;
+	}
+
+	public int getResultsPerDay() {
+		return resultsPerDay;
+	}
+}
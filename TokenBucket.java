@@ -0,0 +1,111 @@
+package mari.mvp3;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket used to rate limit guesses. It is implemented as a generic cell rate algorithm: the whole state is
+ * the theoretical arrival time of the next request, kept in a single AtomicLong, so acquiring a token is one compare-and-set
+ * and never allocates. A request is accepted if it does not arrive more than the burst tolerance ahead of its theoretical arrival time.
+ */
+public class TokenBucket {
+
+	private final long intervalNanos; // Time it takes to refill one token
+	private final long burstToleranceNanos; // How far ahead of the refill rate requests may run, i.e. (burst - 1) tokens
+	private final AtomicLong theoreticalArrival;
+
+	/**
+	 * @param permitsPerSecond is the sustained number of requests per second
+	 * @param burst is the number of requests that may be accepted at once when the bucket is full
+	 */
+	public TokenBucket(double permitsPerSecond, int burst) {
+		if (permitsPerSecond <= 0 || burst < 1) {
+			throw new IllegalArgumentException("The rate must be positive and the burst at least 1");
+		}
+		this.intervalNanos = Math.max(1, (long) (1_000_000_000L / permitsPerSecond));
+		this.burstToleranceNanos = this.intervalNanos * (burst - 1);
+		this.theoreticalArrival = new AtomicLong(System.nanoTime());
+	}
+
+	/**
+	 * Takes one token if one is available
+	 * @return true if the request is accepted; false if it exceeds the rate limit
+	 */
+	public boolean tryAcquire() {
+		return tryAcquire(System.nanoTime());
+	}
+
+	/**
+	 * Takes one token if one is available at the given time
+	 * @param nowNanos is the current System.nanoTime()
+	 * @return true if the request is accepted; false if it exceeds the rate limit
+	 */
+	public boolean tryAcquire(long nowNanos) {
+		while (true) {
+			long arrival = theoreticalArrival.get();
+			long start = arrival - nowNanos > 0 ? arrival : nowNanos;
+			if (start - nowNanos > burstToleranceNanos) {
+				return false;
+			}
+			if (theoreticalArrival.compareAndSet(arrival, start + intervalNanos)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Takes as many tokens as are available at the given time, up to the number requested. Used for batches of guesses,
+	 * so that a batch larger than the tokens available is partly accepted instead of rejected
+	 * @param permits is the number of tokens requested
+	 * @param nowNanos is the current System.nanoTime()
+	 * @return the number of tokens taken, from 0 to permits
+	 */
+	public int tryAcquireUpTo(int permits, long nowNanos) {
+		if (permits <= 0) {
+			return 0;
+		}
+		while (true) {
+			long arrival = theoreticalArrival.get();
+			long start = arrival - nowNanos > 0 ? arrival : nowNanos;
+			long slack = burstToleranceNanos - (start - nowNanos);
+			if (slack < 0) {
+				return 0;
+			}
+			int granted = (int) Math.min(permits, slack / intervalNanos + 1);
+			if (theoreticalArrival.compareAndSet(arrival, start + intervalNanos * granted)) {
+				return granted;
+			}
+		}
+	}
+
+	/**
+	 * Gives back tokens taken at the given time by a request that was rejected afterwards, e.g. by another bucket.
+	 * The bucket never holds more than its burst
+	 * @param permits is the number of tokens given back
+	 * @param nowNanos is the current System.nanoTime()
+	 */
+	public void release(int permits, long nowNanos) {
+		if (permits <= 0) {
+			return;
+		}
+		while (true) {
+			long arrival = theoreticalArrival.get();
+			if (arrival - nowNanos <= 0) {
+				return; // Already full
+			}
+			long released = arrival - intervalNanos * permits;
+			if (released - nowNanos < 0) {
+				released = nowNanos;
+			}
+			if (theoreticalArrival.compareAndSet(arrival, released)) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * @return true if the bucket is full again, in which case it behaves exactly like a new bucket and can be discarded
+	 */
+	public boolean isFull(long nowNanos) {
+		return theoreticalArrival.get() - nowNanos <= 0;
+	}
+}
@@ -0,0 +1,307 @@
+package mari.mvp3;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A round of tournament play: every player who joins races on the same secret, with their own guesses and attempts.
+ * The secret and its index are built once in a TournamentSecret and shared read-only; each player only holds a small
+ * TournamentPlayer. Players are ranked in the order they solve the secret, through an atomic counter and a concurrent
+ * sorted map, so finishing players never contend on the Leaderboard. The score of a winner grows with the length of the
+ * secret and with an early finish.
+ * There is one open tournament per corpus. It accepts players for JOIN_WINDOW_MILLIS after the first one joins, or until it has
+ * MAX_PLAYERS, then it is closed and the next tournament becomes the open one. Players are identified by their session, not by their
+ * display name. A player who plays again while the tournament they played is still open joins the next tournament, which is created
+ * once and shared by every such player, so the open tournament stays open for the players who have not played it yet.
+ */
+public class Tournament {
+
+	protected final static int POINTS_PER_WORD = 5; // Same as the "guess phrase" mode
+	protected final static int FINISH_BONUS_PLACES = 10; // The first player to finish gets 10 bonus points, the tenth 1
+	protected final static long JOIN_WINDOW_MILLIS = 60_000; // Time players can join after the first player joined
+	protected final static int MAX_PLAYERS = 1000; // Players of a tournament, after which it is closed
+
+	private final static ConcurrentHashMap<String, Tournament> openTournaments = new ConcurrentHashMap<>(); // Corpus key -> open tournament
+	private final static AtomicLong nextTournamentId = new AtomicLong(1);
+
+	private final long tournamentId;
+	private final TournamentSecret secret;
+	private final int difficulty;
+	private final long openedAt;
+	private final ConcurrentHashMap<Long, TournamentPlayer> players = new ConcurrentHashMap<>(); // Player session -> player
+	private final AtomicInteger seats = new AtomicInteger(); // Players admitted, at most MAX_PLAYERS
+	private volatile long firstJoinAt; // Time the first player joined, 0 until then
+	private volatile boolean closed; // No player can join anymore
+	private final AtomicReference<Tournament> next = new AtomicReference<>(); // Tournament joined by the players of this one who play again
+	private final AtomicInteger winners = new AtomicInteger(); // Players who solved the secret, gives the next finish place
+	private final AtomicInteger losers = new AtomicInteger(); // Players who ran out of attempts
+	private final ConcurrentSkipListMap<Integer, LeaderboardResult> ranking = new ConcurrentSkipListMap<>(); // Finish place -> result
+
+	/**
+	 * Opens a tournament on a secret string
+	 * @param secret is the shared secret
+	 * @param difficulty is the difficulty level of the tournament
+	 */
+	public Tournament(TournamentSecret secret, int difficulty) {
+		this.tournamentId = nextTournamentId.getAndIncrement();
+		this.secret = secret;
+		this.difficulty = difficulty;
+		this.openedAt = System.currentTimeMillis();
+	}
+
+	/**
+	 * Returns the open tournament of a corpus, opening one if there is none
+	 * @param corpusKey identifies the corpus in the CorpusCache
+	 * @param corpus is the corpus the secret is chosen from
+	 * @param difficulty is the difficulty level
+	 * @return the open tournament
+	 */
+	public static Tournament getOpenTournament(String corpusKey, StringCorpus corpus, int difficulty) {
+		Tournament open = openTournaments.get(corpusKey);
+		if (open != null) {
+			return open;
+		}
+		Tournament created = new Tournament(chooseSecret(corpus), difficulty);
+		open = openTournaments.putIfAbsent(corpusKey, created);
+		return open != null ? open : created;
+	}
+
+	/**
+	 * Adds a player to the open tournament of a corpus. If the open tournament is closed, the next one becomes the open one.
+	 * If the player already joined the open tournament, they join the next one instead, without closing the open one
+	 * @param corpusKey identifies the corpus in the CorpusCache
+	 * @param corpus is the corpus the secrets are chosen from
+	 * @param difficulty is the difficulty level
+	 * @param playerId identifies the session of the player
+	 * @param name is the player name
+	 * @return the state of the player in the tournament joined, whose Tournament is given by getTournament()
+	 */
+	public static TournamentPlayer joinOpenTournament(String corpusKey, StringCorpus corpus, int difficulty, long playerId, String name) {
+		Tournament open = getOpenTournament(corpusKey, corpus, difficulty);
+		Tournament tournament = open;
+		while (true) {
+			if (tournament.isClosed()) {
+				if (tournament == open) {
+					// Moves the open tournament forward; if another thread already did, continues with the one it opened
+					Tournament following = tournament.getNext(corpus, difficulty);
+					openTournaments.replace(corpusKey, open, following);
+					open = getOpenTournament(corpusKey, corpus, difficulty);
+					tournament = open;
+				} else {
+					tournament = tournament.getNext(corpus, difficulty);
+				}
+				continue;
+			}
+			TournamentPlayer player = tournament.join(playerId, name);
+			if (player != null) {
+				return player;
+			}
+			tournament = tournament.getNext(corpus, difficulty); // Already joined, or closed meanwhile
+		}
+	}
+
+	/**
+	 * Returns the tournament that follows this one, creating it on the first call
+	 */
+	private Tournament getNext(StringCorpus corpus, int difficulty) {
+		Tournament following = next.get();
+		if (following == null) {
+			next.compareAndSet(null, new Tournament(chooseSecret(corpus), difficulty));
+			following = next.get();
+		}
+		return following;
+	}
+
+	/**
+	 * Chooses a random secret from a corpus, skipping the secrets that are too long to be tracked with a word mask
+	 */
+	private static TournamentSecret chooseSecret(StringCorpus corpus) {
+		Random random = new Random();
+		int id = random.nextInt(corpus.size());
+		for (int tries = 0; tries < corpus.size(); tries++) {
+			String candidate = corpus.get(id);
+			if (candidate.split(" ").length <= TournamentSecret.MAX_TOKENS) {
+				return new TournamentSecret(candidate.toLowerCase(), id);
+			}
+			id = (id + 1) % corpus.size();
+		}
+		throw new IllegalArgumentException("No secret of the corpus has at most " + TournamentSecret.MAX_TOKENS + " words");
+	}
+
+	/**
+	 * Adds a player to the tournament, unless it is closed. The first player to join starts the join window, and the
+	 * tournament is closed once the window is over or MAX_PLAYERS have joined
+	 * @param playerId identifies the session of the player
+	 * @param name is the player name
+	 * @return the state of the new player, or null if the tournament is closed or the player already joined it
+	 */
+	public TournamentPlayer join(long playerId, String name) {
+		if (isClosed() || players.containsKey(playerId)) {
+			return null;
+		}
+		if (seats.incrementAndGet() > MAX_PLAYERS) {
+			close();
+			return null;
+		}
+		TournamentPlayer player = new TournamentPlayer(this, name, HangmanGame.getMaxAttempts());
+		if (players.putIfAbsent(playerId, player) != null) {
+			seats.decrementAndGet();
+			return null;
+		}
+		if (firstJoinAt == 0) {
+			firstJoinAt = System.currentTimeMillis();
+		}
+		if (seats.get() == MAX_PLAYERS) {
+			close();
+		}
+		return player;
+	}
+
+	/**
+	 * Closes the tournament: players who already joined keep playing, and new players join the next tournament
+	 */
+	public void close() {
+		closed = true;
+	}
+
+	/**
+	 * @return true if no player can join anymore, because the tournament was closed or its join window is over
+	 */
+	public boolean isClosed() {
+		if (!closed && firstJoinAt != 0 && System.currentTimeMillis() - firstJoinAt >= JOIN_WINDOW_MILLIS) {
+			closed = true;
+		}
+		return closed;
+	}
+
+	/**
+	 * Applies a guess of a player, with the same rules as HangmanGame.submitGuess(). When the guess ends the game of the player,
+	 * the player is ranked and scored
+	 * @param player is a player of this tournament
+	 * @param guess is the letter or word guessed, in lower case
+	 * @return the outcome of the guess
+	 */
+	public GuessOutcome guess(TournamentPlayer player, String guess) {
+		synchronized (player) {
+			if (player.attemptsLeft == 0) {
+				return GuessOutcome.ALREADY_LOST;
+			}
+			if (secret.isSolved(player.guessMask, player.wordMask)) {
+				return GuessOutcome.ALREADY_WON;
+			}
+			if (guess.equals("")) {
+				return GuessOutcome.EMPTY;
+			}
+			GuessOutcome outcome;
+			if (guess.length() == 1) {
+				int symbol = TournamentSecret.symbolOf(guess.charAt(0));
+				if (symbol < 0) {
+					return GuessOutcome.INVALID;
+				}
+				long bit = 1L << symbol;
+				if ((player.guessMask & bit) != 0) {
+					return GuessOutcome.REPEATED;
+				}
+				player.guessMask |= bit;
+				outcome = secret.contains(symbol) ? GuessOutcome.CORRECT : GuessOutcome.INCORRECT;
+			} else {
+				long tokens = secret.tokensMatching(guess);
+				if (tokens != 0) {
+					if ((player.wordMask & tokens) == tokens) {
+						return GuessOutcome.REPEATED;
+					}
+					player.wordMask |= tokens;
+					outcome = GuessOutcome.CORRECT;
+				} else {
+					if (player.isMissedWord(guess)) {
+						return GuessOutcome.REPEATED;
+					}
+					player.addMissedWord(guess);
+					outcome = GuessOutcome.INCORRECT;
+				}
+			}
+			if (outcome == GuessOutcome.INCORRECT) {
+				player.attemptsLeft--;
+			}
+			boolean won = secret.isSolved(player.guessMask, player.wordMask);
+			if (won || player.attemptsLeft == 0) {
+				finish(player, won);
+			}
+			return outcome;
+		}
+	}
+
+	/**
+	 * Ranks a player who solved the secret or ran out of attempts
+	 */
+	private void finish(TournamentPlayer player, boolean won) {
+		player.finished = true;
+		if (!won) {
+			losers.incrementAndGet();
+			return;
+		}
+		player.place = winners.incrementAndGet();
+		player.score = calculateScore(secret, player.place);
+		ranking.put(player.place, new LeaderboardResult(player.name, player.score));
+	}
+
+	/**
+	 * Calculates the score of a player who solved the secret: five points per word of the secret, plus a bonus for the
+	 * first players to finish. Players who run out of attempts score zero
+	 * @param secret is the secret of the tournament
+	 * @param place is the finish place of the player, starting at 1
+	 * @return score
+	 */
+	protected static int calculateScore(TournamentSecret secret, int place) {
+		return secret.getTokenCount() * POINTS_PER_WORD + Math.max(0, FINISH_BONUS_PLACES + 1 - place);
+	}
+
+	/**
+	 * Returns the players who solved the secret, in finish order
+	 * @param k is the maximum number of results returned
+	 * @return the results of the first k players to finish
+	 */
+	public ArrayList<LeaderboardResult> getRanking(int k) {
+		ArrayList<LeaderboardResult> top = new ArrayList<>(Math.min(k, ranking.size()));
+		for (LeaderboardResult result : ranking.values()) {
+			if (top.size() == k) {
+				break;
+			}
+			top.add(result);
+		}
+		return top;
+	}
+
+	public long getTournamentId() {
+		return tournamentId;
+	}
+
+	public TournamentSecret getSecret() {
+		return secret;
+	}
+
+	public int getDifficulty() {
+		return difficulty;
+	}
+
+	public long getOpenedAt() {
+		return openedAt;
+	}
+
+	public int getPlayerCount() {
+		return players.size();
+	}
+
+	public int getWinnerCount() {
+		return winners.get();
+	}
+
+	public int getLoserCount() {
+		return losers.get();
+	}
+}
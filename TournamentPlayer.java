@@ -0,0 +1,75 @@
+package mari.mvp3;
+
+/**
+ * Mutable state of one player in a tournament. The secret and its index are shared through the Tournament, so a player only
+ * keeps which letters and words were guessed as bit masks, the attempts left and the place reached when finishing.
+ * Guesses of a player are applied by Tournament.guess() while holding the lock of this object.
+ */
+public class TournamentPlayer {
+
+	protected final Tournament tournament; // Tournament the player joined
+	protected final String name;
+	protected long guessMask; // Bit s is set if symbol s was guessed (see TournamentSecret.symbolOf())
+	protected long wordMask; // Bit t is set if token t of the secret was guessed as a word
+	protected String[] missedWords; // Incorrect word guesses, to detect repeated ones. Created on the first incorrect word guess
+	protected int attemptsLeft;
+	protected int place; // Finish place of a winner, 1 for the first player to solve the secret, 0 otherwise
+	protected int score;
+	protected boolean finished;
+
+	protected TournamentPlayer(Tournament tournament, String name, int attempts) {
+		this.tournament = tournament;
+		this.name = name;
+		this.attemptsLeft = attempts;
+	}
+
+	/**
+	 * Records an incorrect word guess. At most one word per attempt is recorded
+	 */
+	protected void addMissedWord(String word) {
+		if (missedWords == null) {
+			missedWords = new String[attemptsLeft];
+		}
+		for (int i = 0; i < missedWords.length; i++) {
+			if (missedWords[i] == null) {
+				missedWords[i] = word;
+				return;
+			}
+		}
+	}
+
+	protected boolean isMissedWord(String word) {
+		if (missedWords != null) {
+			for (String missed : missedWords) {
+				if (word.equals(missed)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	public Tournament getTournament() {
+		return tournament;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public synchronized int getAttemptsLeft() {
+		return attemptsLeft;
+	}
+
+	public synchronized int getPlace() {
+		return place;
+	}
+
+	public synchronized int getScore() {
+		return score;
+	}
+
+	public synchronized boolean isFinished() {
+		return finished;
+	}
+}
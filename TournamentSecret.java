@@ -0,0 +1,160 @@
+package mari.mvp3;
+
+import java.util.ArrayList;
+
+/**
+ * Secret string of a tournament, shared read-only by every player of the tournament. Everything a guess needs is computed
+ * once when the tournament opens: the words of the secret (its tokens), the set of letters and digits it contains as a bit mask,
+ * and for each letter or digit the positions where it occurs and the tokens that contain it. A player's progress is then fully
+ * described by two bit masks (letters guessed and words guessed), which is all a TournamentPlayer stores.
+ */
+public final class TournamentSecret {
+
+	protected final static int SYMBOLS = 36; // Letters a to z, then digits 0 to 9
+	protected final static int MAX_TOKENS = 64; // One bit per token in a long word mask
+
+	private final String secret;
+	private final int secretId; // Index of the secret string in the corpus it was chosen from
+	private final String[] tokens; // Words of the secret, split on single spaces
+	private final int[] tokenStarts; // Position of the first character of each token
+	private final long symbolMask; // Bit s is set if symbol s occurs in the secret
+	private final int[][] positions; // positions[s] are the positions of symbol s, empty if it does not occur
+	private final long[] symbolTokens; // Bit t of symbolTokens[s] is set if token t contains symbol s
+	private final String hiddenTemplate; // The secret with every letter and digit replaced by an underscore
+
+	/**
+	 * @param secret is the secret string, in lower case with words separated by single spaces
+	 * @param secretId is the index of the secret string in its corpus
+	 * @throws IllegalArgumentException if the secret has more than MAX_TOKENS words
+	 */
+	public TournamentSecret(String secret, int secretId) {
+		this.secret = secret;
+		this.secretId = secretId;
+		this.tokens = secret.split(" ");
+		if (tokens.length > MAX_TOKENS) {
+			throw new IllegalArgumentException("A tournament secret cannot have more than " + MAX_TOKENS + " words");
+		}
+		this.tokenStarts = new int[tokens.length];
+		for (int t = 1; t < tokens.length; t++) {
+			tokenStarts[t] = tokenStarts[t - 1] + tokens[t - 1].length() + 1;
+		}
+		ArrayList<ArrayList<Integer>> symbolPositions = new ArrayList<>(SYMBOLS);
+		for (int s = 0; s < SYMBOLS; s++) {
+			symbolPositions.add(new ArrayList<>());
+		}
+		long mask = 0;
+		long[] tokenMasks = new long[SYMBOLS];
+		StringBuilder template = new StringBuilder(secret);
+		for (int t = 0; t < tokens.length; t++) {
+			for (int i = 0; i < tokens[t].length(); i++) {
+				int s = symbolOf(tokens[t].charAt(i));
+				if (s >= 0) {
+					int position = tokenStarts[t] + i;
+					symbolPositions.get(s).add(position);
+					mask |= 1L << s;
+					tokenMasks[s] |= 1L << t;
+					template.setCharAt(position, '_');
+				}
+			}
+		}
+		this.positions = new int[SYMBOLS][];
+		for (int s = 0; s < SYMBOLS; s++) {
+			positions[s] = symbolPositions.get(s).stream().mapToInt(Integer::intValue).toArray();
+		}
+		this.symbolMask = mask;
+		this.symbolTokens = tokenMasks;
+		this.hiddenTemplate = template.toString();
+	}
+
+	/**
+	 * Maps a letter or digit to its symbol number
+	 * @param c is a character in lower case
+	 * @return the symbol number, or -1 if the character is not a letter or digit
+	 */
+	protected static int symbolOf(char c) {
+		if (c >= 'a' && c <= 'z') {
+			return c - 'a';
+		}
+		if (c >= '0' && c <= '9') {
+			return 26 + c - '0';
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the bit mask of the tokens equal to a guessed word, 0 if the word is not in the secret
+	 */
+	public long tokensMatching(String word) {
+		long mask = 0;
+		for (int t = 0; t < tokens.length; t++) {
+			if (tokens[t].equals(word)) {
+				mask |= 1L << t;
+			}
+		}
+		return mask;
+	}
+
+	/**
+	 * @return true if a symbol occurs in the secret
+	 */
+	public boolean contains(int symbol) {
+		return (symbolMask & (1L << symbol)) != 0;
+	}
+
+	/**
+	 * Checks whether every letter and digit of the secret is revealed. A symbol is revealed everywhere once it is guessed,
+	 * and a symbol that was not guessed is revealed if every token containing it was guessed as a word
+	 * @param guessMask is the mask of the symbols guessed
+	 * @param wordMask is the mask of the tokens guessed
+	 * @return true if the secret is solved
+	 */
+	public boolean isSolved(long guessMask, long wordMask) {
+		long missing = symbolMask & ~guessMask;
+		while (missing != 0) {
+			int s = Long.numberOfTrailingZeros(missing);
+			if ((symbolTokens[s] & ~wordMask) != 0) {
+				return false;
+			}
+			missing &= missing - 1;
+		}
+		return true;
+	}
+
+	/**
+	 * Builds the hidden secret string seen by a player
+	 * @param guessMask is the mask of the symbols guessed
+	 * @param wordMask is the mask of the tokens guessed
+	 * @return the secret with the letters and digits not revealed yet replaced by underscores
+	 */
+	public StringBuilder reveal(long guessMask, long wordMask) {
+		StringBuilder hidden = new StringBuilder(hiddenTemplate);
+		long guessed = symbolMask & guessMask;
+		while (guessed != 0) {
+			int s = Long.numberOfTrailingZeros(guessed);
+			char c = s < 26 ? (char) ('a' + s) : (char) ('0' + s - 26);
+			for (int position : positions[s]) {
+				hidden.setCharAt(position, c);
+			}
+			guessed &= guessed - 1;
+		}
+		long words = wordMask;
+		while (words != 0) {
+			int t = Long.numberOfTrailingZeros(words);
+			hidden.replace(tokenStarts[t], tokenStarts[t] + tokens[t].length(), tokens[t]);
+			words &= words - 1;
+		}
+		return hidden;
+	}
+
+	public String getSecret() {
+		return secret;
+	}
+
+	public int getSecretId() {
+		return secretId;
+	}
+
+	public int getTokenCount() {
+		return tokens.length;
+	}
+}
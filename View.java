@@ -12,9 +12,11 @@ import java.awt.GridLayout;
 import java.awt.Insets;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.awt.font.TextAttribute;
-import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import javax.swing.AbstractButton;
@@ -50,7 +52,7 @@ import javafx.scene.layout.Border;
  * @author marianahu
  *
  */
-public class View {
+public class View implements GameView {
 	private final JTextField guessTextField;
 	private final JButton guessButton;
 	private final JTextArea incorrectGuessesTextArea;
@@ -62,6 +64,7 @@ public class View {
 	private final JTextArea leaderboardArea;
 	private JTextField nameField;
 	private final int TITLE_FONT_SIZE = 12;
+	private final int PERSONAL_BESTS_LINES = 10; // Number of players shown under the leaderboard with their best score
 	private final String FONT = "Sans Serif";
 	private final JButton newGameButton;
 	private final JButton quitGameButton;
@@ -334,7 +337,7 @@ public class View {
 	 *         the player clicked the Cancel button
 	 */
 	public boolean didPlayerSubmitPreferences() {
-		String[] gameModeOptions = { "Words", "Phrases" };
+		String[] gameModeOptions = { "Words", "Phrases", "Tournament" };
 		gameModes = new JComboBox(gameModeOptions);
 		String[] difficultyOptions = { "1", "2", "3", "4", "5", "6", "7", "8", "9", "10" };
 		gameDifficulty = new JComboBox(difficultyOptions);
@@ -485,12 +488,12 @@ public class View {
 	}
 
 	/**
-	 * Gets the leader board data and populates it into the JTable
+	 * Gets the leader board data and populates it into the JTable, followed by the best score of the best players
 	 * 
 	 * @param lb is the Leader Board object containing leader board data
 	 */
 	public void showLeaderboard(Leaderboard lb) {
-		ArrayList<LeaderboardResult> results = lb.getLeaderboardResults();
+		List<LeaderboardResult> results = lb.getLeaderboardResults();
 		StringBuilder allResults = new StringBuilder();
 		String name;
 		int score;
@@ -500,7 +503,12 @@ public class View {
 			score = r.getScore();
 			allResults = allResults.append(name + "	" + score + "\n");
 		}
-		leaderboardArea.setText("Leaderboard \n\n" + "Name    " + "   Score\n\n" + allResults.toString());
+		StringBuilder bests = new StringBuilder();
+		for (LeaderboardResult r : lb.getTopPersonalBests(PERSONAL_BESTS_LINES)) {
+			bests.append(r.getName() + "	" + r.getScore() + "\n");
+		}
+		leaderboardArea.setText("Leaderboard \n\n" + "Name    " + "   Score\n\n" + allResults.toString()
+				+ "\nPersonal bests\n\n" + bests.toString());
 
 	}
 
@@ -626,6 +634,44 @@ public class View {
 		return this.frame;
 	}
 
+	public void addGuessListener(Runnable listener) {
+		this.guessButton.addActionListener(e -> listener.run());
+	}
+
+	public void addQuitGameListener(Runnable listener) {
+		this.quitGameButton.addActionListener(e -> listener.run());
+	}
+
+	public void addNewGameListener(Runnable listener) {
+		this.newGameButton.addActionListener(e -> listener.run());
+	}
+
+	public void addAdminListener(Runnable listener) {
+		this.adminButton.addActionListener(e -> listener.run());
+	}
+
+	public void addPlayerListener(Runnable listener) {
+		this.playerButton.addActionListener(e -> listener.run());
+	}
+
+	/**
+	 * Runs the listener when the player clicks the X button of the window
+	 */
+	public void addCloseListener(Runnable listener) {
+		this.frame.addWindowListener(new WindowAdapter() {
+			@Override
+			public void windowClosing(WindowEvent windowEvent) {
+				listener.run();
+			}
+		});
+	}
+
+	/**
+	 * Events are dispatched by Swing on the event dispatch thread, so there is nothing to run on the calling thread
+	 */
+	public void startEventLoop() {
+	}
+
 
 
 }